@@ -0,0 +1,27 @@
+package com.boydti.fawe.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reports the number of blocks changed as a secondary result (blocks/sec)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class BlockCounter {
+
+    public long blocks;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        blocks = 0;
+    }
+
+    public int add(int changed) {
+        blocks += changed;
+        return changed;
+    }
+}
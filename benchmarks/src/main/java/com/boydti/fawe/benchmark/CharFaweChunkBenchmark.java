@@ -0,0 +1,83 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.example.CharFaweChunk;
+import com.boydti.fawe.example.NullQueueCharFaweChunk;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fills a whole chunk through CharFaweChunk#setBlock<br>
+ * - Scores are in blocks per second<br>
+ * - A new chunk is used for each invocation so the section allocation is part of the measurement
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CharFaweChunkBenchmark {
+
+    private static final int BLOCKS = 16 * 256 * 16;
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public CharFaweChunk setBlockId() {
+        CharFaweChunk chunk = new NullQueueCharFaweChunk(0, 0);
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    chunk.setBlock(x, y, z, 1);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public CharFaweChunk setBlockIdData() {
+        CharFaweChunk chunk = new NullQueueCharFaweChunk(0, 0);
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    chunk.setBlock(x, y, z, 35, (x + z) & 15);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public CharFaweChunk setBlockMixed() {
+        CharFaweChunk chunk = new NullQueueCharFaweChunk(0, 0);
+        for (int y = 0; y < 256; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    switch ((x ^ y ^ z) & 3) {
+                        case 0:
+                            chunk.setBlock(x, y, z, 0);
+                            break;
+                        case 1:
+                            chunk.setBlock(x, y, z, 1);
+                            break;
+                        default:
+                            chunk.setBlock(x, y, z, 17, y & 3);
+                            break;
+                    }
+                }
+            }
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,95 @@
+package com.boydti.fawe.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Several threads queueing blocks into one queue (see MappedFaweQueue#setConcurrent)<br>
+ * - Scores are in blocks per second<br>
+ * - With one writer the default map is used, so the score is the baseline without any locking
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConcurrentQueueWriteBenchmark {
+
+    private static final int SIZE = 128;
+    private static final int HEIGHT = 64;
+    private static final int BLOCKS = SIZE * SIZE * HEIGHT;
+
+    @Param({"1", "2", "4", "8"})
+    public int writers;
+
+    private MemoryFaweQueue queue;
+    private ExecutorService pool;
+    private List<Callable<Object>> tasks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new MemoryFaweQueue("benchmark");
+        if (writers > 1) {
+            queue.setConcurrent();
+        }
+        pool = Executors.newFixedThreadPool(writers);
+        tasks = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            final int writer = i;
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    // Interleaved rows, so writers share chunks
+                    for (int z = writer; z < SIZE; z += writers) {
+                        for (int y = 0; y < HEIGHT; y++) {
+                            for (int x = 0; x < SIZE; x++) {
+                                queue.setBlock(x, y, z, 1, 0);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+        queue.reset();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        queue.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public int setBlocks() throws Exception {
+        for (Future<Object> future : pool.invokeAll(tasks)) {
+            future.get();
+        }
+        return queue.size();
+    }
+}
@@ -0,0 +1,76 @@
+package com.boydti.fawe.benchmark;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the EditSession operations most commands end up in<br>
+ * - The primary score is edits per second, the "blocks" counter is blocks per second
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EditSessionBenchmark extends QueueBenchmark {
+
+    @Param({"64", "128"})
+    public int size;
+
+    private CuboidRegion region;
+    private Vector center;
+    private double radius;
+    private BaseBlock stone;
+    private BaseBlock dirt;
+    private boolean swap;
+
+    @Setup(Level.Trial)
+    public void setupRegion() {
+        region = new CuboidRegion(new Vector(0, 0, 0), new Vector(size - 1, Math.min(255, size - 1), size - 1));
+        center = region.getCenter();
+        radius = Math.min(size, 256) / 2d;
+        stone = new BaseBlock(1);
+        dirt = new BaseBlock(3);
+        EditSession editSession = newEditSession();
+        editSession.setBlocks(region, stone);
+        flush();
+    }
+
+    @Benchmark
+    public void setBlocks(BlockCounter counter) {
+        EditSession editSession = newEditSession();
+        counter.add(editSession.setBlocks(region, (swap = !swap) ? dirt : stone));
+        flush();
+    }
+
+    @Benchmark
+    public void replaceBlocks(BlockCounter counter) {
+        EditSession editSession = newEditSession();
+        BaseBlock from = (swap = !swap) ? stone : dirt;
+        BaseBlock to = from == stone ? dirt : stone;
+        counter.add(editSession.replaceBlocks(region, Collections.singleton(from), new BlockPattern(to)));
+        flush();
+    }
+
+    @Benchmark
+    public void makeSphere(BlockCounter counter) {
+        EditSession editSession = newEditSession();
+        counter.add(editSession.makeSphere(center, new BlockPattern((swap = !swap) ? dirt : stone), radius, true));
+        flush();
+    }
+}
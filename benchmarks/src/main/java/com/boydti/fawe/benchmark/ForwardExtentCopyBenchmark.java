@@ -0,0 +1,65 @@
+package com.boydti.fawe.benchmark;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.pattern.AbstractPattern;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Copies a filled region next to itself (the //copy + //paste and //move path)<br>
+ * - The primary score is copies per second, the "blocks" counter is blocks per second
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ForwardExtentCopyBenchmark extends QueueBenchmark {
+
+    private static final BaseBlock[] BLOCKS = new BaseBlock[]{new BaseBlock(1), new BaseBlock(3), new BaseBlock(35, 14), new BaseBlock(0)};
+
+    @Param({"64", "128"})
+    public int size;
+
+    private CuboidRegion region;
+    private Vector from;
+    private Vector to;
+
+    @Setup(Level.Trial)
+    public void setupRegion() {
+        region = new CuboidRegion(new Vector(0, 0, 0), new Vector(size - 1, Math.min(255, size - 1), size - 1));
+        from = region.getMinimumPoint();
+        to = from.add(size, 0, 0);
+        EditSession editSession = newEditSession();
+        editSession.setBlocks(region, new AbstractPattern() {
+            @Override
+            public BaseBlock apply(Vector position) {
+                return BLOCKS[(position.getBlockX() + position.getBlockY() + position.getBlockZ()) & 3];
+            }
+        });
+        flush();
+    }
+
+    @Benchmark
+    public void copy(BlockCounter counter) {
+        EditSession editSession = newEditSession();
+        ForwardExtentCopy copy = new ForwardExtentCopy(editSession, region, from, editSession, to);
+        Operations.completeBlindly(copy);
+        flush();
+        counter.add(copy.getAffected());
+    }
+}
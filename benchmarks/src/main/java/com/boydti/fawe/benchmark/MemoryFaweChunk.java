@@ -0,0 +1,63 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.example.CharFaweChunk;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.util.MainUtil;
+
+public class MemoryFaweChunk extends CharFaweChunk<char[][], MemoryFaweQueue> {
+
+    public MemoryFaweChunk(FaweQueue parent, int x, int z) {
+        super(parent, x, z);
+    }
+
+    public MemoryFaweChunk(FaweQueue parent, int x, int z, char[][] ids, short[] count, short[] air, byte[] heightMap) {
+        super(parent, x, z, ids, count, air, heightMap);
+    }
+
+    @Override
+    public char[][] getNewChunk() {
+        MemoryFaweQueue parent = getParent();
+        return parent.loadChunk(parent.getWorld(), getX(), getZ(), true);
+    }
+
+    @Override
+    public CharFaweChunk<char[][], MemoryFaweQueue> copy(boolean shallow) {
+        MemoryFaweChunk copy;
+        if (shallow) {
+            copy = new MemoryFaweChunk(getParent(), getX(), getZ(), inflate(), count, air, heightMap);
+            copy.biomes = biomes;
+        } else {
+            copy = new MemoryFaweChunk(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone());
+            copy.biomes = biomes != null ? biomes.clone() : null;
+        }
+        return copy;
+    }
+
+    @Override
+    public FaweChunk call() {
+        char[][] sections = getChunk();
+        for (int layer = 0; layer < ids.length; layer++) {
+            char[] newArray = ids[layer];
+            if (newArray == null) {
+                continue;
+            }
+            char[] currentArray = sections[layer];
+            if (currentArray == null) {
+                currentArray = sections[layer] = new char[4096];
+            }
+            for (int j = 0; j < newArray.length; j++) {
+                switch (newArray[j]) {
+                    case 0:
+                        continue;
+                    case 1:
+                        currentArray[j] = 0;
+                        continue;
+                    default:
+                        currentArray[j] = newArray[j];
+                }
+            }
+        }
+        return this;
+    }
+}
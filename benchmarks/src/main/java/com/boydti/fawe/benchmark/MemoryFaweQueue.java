@@ -0,0 +1,162 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.example.MappedFaweQueue;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.File;
+
+/**
+ * A MappedFaweQueue backed by plain char[][] sections held on the heap<br>
+ * - Used as a stand-in for the NMS queues so the edit pipeline can be measured without a server<br>
+ * - Optionally dispatches queued chunks once more than TARGET_SIZE are pending (like SetQueue does for inactive queues)
+ */
+public class MemoryFaweQueue extends MappedFaweQueue<MemoryFaweQueue, char[][], char[][], char[]> {
+
+    private final Long2ObjectOpenHashMap<char[][]> chunks = new Long2ObjectOpenHashMap<>();
+    private int targetSize = -1;
+    private int parallelThreads = 1;
+    private long sliceMs = 20;
+
+    public MemoryFaweQueue(String world) {
+        super(world);
+    }
+
+    /**
+     * Dispatch queued chunks while the edit is still producing them
+     *
+     * @param targetSize      the number of pending chunks before a dispatch happens (-1 to disable)
+     * @param parallelThreads the amount passed to {@link #next(int, long)}
+     * @param sliceMs         the time passed to {@link #next(int, long)}
+     */
+    public void setDispatch(int targetSize, int parallelThreads, long sliceMs) {
+        this.targetSize = targetSize;
+        this.parallelThreads = parallelThreads;
+        this.sliceMs = sliceMs;
+    }
+
+    /**
+     * Dispatch every queued chunk using the configured parallelism
+     */
+    public void drain() {
+        while (next(parallelThreads, Long.MAX_VALUE)) ;
+    }
+
+    public int getLoadedChunks() {
+        synchronized (chunks) {
+            return chunks.size();
+        }
+    }
+
+    public void reset() {
+        clear();
+        synchronized (chunks) {
+            chunks.clear();
+        }
+    }
+
+    @Override
+    public MemoryFaweQueue getImpWorld() {
+        return this;
+    }
+
+    @Override
+    public boolean regenerateChunk(MemoryFaweQueue world, int x, int z, BaseBiome biome, Long seed) {
+        synchronized (chunks) {
+            chunks.remove(MathMan.pairInt(x, z));
+        }
+        return true;
+    }
+
+    @Override
+    public FaweChunk getFaweChunk(int x, int z) {
+        if (targetSize != -1 && size() > targetSize) {
+            next(parallelThreads, sliceMs);
+        }
+        return new MemoryFaweChunk(this, x, z);
+    }
+
+    @Override
+    public char[][] loadChunk(MemoryFaweQueue world, int x, int z, boolean generate) {
+        long pair = MathMan.pairInt(x, z);
+        synchronized (chunks) {
+            char[][] chunk = chunks.get(pair);
+            if (chunk == null && generate) {
+                chunk = new char[FaweChunk.HEIGHT >> 4][];
+                chunks.put(pair, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    @Override
+    public char[][] getSections(char[][] chunk) {
+        return chunk;
+    }
+
+    @Override
+    public char[][] getCachedSections(MemoryFaweQueue world, int cx, int cz) {
+        return getCachedChunk(world, cx, cz);
+    }
+
+    @Override
+    public char[][] getCachedChunk(MemoryFaweQueue world, int cx, int cz) {
+        return loadChunk(world, cx, cz, false);
+    }
+
+    @Override
+    public char[] getCachedSection(char[][] sections, int cy) {
+        return sections[cy];
+    }
+
+    @Override
+    public int getCombinedId4Data(char[] section, int x, int y, int z) {
+        return section[FaweCache.CACHE_J[y][z & 15][x & 15]];
+    }
+
+    @Override
+    public int getBiome(char[][] chunk, int x, int z) {
+        return 0;
+    }
+
+    @Override
+    public CompoundTag getTileEntity(char[][] chunk, int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public int getSkyLight(char[] sections, int x, int y, int z) {
+        return 15;
+    }
+
+    @Override
+    public int getEmmittedLight(char[] sections, int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public boolean hasSky() {
+        return true;
+    }
+
+    @Override
+    public File getSaveFolder() {
+        return null;
+    }
+
+    @Override
+    public void sendBlockUpdate(FaweChunk chunk, FawePlayer... players) {
+    }
+
+    @Override
+    public void sendChunk(FaweChunk chunk) {
+    }
+
+    @Override
+    public void sendChunk(int x, int z, int bitMask) {
+    }
+}
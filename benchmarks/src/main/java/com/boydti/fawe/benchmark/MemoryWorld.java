@@ -0,0 +1,113 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.object.FaweLimit;
+import com.boydti.fawe.object.extent.FastWorldEditExtent;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalWorld;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BaseItemStack;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import com.sk89q.worldedit.world.registry.WorldData;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+public class MemoryWorld extends LocalWorld {
+
+    private final String name;
+    private final MemoryFaweQueue queue;
+    private final FastWorldEditExtent extent;
+
+    public MemoryWorld(String name) {
+        this.name = name;
+        this.queue = new MemoryFaweQueue(name);
+        this.extent = new FastWorldEditExtent(this, queue);
+    }
+
+    public MemoryFaweQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Create an unlimited, history-less EditSession writing into this world's queue
+     *
+     * @return
+     */
+    public EditSession newEditSession() {
+        return new EditSession(name, this, queue, null, FaweLimit.MAX.copy(), null, (Region[]) null, false, true, false, false, null, null, null);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) throws WorldEditException {
+        return extent.setBlock(position, block);
+    }
+
+    @Override
+    public int getBlockLightLevel(Vector position) {
+        return queue.getEmmittedLight(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+    }
+
+    @Override
+    public boolean clearContainerBlockContents(Vector position) {
+        return false;
+    }
+
+    @Override
+    public void dropItem(Vector position, BaseItemStack item) {
+
+    }
+
+    @Override
+    public boolean regenerate(Region region, EditSession editSession) {
+        return false;
+    }
+
+    @Override
+    public WorldData getWorldData() {
+        return LegacyWorldData.getInstance();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities(Region region) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return new ArrayList<>();
+    }
+
+    @Nullable
+    @Override
+    public Entity createEntity(Location location, BaseEntity entity) {
+        return null;
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        return extent.getLazyBlock(position);
+    }
+
+    @Override
+    public BaseBiome getBiome(Vector2D position) {
+        return extent.getBiome(position);
+    }
+
+    @Override
+    public boolean setBiome(Vector2D position, BaseBiome biome) {
+        return extent.setBiome(position, biome);
+    }
+}
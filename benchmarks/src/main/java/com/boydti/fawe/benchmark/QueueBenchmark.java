@@ -0,0 +1,57 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.config.Settings;
+import com.sk89q.worldedit.EditSession;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared state for the edit pipeline benchmarks<br>
+ * - Applies the queue settings being tuned to Settings.IMP<br>
+ * - Every invocation queues an edit and then dispatches it through {@link MemoryFaweQueue#next(int, long)}
+ */
+@State(Scope.Benchmark)
+public abstract class QueueBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int parallelThreads;
+
+    @Param({"64"})
+    public int targetSize;
+
+    protected MemoryWorld world;
+    protected MemoryFaweQueue queue;
+
+    private int previousThreads;
+    private int previousTargetSize;
+
+    @Setup(Level.Trial)
+    public void setupQueue() {
+        previousThreads = Settings.IMP.QUEUE.PARALLEL_THREADS;
+        previousTargetSize = Settings.IMP.QUEUE.TARGET_SIZE;
+        Settings.IMP.QUEUE.PARALLEL_THREADS = parallelThreads;
+        Settings.IMP.QUEUE.TARGET_SIZE = targetSize;
+        world = new MemoryWorld("benchmark");
+        queue = world.getQueue();
+        queue.setDispatch(targetSize, parallelThreads, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownQueue() {
+        queue.reset();
+        Settings.IMP.QUEUE.PARALLEL_THREADS = previousThreads;
+        Settings.IMP.QUEUE.TARGET_SIZE = previousTargetSize;
+    }
+
+    protected EditSession newEditSession() {
+        return world.newEditSession();
+    }
+
+    protected void flush() {
+        queue.drain();
+    }
+}
@@ -54,10 +54,10 @@ public class BukkitChunk_All extends CharFaweChunk<Chunk, BukkitQueue_All> {
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_All copy;
         if (shallow) {
-            copy = new BukkitChunk_All(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new BukkitChunk_All(getParent(), getX(), getZ(), inflate(), count, air, heightMap);
             copy.biomes = biomes;
         } else {
-            copy = new BukkitChunk_All(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new BukkitChunk_All(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
         }
         copy.chunk = chunk;
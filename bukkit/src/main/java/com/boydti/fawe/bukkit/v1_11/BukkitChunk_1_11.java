@@ -106,11 +106,11 @@ public class BukkitChunk_1_11 extends CharFaweChunk<Chunk, com.boydti.fawe.bukki
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_11 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), inflate(), count, air, heightMap);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new BukkitChunk_1_11(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
@@ -302,6 +302,11 @@ public class BukkitQueue_1_11 extends BukkitQueue_0<net.minecraft.server.v1_11_R
                                         arr = chunksUnloaded[relX] = new boolean[32];
                                     }
                                     arr[chunk.locZ & 31] = true;
+                                } else if (load && saveChunks && chunk.a(false)) {
+                                    // Stays loaded, but the region file is replaced, so it must be on disk first
+                                    mustSave = true;
+                                    provider.saveChunk(chunk);
+                                    provider.saveChunkNOP(chunk);
                                 }
                             }
                         }
@@ -791,13 +796,7 @@ public class BukkitQueue_1_11 extends BukkitQueue_0<net.minecraft.server.v1_11_R
                     int x = (MathMan.roundInt(ent.locX) & 15);
                     int z = (MathMan.roundInt(ent.locZ) & 15);
                     int y = (MathMan.roundInt(ent.locY) & 0xFF);
-                    int i = FaweCache.CACHE_I[y][z][x];
-                    char[] array = fs.getIdArray(i);
-                    if (array == null) {
-                        continue;
-                    }
-                    int j = FaweCache.CACHE_J[y][z][x];
-                    if (array[j] != 0) {
+                    if (fs.getBlockCombinedId(x, y, z) != 0) {
                         String id = EntityTypes.b(ent);
                         if (id != null) {
                             NBTTagCompound tag = new NBTTagCompound();
@@ -6,6 +6,7 @@ import com.boydti.fawe.bukkit.BukkitPlayer;
 import com.boydti.fawe.bukkit.v0.BukkitQueue_0;
 import com.boydti.fawe.bukkit.v1_12.packet.FaweChunkPacket;
 import com.boydti.fawe.bukkit.v1_12.packet.MCAChunkPacket;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.jnbt.anvil.MCAChunk;
 import com.boydti.fawe.object.FaweChunk;
@@ -270,44 +271,49 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
             public void run(Boolean value) {
                 long start = System.currentTimeMillis();
                 long last = start;
-                synchronized (RegionFileCache.class) {
-                    World world = getWorld();
-                    if (world.getKeepSpawnInMemory()) world.setKeepSpawnInMemory(false);
-                    ChunkProviderServer provider = nmsWorld.getChunkProviderServer();
-
+                World world = getWorld();
+                if (world.getKeepSpawnInMemory()) world.setKeepSpawnInMemory(false);
+                ChunkProviderServer provider = nmsWorld.getChunkProviderServer();
+                { // Save chunks (the region file is replaced, so they must be on disk first)
                     boolean mustSave = false;
+                    if (saveChunks) {
+                        for (net.minecraft.server.v1_12_R1.Chunk chunk : provider.a()) {
+                            if (chunk.locX >> 5 == mcaX && chunk.locZ >> 5 == mcaZ && (load || allowed.isInChunk(chunk.locX, chunk.locZ))) {
+                                mustSave |= save(chunk, provider);
+                            }
+                        }
+                    }
+                    if (mustSave) {
+                        provider.c(); // TODO only the necessary chunks
+                    }
+                    // Chunk writes still queued on the IO thread would otherwise be lost, or overwrite the changes, once the region is replaced
+                    try {
+                        FileIOThread.a().b();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+                synchronized (RegionFileCache.class) {
                     boolean[][] chunksUnloaded = null;
-                    { // Unload chunks
+                    if (load) { // Unload chunks (already saved, so nothing is queued for the IO thread while the region is locked)
                         Iterator<net.minecraft.server.v1_12_R1.Chunk> iter = provider.a().iterator();
                         while (iter.hasNext()) {
                             net.minecraft.server.v1_12_R1.Chunk chunk = iter.next();
-                            if (chunk.locX >> 5 == mcaX && chunk.locZ >> 5 == mcaZ) {
-                                boolean isIn = allowed.isInChunk(chunk.locX, chunk.locZ);
-                                if (isIn) {
-                                    if (!load) {
-                                        mustSave |= saveChunks && save(chunk, provider);
-                                        continue;
-                                    }
-                                    iter.remove();
-                                    boolean save = saveChunks && chunk.a(false);
-                                    mustSave |= save;
-                                    provider.unloadChunk(chunk, save);
-                                    if (chunksUnloaded == null) {
-                                        chunksUnloaded = new boolean[32][];
-                                    }
-                                    int relX = chunk.locX & 31;
-                                    boolean[] arr = chunksUnloaded[relX];
-                                    if (arr == null) {
-                                        arr = chunksUnloaded[relX] = new boolean[32];
-                                    }
-                                    arr[chunk.locZ & 31] = true;
+                            if (chunk.locX >> 5 == mcaX && chunk.locZ >> 5 == mcaZ && allowed.isInChunk(chunk.locX, chunk.locZ)) {
+                                iter.remove();
+                                provider.unloadChunk(chunk, false);
+                                if (chunksUnloaded == null) {
+                                    chunksUnloaded = new boolean[32][];
                                 }
+                                int relX = chunk.locX & 31;
+                                boolean[] arr = chunksUnloaded[relX];
+                                if (arr == null) {
+                                    arr = chunksUnloaded[relX] = new boolean[32];
+                                }
+                                arr[chunk.locZ & 31] = true;
                             }
                         }
                     }
-                    if (mustSave) {
-                        provider.c(); // TODO only the necessary chunks
-                    }
 
                     File unloadedRegion = null;
                     if (load && !RegionFileCache.a.isEmpty()) {
@@ -539,29 +545,42 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
     @Override
     public void sendChunkUpdatePLIB(FaweChunk chunk, FawePlayer... players) {
         PlayerChunkMap playerManager = ((CraftWorld) getWorld()).getHandle().getPlayerChunkMap();
+        final List<CraftPlayer> viewers = new ArrayList<>(players.length);
+        for (int i = 0; i < players.length; i++) {
+            CraftPlayer bukkitPlayer = ((CraftPlayer) ((BukkitPlayer) players[i]).parent);
+            if (playerManager.a(bukkitPlayer.getHandle(), chunk.getX(), chunk.getZ())) {
+                viewers.add(bukkitPlayer);
+            }
+        }
+        if (viewers.isEmpty()) {
+            return;
+        }
+        final FaweChunk toSend = chunk instanceof LazyFaweChunk ? (FaweChunk) chunk.getChunk() : chunk;
+        if (Settings.IMP.QUEUE.ASYNC_CHUNK_PACKETS && Fawe.isMainThread()) {
+            TaskManager.IMP.getPublicForkJoinPool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    sendWirePacket(toSend, viewers);
+                }
+            });
+        } else {
+            sendWirePacket(toSend, viewers);
+        }
+    }
+
+    private void sendWirePacket(FaweChunk chunk, List<CraftPlayer> viewers) {
         ProtocolManager manager = ProtocolLibrary.getProtocolManager();
-        WirePacket packet = null;
+        byte[] data;
+        byte[] buffer = new byte[8192];
+        if (chunk instanceof MCAChunk) {
+            data = new MCAChunkPacket((MCAChunk) chunk, true, true, hasSky()).apply(buffer);
+        } else {
+            data = new FaweChunkPacket(chunk, true, true, hasSky()).apply(buffer);
+        }
+        WirePacket packet = new WirePacket(PacketType.Play.Server.MAP_CHUNK, data);
         try {
-            for (int i = 0; i < players.length; i++) {
-                CraftPlayer bukkitPlayer = ((CraftPlayer) ((BukkitPlayer) players[i]).parent);
-                EntityPlayer player = bukkitPlayer.getHandle();
-
-                if (playerManager.a(player, chunk.getX(), chunk.getZ())) {
-                    if (packet == null) {
-                        byte[] data;
-                        byte[] buffer = new byte[8192];
-                        if (chunk instanceof LazyFaweChunk) {
-                            chunk = (FaweChunk) chunk.getChunk();
-                        }
-                        if (chunk instanceof MCAChunk) {
-                            data = new MCAChunkPacket((MCAChunk) chunk, true, true, hasSky()).apply(buffer);
-                        } else {
-                            data = new FaweChunkPacket(chunk, true, true, hasSky()).apply(buffer);
-                        }
-                        packet = new WirePacket(PacketType.Play.Server.MAP_CHUNK, data);
-                    }
-                    manager.sendWirePacket(bukkitPlayer, packet);
-                }
+            for (CraftPlayer viewer : viewers) {
+                manager.sendWirePacket(viewer, packet);
             }
         } catch (InvocationTargetException e) {
             throw new RuntimeException(e);
@@ -620,6 +639,15 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
         }
     }
 
+    @Override
+    public boolean supports(Capability capability) {
+        switch (capability) {
+            case BLOCK_UPDATES:
+                return true;
+        }
+        return super.supports(capability);
+    }
+
     @Override
     public void refreshChunk(FaweChunk fc) {
         sendChunk(fc.getX(), fc.getZ(), fc.getBitMask());
@@ -646,17 +674,80 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
         return playerChunk;
     }
 
-    public boolean sendChunk(PlayerChunk playerChunk, net.minecraft.server.v1_12_R1.Chunk nmsChunk, int mask) {
-        WorldServer w = (WorldServer) nmsChunk.getWorld();
+    public boolean sendChunk(PlayerChunk playerChunk, final net.minecraft.server.v1_12_R1.Chunk nmsChunk, final int mask) {
         if (playerChunk == null) {
             return false;
         }
+        if (Settings.IMP.QUEUE.ASYNC_CHUNK_PACKETS && Fawe.isMainThread()) {
+            final ChunkPacketSnapshot[] snapshots;
+            try {
+                // Copy the sections now, as the live ones may change while the packets are built
+                if (mask == 0) {
+                    snapshots = new ChunkPacketSnapshot[]{new ChunkPacketSnapshot(nmsChunk, 65535, null, hasSky())};
+                } else if (mask == 65535 && hasEntities(nmsChunk)) {
+                    snapshots = new ChunkPacketSnapshot[]{
+                            new ChunkPacketSnapshot(nmsChunk, 65280, emptySection, hasSky()),
+                            new ChunkPacketSnapshot(nmsChunk, 255, emptySection, hasSky())
+                    };
+                } else {
+                    snapshots = new ChunkPacketSnapshot[]{new ChunkPacketSnapshot(nmsChunk, mask, emptySection, hasSky())};
+                }
+            } catch (Throwable e) {
+                MainUtil.handleError(e);
+                sendChunk(playerChunk.c, nmsChunk, mask);
+                return true;
+            }
+            TaskManager.IMP.getPublicForkJoinPool().submit(new Runnable() {
+                @Override
+                public void run() {
+                    final PacketPlayOutMapChunk[] packets = new PacketPlayOutMapChunk[snapshots.length];
+                    try {
+                        for (int i = 0; i < packets.length; i++) {
+                            packets[i] = snapshots[i].build();
+                        }
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                        Arrays.fill(packets, null);
+                    }
+                    TaskManager.IMP.task(new Runnable() {
+                        @Override
+                        public void run() {
+                            PlayerChunk current = getPlayerChunk((WorldServer) nmsChunk.getWorld(), nmsChunk.locX, nmsChunk.locZ);
+                            if (current == null) {
+                                return;
+                            }
+                            for (int i = 0; i < packets.length; i++) {
+                                if (packets[i] == null || !snapshots[i].isCurrent()) {
+                                    // The chunk changed while the packets were built, so don't send outdated blocks
+                                    sendChunk(current.c, nmsChunk, mask);
+                                    return;
+                                }
+                            }
+                            for (PacketPlayOutMapChunk packet : packets) {
+                                for (EntityPlayer player : current.c) {
+                                    player.playerConnection.sendPacket(packet);
+                                }
+                            }
+                        }
+                    });
+                }
+            });
+            return true;
+        }
+        sendChunk(playerChunk.c, nmsChunk, mask);
+        return true;
+    }
+
+    /**
+     * Build the chunk packets once and send them to each viewer
+     */
+    private void sendChunk(Collection<EntityPlayer> viewers, net.minecraft.server.v1_12_R1.Chunk nmsChunk, int mask) {
         if (mask == 0) {
             PacketPlayOutMapChunk packet = new PacketPlayOutMapChunk(nmsChunk, 65535);
-            for (EntityPlayer player : playerChunk.c) {
+            for (EntityPlayer player : viewers) {
                 player.playerConnection.sendPacket(packet);
             }
-            return true;
+            return;
         }
         // Send chunks
         boolean empty = false;
@@ -667,25 +758,27 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
                 empty = true;
             }
         }
-        if (mask == 0 || mask == 65535 && hasEntities(nmsChunk)) {
-            PacketPlayOutMapChunk packet = new PacketPlayOutMapChunk(nmsChunk, 65280);
-            for (EntityPlayer player : playerChunk.c) {
+        try {
+            if (mask == 65535 && hasEntities(nmsChunk)) {
+                PacketPlayOutMapChunk packet = new PacketPlayOutMapChunk(nmsChunk, 65280);
+                for (EntityPlayer player : viewers) {
+                    player.playerConnection.sendPacket(packet);
+                }
+                mask = 255;
+            }
+            PacketPlayOutMapChunk packet = new PacketPlayOutMapChunk(nmsChunk, mask);
+            for (EntityPlayer player : viewers) {
                 player.playerConnection.sendPacket(packet);
             }
-            mask = 255;
-        }
-        PacketPlayOutMapChunk packet = new PacketPlayOutMapChunk(nmsChunk, mask);
-        for (EntityPlayer player : playerChunk.c) {
-            player.playerConnection.sendPacket(packet);
-        }
-        if (empty) {
-            for (int i = 0; i < sections.length; i++) {
-                if (sections[i] == emptySection) {
-                    sections[i] = null;
+        } finally {
+            if (empty) {
+                for (int i = 0; i < sections.length; i++) {
+                    if (sections[i] == emptySection) {
+                        sections[i] = null;
+                    }
                 }
             }
         }
-        return true;
     }
 
     public boolean hasEntities(net.minecraft.server.v1_12_R1.Chunk nmsChunk) {
@@ -845,13 +938,7 @@ public class BukkitQueue_1_12 extends BukkitQueue_0<net.minecraft.server.v1_12_R
                     int x = (MathMan.roundInt(ent.locX) & 15);
                     int z = (MathMan.roundInt(ent.locZ) & 15);
                     int y = (MathMan.roundInt(ent.locY) & 0xFF);
-                    int i = FaweCache.CACHE_I[y][z][x];
-                    char[] array = fs.getIdArray(i);
-                    if (array == null) {
-                        continue;
-                    }
-                    int j = FaweCache.CACHE_J[y][z][x];
-                    if (array[j] != 0) {
+                    if (fs.getBlockCombinedId(x, y, z) != 0) {
                         String id = EntityTypes.b(ent);
                         if (id != null) {
                             NBTTagCompound tag = new NBTTagCompound();
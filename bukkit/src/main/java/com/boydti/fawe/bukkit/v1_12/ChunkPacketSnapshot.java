@@ -0,0 +1,175 @@
+package com.boydti.fawe.bukkit.v1_12;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.server.v1_12_R1.BlockPosition;
+import net.minecraft.server.v1_12_R1.ChunkSection;
+import net.minecraft.server.v1_12_R1.DataBits;
+import net.minecraft.server.v1_12_R1.DataPalette;
+import net.minecraft.server.v1_12_R1.DataPaletteBlock;
+import net.minecraft.server.v1_12_R1.NBTTagCompound;
+import net.minecraft.server.v1_12_R1.NibbleArray;
+import net.minecraft.server.v1_12_R1.PacketDataSerializer;
+import net.minecraft.server.v1_12_R1.PacketPlayOutMapChunk;
+import net.minecraft.server.v1_12_R1.TileEntity;
+
+/**
+ * A copy of the chunk data a {@link PacketPlayOutMapChunk} is built from<br>
+ * - Taken on the main thread (array copies of the sent sections, and the tile NBT)<br>
+ * - {@link #build()} serializes it the same way as PacketPlayOutMapChunk, and can be called from any thread<br>
+ * - {@link #isCurrent()} checks on the main thread that the chunk hasn't changed since, before the packet is sent
+ */
+public class ChunkPacketSnapshot {
+
+    private final net.minecraft.server.v1_12_R1.Chunk chunk;
+    private final int x, z;
+    private final boolean full;
+    private final boolean sky;
+    private final int mask;
+    private final ChunkSection[] sections = new ChunkSection[16];
+    private final byte[][] palettes = new byte[16][];
+    private final long[][] bits = new long[16][];
+    private final byte[][] blockLight = new byte[16][];
+    private final byte[][] skyLight = new byte[16][];
+    private final byte[] biomes;
+    private final List<NBTTagCompound> tiles = new ArrayList<>();
+
+    /**
+     * @param chunk
+     * @param mask  the sections to send (65535 sends the full chunk)
+     * @param empty the placeholder sent for missing sections (so the client clears them), or null to skip them
+     * @param sky   if the world has sky light
+     */
+    public ChunkPacketSnapshot(net.minecraft.server.v1_12_R1.Chunk chunk, int mask, ChunkSection empty, boolean sky) throws IllegalAccessException {
+        this.chunk = chunk;
+        this.x = chunk.locX;
+        this.z = chunk.locZ;
+        this.full = mask == 65535;
+        this.sky = sky;
+        ChunkSection[] live = chunk.getSections();
+        int sent = 0;
+        for (int layer = 0; layer < live.length; layer++) {
+            ChunkSection section = live[layer];
+            ChunkSection copyFrom = section != null ? section : empty;
+            // Same check as PacketPlayOutMapChunk
+            if (copyFrom == null || (full && copyFrom.a()) || (mask & (1 << layer)) == 0) {
+                continue;
+            }
+            sent |= 1 << layer;
+            sections[layer] = section;
+            palettes[layer] = getPalette(copyFrom.getBlocks());
+            bits[layer] = getBits(copyFrom.getBlocks()).clone();
+            blockLight[layer] = copyFrom.getEmittedLightArray().asBytes().clone();
+            if (sky) {
+                skyLight[layer] = copyFrom.getSkyLightArray().asBytes().clone();
+            }
+        }
+        this.mask = sent;
+        this.biomes = full ? chunk.getBiomeIndex().clone() : null;
+        for (Map.Entry<BlockPosition, TileEntity> entry : chunk.getTileEntities().entrySet()) {
+            if (full || (mask & (1 << (entry.getKey().getY() >> 4))) != 0) {
+                tiles.add(entry.getValue().d());
+            }
+        }
+    }
+
+    /**
+     * The bits per block and palette, as written to the packet
+     */
+    private static byte[] getPalette(DataPaletteBlock blocks) throws IllegalAccessException {
+        ByteBuf buf = Unpooled.buffer(64);
+        PacketDataSerializer serializer = new PacketDataSerializer(buf);
+        serializer.writeByte((int) BukkitQueue_1_12.fieldSize.get(blocks));
+        ((DataPalette) BukkitQueue_1_12.fieldPalette.get(blocks)).b(serializer);
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    private static long[] getBits(DataPaletteBlock blocks) throws IllegalAccessException {
+        return ((DataBits) BukkitQueue_1_12.fieldBits.get(blocks)).a();
+    }
+
+    private static boolean equals(byte[] copy, NibbleArray live) {
+        return copy == null || (live != null && Arrays.equals(copy, live.asBytes()));
+    }
+
+    /**
+     * If the sent sections still match the chunk (must be called on the main thread)
+     */
+    public boolean isCurrent() {
+        try {
+            ChunkSection[] live = chunk.getSections();
+            for (int layer = 0; layer < 16; layer++) {
+                if (palettes[layer] == null) {
+                    continue;
+                }
+                ChunkSection section = live[layer];
+                if (section != sections[layer]) {
+                    return false;
+                }
+                if (section == null) {
+                    // The placeholder doesn't change
+                    continue;
+                }
+                DataPaletteBlock blocks = section.getBlocks();
+                if (!Arrays.equals(bits[layer], getBits(blocks)) || !Arrays.equals(palettes[layer], getPalette(blocks))) {
+                    return false;
+                }
+                if (!equals(blockLight[layer], section.getEmittedLightArray()) || !equals(skyLight[layer], section.getSkyLightArray())) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Serialize the packet (can be called from any thread)
+     */
+    public PacketPlayOutMapChunk build() throws IOException {
+        int size = biomes != null ? biomes.length : 0;
+        for (int layer = 0; layer < 16; layer++) {
+            if (palettes[layer] != null) {
+                size += palettes[layer].length + PacketDataSerializer.a(bits[layer].length) + (bits[layer].length << 3) + blockLight[layer].length;
+                if (sky) {
+                    size += skyLight[layer].length;
+                }
+            }
+        }
+        PacketDataSerializer out = new PacketDataSerializer(Unpooled.buffer(size + 32));
+        out.writeInt(x);
+        out.writeInt(z);
+        out.writeBoolean(full);
+        out.d(mask);
+        out.d(size);
+        for (int layer = 0; layer < 16; layer++) {
+            if (palettes[layer] != null) {
+                out.writeBytes(palettes[layer]);
+                out.a(bits[layer]);
+                out.writeBytes(blockLight[layer]);
+                if (sky) {
+                    out.writeBytes(skyLight[layer]);
+                }
+            }
+        }
+        if (biomes != null) {
+            out.writeBytes(biomes);
+        }
+        out.d(tiles.size());
+        for (NBTTagCompound tile : tiles) {
+            out.a(tile);
+        }
+        PacketPlayOutMapChunk packet = new PacketPlayOutMapChunk();
+        packet.a(out);
+        return packet;
+    }
+}
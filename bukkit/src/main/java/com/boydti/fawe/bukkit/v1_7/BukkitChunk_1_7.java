@@ -5,6 +5,8 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.bukkit.v0.BukkitQueue_0;
 import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
@@ -13,6 +15,7 @@ import com.sk89q.jnbt.ListTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.internal.Constants;
+import java.io.IOException;
 import java.util.*;
 import net.minecraft.server.v1_7_R4.*;
 import org.bukkit.Bukkit;
@@ -47,17 +50,49 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk, BukkitQueue17> {
     public CharFaweChunk copy(boolean shallow) {
         BukkitChunk_1_7 copy;
         if (shallow) {
-            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), ids, count, air, heightMap, byteIds, datas);
+            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), inflate(), count, air, heightMap, byteIds, datas);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone(), (byte[][]) MainUtil.copyNd(byteIds), datas.clone());
+            copy = new BukkitChunk_1_7(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone(), (byte[][]) MainUtil.copyNd(byteIds), datas.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
             copy.chunk = chunk;
         }
         return copy;
     }
 
+    @Override
+    public void writeChanges(FaweOutputStream out) throws IOException {
+        super.writeChanges(out);
+        for (int i = 0; i < byteIds.length; i++) {
+            byte[] array = byteIds[i];
+            out.writeBoolean(array != null);
+            if (array != null) {
+                out.write(array);
+            }
+            NibbleArray data = datas[i];
+            out.writeBoolean(data != null);
+            if (data != null) {
+                out.write(data.a);
+            }
+        }
+    }
+
+    @Override
+    public void readChanges(FaweInputStream in) throws IOException {
+        super.readChanges(in);
+        for (int i = 0; i < byteIds.length; i++) {
+            if (in.readBoolean()) {
+                in.readFully(byteIds[i] = new byte[4096]);
+            }
+            if (in.readBoolean()) {
+                byte[] data = new byte[2048];
+                in.readFully(data);
+                datas[i] = new NibbleArray(data, 4);
+            }
+        }
+    }
+
     public byte[] getByteIdArray(int i) {
         return this.byteIds[i];
     }
@@ -234,6 +234,8 @@ public class CFICommands extends MethodCommands {
 
             fp.sendMessage(BBC.getPrefix() + "Generating");
             generator.generate();
+            // Only drop the undo buffers once the export succeeded, so a failed export can still be undone
+            generator.discardChanges();
             generator.setPacketViewer(null);
             generator.setImageViewer(null);
             settings.remove();
@@ -262,6 +262,7 @@ public enum BBC {
     WORLDEDIT_CANCEL_REASON("&cYour WorldEdit action was cancelled:&7 %s0&c.", "Cancel"),
     WORLDEDIT_CANCEL_REASON_MANUAL("Manual cancellation", "Cancel"),
     WORLDEDIT_CANCEL_REASON_LOW_MEMORY("Low memory", "Cancel"),
+    WORLDEDIT_CANCEL_REASON_SPILL_FAILED("Queued changes could not be read back from disk", "Cancel"),
     WORLDEDIT_CANCEL_REASON_MAX_CHANGES("Too many blocks changed", "Cancel"),
     WORLDEDIT_CANCEL_REASON_MAX_CHECKS("Too many block checks", "Cancel"),
     WORLDEDIT_CANCEL_REASON_MAX_TILES("Too many blockstates", "Cancel"),
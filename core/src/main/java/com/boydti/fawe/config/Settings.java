@@ -81,6 +81,15 @@ public class Settings extends Config {
         public String TEXTURES = "textures";
         public String HEIGHTMAP = "heightmap";
         public String HISTORY = "history";
+        @Comment({
+                "Dictionaries used by history compression-level 10",
+                " - Do not delete these while history written with them exists"
+        })
+        public String HISTORY_DICTIONARIES = "history-dictionaries";
+        @Comment({
+                "Queued chunks moved to disk when memory is low (see queue.spill-to-disk)",
+        })
+        public String SPILL = "spill";
         @Comment({
                 "Multiple servers can use the same clipboards",
                 " - Use a shared directory or NFS/Samba"
@@ -211,6 +220,7 @@ public class Settings extends Config {
                 "7 = 1 x high, 1 x medium, 1 x fast",
                 "8 = 1 x high, 1 x medium, 2 x fast",
                 "9 = 1 x high, 1 x medium, 3 x fast (best compression)",
+                "10 = 1 x zstd, block changes use a dictionary trained on your history (best compression per CPU)",
                 "NOTE: If using disk, do some compression (3+) as smaller files save faster"
         })
         public int COMPRESSION_LEVEL = 3;
@@ -311,6 +321,28 @@ public class Settings extends Config {
         })
         public int DISCARD_AFTER_MS = 60000;
 
+        @Comment({
+                "Store queued sections as a palette + packed bit array until they are placed",
+                " - Sections with few block types use a fraction of the memory (e.g. 512 bytes instead of 8KB)",
+                " - Sections are expanded when a chunk is dispatched",
+        })
+        public boolean PALETTE_SECTIONS = true;
+
+        @Comment({
+                "Move queued chunks to disk when memory is low, instead of cancelling or discarding the edit",
+                " - Chunks are read back when they are placed",
+                " - Lets edits much larger than the heap complete (at the cost of disk IO)",
+                " - Takes priority over prevent-crashes for queued chunks",
+        })
+        public boolean SPILL_TO_DISK = false;
+
+        @Comment({
+                "Build chunk packets off the main thread",
+                " - Each chunk is serialized once, and the same packet is sent to every player watching it",
+                " - Real chunks are copied on the main thread, and the packet is only sent if the chunk is unchanged",
+        })
+        public boolean ASYNC_CHUNK_PACKETS = true;
+
         public static class PROGRESS {
             @Comment({"Display constant titles about the progress of a user's edit",
                     " - false = disabled",
@@ -336,6 +368,13 @@ public class Settings extends Config {
                 " - IMPROPER USE CAN CAUSE WORLD CORRUPTION!",
         })
         public boolean ANVIL_QUEUE_MODE = false;
+        @Comment({
+                "[UNSAFE] Write changes to unloaded chunks directly to the region files",
+                " - Loaded chunks are placed normally, and aren't unloaded",
+                " - Large edits no longer load each chunk on the main thread",
+                " - Not used if anvil-queue-mode is enabled",
+        })
+        public boolean HYBRID_ANVIL_QUEUE = false;
         @Comment({
                 "[SAFE] Dynamically increase the number of chunks rendered",
                 " - Requires Paper: ci.destroystokyo.com/job/PaperSpigot/",
@@ -377,6 +416,13 @@ public class Settings extends Config {
                 " - PERM: fawe.freebuild.<plugin>"
         })
         public boolean FREEBUILD = false;
+
+        @Comment({
+                "Compile expressions to bytecode (//generate, //deform, #= patterns)",
+                " - Arithmetic, math functions, assignments, if/else and statement sequences are compiled",
+                " - Loops, switch, return and dynamic functions (query, perlin, random...) are still interpreted"
+        })
+        public boolean COMPILE_EXPRESSIONS = false;
     }
 
     public static class WEB {
@@ -4,6 +4,7 @@ import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweAPI;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.logging.rollback.RollbackOptimizedHistory;
+import com.boydti.fawe.object.RegionWrapper;
 import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.changeset.DiskStorageHistory;
 import com.boydti.fawe.object.task.AsyncNotifyQueue;
@@ -19,6 +20,7 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
@@ -31,7 +33,10 @@ public class RollbackDatabase extends AsyncNotifyQueue {
     private final World world;
     private Connection connection;
 
+    private static final int INSERT_BATCH_SIZE = 100;
+
     private String INSERT_EDIT;
+    private String INSERT_EDITS;
     private String CREATE_TABLE;
     //    private String GET_EDITS_POINT;
     private String GET_EDITS;
@@ -65,6 +70,11 @@ public class RollbackDatabase extends AsyncNotifyQueue {
         GET_EDITS_USER_ASC = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? AND `player`=? ORDER BY `time` ASC, `id` ASC";
         DELETE_EDITS_USER = "DELETE FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? AND `player`=?";
         DELETE_EDIT_USER = "DELETE FROM `" + prefix + "edits` WHERE `player`=? AND `id`=?";
+        StringBuilder insertEdits = new StringBuilder(INSERT_EDIT);
+        for (int i = 1; i < INSERT_BATCH_SIZE; i++) {
+            insertEdits.append(",(?,?,?,?,?,?,?,?,?)");
+        }
+        INSERT_EDITS = insertEdits.toString();
         init();
         purge((int) TimeUnit.DAYS.toMillis(Settings.IMP.HISTORY.DELETE_AFTER_DAYS));
     }
@@ -93,6 +103,48 @@ public class RollbackDatabase extends AsyncNotifyQueue {
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS `" + prefix + "edits_time` ON `" + prefix + "edits` (`time`)");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        initSpatialIndex();
+    }
+
+    /**
+     * Keep an R*Tree of the edit bounds in sync with the edits table (using triggers)<br>
+     * - Lookups then only visit edits whose bounds intersect the area, rather than scanning the whole table<br>
+     * - The R*Tree stores 32 bit floats (rounded outwards), so the exact bounds are still checked on the matches<br>
+     * - Falls back to scanning if the sqlite build doesn't include the rtree module
+     */
+    private void initSpatialIndex() {
+        String edits = "`" + prefix + "edits`";
+        String rtree = "`" + prefix + "edits_rtree`";
+        try (Statement stmt = connection.createStatement()) {
+            // INSERT OR REPLACE only fires the delete trigger with recursive triggers
+            stmt.execute("PRAGMA recursive_triggers = ON");
+            boolean exists;
+            try (ResultSet result = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type='table' AND name='" + prefix + "edits_rtree'")) {
+                exists = result.next();
+            }
+            if (!exists) {
+                stmt.executeUpdate("CREATE VIRTUAL TABLE " + rtree + " USING rtree(`id`, `x1`, `x2`, `y1`, `y2`, `z1`, `z2`)");
+                stmt.executeUpdate("INSERT INTO " + rtree + " SELECT `rowid`, `x1`, `x2`, `y1`, `y2`, `z1`, `z2` FROM " + edits);
+            }
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS `" + prefix + "edits_rtree_insert` AFTER INSERT ON " + edits + " BEGIN INSERT INTO " + rtree + " VALUES (new.`rowid`, new.`x1`, new.`x2`, new.`y1`, new.`y2`, new.`z1`, new.`z2`); END");
+            stmt.executeUpdate("CREATE TRIGGER IF NOT EXISTS `" + prefix + "edits_rtree_delete` AFTER DELETE ON " + edits + " BEGIN DELETE FROM " + rtree + " WHERE `id`=old.`rowid`; END");
+        } catch (SQLException e) {
+            Fawe.debug("Rollback database spatial index is unavailable (" + e.getMessage() + "), lookups will scan the edits table");
+            return;
+        }
+        // Numbered parameters so the bounds can be bound once and used for both the R*Tree and the exact check
+        String bounds = "`x2`>=?1 AND `x1`<=?2 AND `y2`>=?3 AND `y1`<=?4 AND `z2`>=?5 AND `z1`<=?6";
+        String select = "SELECT e.`player`,e.`id` FROM " + rtree + " r JOIN " + edits + " e ON e.`rowid`=r.`id` WHERE " + bounds.replace("`x", "r.`x").replace("`y", "r.`y").replace("`z", "r.`z") + " AND " + bounds.replace("`x", "e.`x").replace("`y", "e.`y").replace("`z", "e.`z") + " AND e.`time`>?7";
+        GET_EDITS = select + " ORDER BY e.`time` DESC, e.`id` DESC";
+        GET_EDITS_USER = select + " AND e.`player`=?8 ORDER BY e.`time` DESC, e.`id` DESC";
+        GET_EDITS_ASC = select + " ORDER BY e.`time` ASC, e.`id` ASC";
+        GET_EDITS_USER_ASC = select + " AND e.`player`=?8 ORDER BY e.`time` ASC, e.`id` ASC";
+        DELETE_EDITS_USER = "DELETE FROM " + edits + " WHERE `rowid` IN (SELECT `id` FROM " + rtree + " WHERE " + bounds + ") AND " + bounds + " AND `time`>?7 AND `player`=?8";
     }
 
     public void delete(final UUID uuid, final int id) {
@@ -149,6 +201,7 @@ public class RollbackDatabase extends AsyncNotifyQueue {
                         TaskManager.IMP.taskNow(whenDone, false);
                         return;
                     }
+                    RegionWrapper area = new RegionWrapper(pos1, pos2);
                     do {
                         byte[] uuidBytes = result.getBytes(1);
                         int index = result.getInt(2);
@@ -156,7 +209,7 @@ public class RollbackDatabase extends AsyncNotifyQueue {
                         long high = bb.getLong();
                         long low = bb.getLong();
                         DiskStorageHistory history = new DiskStorageHistory(world, new UUID(high, low), index);
-                        if (history.getBDFile().exists()) {
+                        if (history.getBDFile().exists() && history.mayContain(area)) {
                             onEach.run(history);
                         }
                     } while (result.next());
@@ -220,22 +273,19 @@ public class RollbackDatabase extends AsyncNotifyQueue {
                 copy[i] = historyChanges.poll();
             }
 
-            try (PreparedStatement stmt = connection.prepareStatement(INSERT_EDIT)) {
-                for (RollbackOptimizedHistory change : copy) {
-                    // `player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`
-                    UUID uuid = change.getUUID();
-                    byte[] uuidBytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
-                    stmt.setBytes(1, uuidBytes);
-                    stmt.setInt(2, change.getIndex());
-                    stmt.setInt(3, change.getMinX());
-                    stmt.setByte(4, (byte) (change.getMinY() - 128));
-                    stmt.setInt(5, change.getMinZ());
-                    stmt.setInt(6, change.getMaxX());
-                    stmt.setByte(7, (byte) (change.getMaxY() - 128));
-                    stmt.setInt(8, change.getMaxZ());
-                    stmt.setInt(9, (int) (change.getTime() / 1000));
+            // Multi row inserts of INSERT_BATCH_SIZE, then single rows for the remainder
+            try (PreparedStatement batch = size >= INSERT_BATCH_SIZE ? connection.prepareStatement(INSERT_EDITS) : null;
+                 PreparedStatement stmt = connection.prepareStatement(INSERT_EDIT)) {
+                int i = 0;
+                for (; i + INSERT_BATCH_SIZE <= size; i += INSERT_BATCH_SIZE) {
+                    for (int j = 0; j < INSERT_BATCH_SIZE; j++) {
+                        setEdit(batch, j * 9, copy[i + j]);
+                    }
+                    batch.executeUpdate();
+                }
+                for (; i < size; i++) {
+                    setEdit(stmt, 0, copy[i]);
                     stmt.executeUpdate();
-                    stmt.clearParameters();
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -248,6 +298,21 @@ public class RollbackDatabase extends AsyncNotifyQueue {
         return false;
     }
 
+    private void setEdit(PreparedStatement stmt, int offset, RollbackOptimizedHistory change) throws SQLException {
+        // `player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`
+        UUID uuid = change.getUUID();
+        byte[] uuidBytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+        stmt.setBytes(offset + 1, uuidBytes);
+        stmt.setInt(offset + 2, change.getIndex());
+        stmt.setInt(offset + 3, change.getMinX());
+        stmt.setByte(offset + 4, (byte) (change.getMinY() - 128));
+        stmt.setInt(offset + 5, change.getMinZ());
+        stmt.setInt(offset + 6, change.getMaxX());
+        stmt.setByte(offset + 7, (byte) (change.getMaxY() - 128));
+        stmt.setInt(offset + 8, change.getMaxZ());
+        stmt.setInt(offset + 9, (int) (change.getTime() / 1000));
+    }
+
     public void commit() {
         try {
             if (connection == null) {
@@ -1,11 +1,16 @@
 package com.boydti.fawe.example;
 
 import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.collection.PaletteSection;
 import com.boydti.fawe.util.MathMan;
 import com.sk89q.jnbt.CompoundTag;
 
+import java.io.IOException;
 import java.util.*;
 
 public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T> {
@@ -15,6 +20,14 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public final short[] air;
     public final byte[] heightMap;
 
+    /**
+     * Sections which are still palette compressed (the matching ids entry is null)<br>
+     * - null if QUEUE.PALETTE_SECTIONS is disabled<br>
+     * - Expanded into ids by getIdArray / getCombinedIdArrays / inflate<br>
+     * - Reads which don't need the array to stay valid should use getBlockCombinedId or getIdArray(int, char[])
+     */
+    public PaletteSection[] palettes;
+
     public byte[] biomes;
     public HashMap<Short, CompoundTag> tiles;
     public HashSet<CompoundTag> entities;
@@ -28,6 +41,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
         this.count = count;
         this.air = air;
         this.heightMap = heightMap;
+        this.palettes = usePalettes(parent) ? new PaletteSection[ids.length] : null;
     }
 
     /**
@@ -43,6 +57,12 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
         this.count = new short[HEIGHT >> 4];
         this.air = new short[HEIGHT >> 4];
         this.heightMap = new byte[256];
+        this.palettes = usePalettes(parent) ? new PaletteSection[HEIGHT >> 4] : null;
+    }
+
+    private static boolean usePalettes(FaweQueue parent) {
+        Settings settings = parent == null ? Settings.IMP : parent.getSettings();
+        return settings.QUEUE.PALETTE_SECTIONS;
     }
 
     @Override
@@ -104,7 +124,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public int getBitMask() {
         int bitMask = 0;
         for (int section = 0; section < ids.length; section++) {
-            if (ids[section] != null) {
+            if (ids[section] != null || (palettes != null && palettes[section] != null)) {
                 bitMask += 1 << section;
             }
         }
@@ -119,14 +139,93 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
      */
     @Override
     public char[] getIdArray(final int i) {
-        return this.ids[i];
+        char[] array = this.ids[i];
+        if (array == null && palettes != null && palettes[i] != null) {
+            array = inflate(i);
+        }
+        return array;
+    }
+
+    /**
+     * Get the raw data for a section, without expanding a palette compressed section in place
+     *
+     * @param i
+     * @param buffer used for the ids of a palette compressed section
+     * @return
+     */
+    @Override
+    public char[] getIdArray(final int i, char[] buffer) {
+        char[] array = this.ids[i];
+        if (array == null && palettes != null && palettes[i] != null) {
+            array = palettes[i].toArray(buffer);
+        }
+        return array;
     }
 
     @Override
     public char[][] getCombinedIdArrays() {
+        return inflate();
+    }
+
+    /**
+     * Expand every palette compressed section into the raw ids arrays
+     *
+     * @return the ids arrays
+     */
+    public char[][] inflate() {
+        if (palettes != null) {
+            for (int i = 0; i < palettes.length; i++) {
+                if (palettes[i] != null) {
+                    inflate(i);
+                }
+            }
+        }
         return this.ids;
     }
 
+    private char[] inflate(int i) {
+        char[] array = this.ids[i] = palettes[i].toArray();
+        palettes[i] = null;
+        return array;
+    }
+
+    private void setCombined(int i, int j, char value) {
+        char[] vs = this.ids[i];
+        int previous;
+        if (vs == null) {
+            if (palettes != null) {
+                PaletteSection section = palettes[i];
+                if (section == null) {
+                    section = palettes[i] = new PaletteSection();
+                }
+                previous = section.set(j, value);
+                if (previous == -1) {
+                    vs = inflate(i);
+                    previous = vs[j];
+                    vs[j] = value;
+                }
+            } else {
+                vs = this.ids[i] = new char[4096];
+                previous = 0;
+                vs[j] = value;
+            }
+        } else {
+            previous = vs[j];
+            vs[j] = value;
+        }
+        switch (previous) {
+            case 0:
+                this.count[i]++;
+                break;
+            case 1:
+                this.air[i]--;
+                break;
+        }
+        if (value == 1) {
+            this.air[i]++;
+        }
+    }
+
     @Override
     public byte[] getBiomeArray() {
         return this.biomes;
@@ -135,6 +234,9 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     @Override
     public int getBlockCombinedId(int x, int y, int z) {
         short i = FaweCache.CACHE_I[y][z][x];
+        if (palettes != null && palettes[i] != null) {
+            return palettes[i].get(FaweCache.CACHE_J[y][z][x]);
+        }
         char[] array = getIdArray(i);
         if (array == null) {
             return 0;
@@ -195,24 +297,9 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public void setBlock(int x, int y, int z, int id) {
         final int i = FaweCache.CACHE_I[y][z][x];
         final int j = FaweCache.CACHE_J[y][z][x];
-        char[] vs = this.ids[i];
-        if (vs == null) {
-            vs = this.ids[i] = new char[4096];
-            this.count[i]++;
-        } else {
-            switch (vs[j]) {
-                case 0:
-                    this.count[i]++;
-                    break;
-                case 1:
-                    this.air[i]--;
-                    break;
-            }
-        }
         switch (id) {
             case 0:
-                this.air[i]++;
-                vs[j] = (char) 1;
+                setCombined(i, j, (char) 1);
                 return;
             case 11:
             case 39:
@@ -231,7 +318,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 50:
             case 10:
             default:
-                vs[j] = (char) (id << 4);
+                setCombined(i, j, (char) (id << 4));
                 heightMap[z << 4 | x] = (byte) y;
                 return;
         }
@@ -241,24 +328,9 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
     public void setBlock(final int x, final int y, final int z, final int id, int data) {
         final int i = FaweCache.CACHE_I[y][z][x];
         final int j = FaweCache.CACHE_J[y][z][x];
-        char[] vs = this.ids[i];
-        if (vs == null) {
-            vs = this.ids[i] = new char[4096];
-            this.count[i]++;
-        } else {
-            switch (vs[j]) {
-                case 0:
-                    this.count[i]++;
-                    break;
-                case 1:
-                    this.air[i]--;
-                    break;
-            }
-        }
         switch (id) {
             case 0:
-                this.air[i]++;
-                vs[j] = (char) 1;
+                setCombined(i, j, (char) 1);
                 return;
             case 39:
             case 40:
@@ -318,7 +390,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 190:
             case 191:
             case 192:
-                vs[j] = (char) (id << 4);
+                setCombined(i, j, (char) (id << 4));
                 heightMap[z << 4 | x] = (byte) y;
                 return;
             case 130:
@@ -335,7 +407,7 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
             case 65:
             case 68: // removed
             default:
-                vs[j] = (char) ((id << 4) + data);
+                setCombined(i, j, (char) ((id << 4) + data));
                 heightMap[z << 4 | x] = (byte) y;
                 return;
         }
@@ -357,4 +429,116 @@ public abstract class CharFaweChunk<T, V extends FaweQueue> extends FaweChunk<T>
 
     @Override
     public abstract CharFaweChunk<T, V> copy(boolean shallow);
+
+    /**
+     * Write the queued changes, so they can be read back into a new chunk with {@link #readChanges(FaweInputStream)}<br>
+     * - Palette sections are written without expanding them<br>
+     * - Subclasses which keep their own block arrays must override both methods to include them
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void writeChanges(FaweOutputStream out) throws IOException {
+        for (int i = 0; i < ids.length; i++) {
+            char[] array = ids[i];
+            PaletteSection palette = palettes != null ? palettes[i] : null;
+            if (array != null) {
+                out.write(1);
+                byte[] buffer = new byte[array.length << 1];
+                for (int j = 0, k = 0; j < array.length; j++) {
+                    char value = array[j];
+                    buffer[k++] = (byte) (value >> 8);
+                    buffer[k++] = (byte) value;
+                }
+                out.write(buffer);
+            } else if (palette != null) {
+                out.write(2);
+                palette.write(out);
+            } else {
+                out.write(0);
+            }
+            out.writeShort(count[i]);
+            out.writeShort(air[i]);
+        }
+        out.write(heightMap);
+        out.writeBoolean(biomes != null);
+        if (biomes != null) {
+            out.write(biomes);
+        }
+        Map<Short, CompoundTag> tiles = getTiles();
+        out.writeVarInt(tiles.size());
+        for (Map.Entry<Short, CompoundTag> entry : tiles.entrySet()) {
+            out.writeShort(entry.getKey());
+            out.writeNBT("", entry.getValue());
+        }
+        Set<CompoundTag> entities = getEntities();
+        out.writeVarInt(entities.size());
+        for (CompoundTag entity : entities) {
+            out.writeNBT("", entity);
+        }
+        Set<UUID> removes = getEntityRemoves();
+        out.writeVarInt(removes.size());
+        for (UUID uuid : removes) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * Read changes written by {@link #writeChanges(FaweOutputStream)} into this (empty) chunk
+     *
+     * @param in
+     * @throws IOException
+     */
+    public void readChanges(FaweInputStream in) throws IOException {
+        byte[] buffer = null;
+        for (int i = 0; i < ids.length; i++) {
+            switch (in.read()) {
+                case 1: {
+                    if (buffer == null) {
+                        buffer = new byte[8192];
+                    }
+                    in.readFully(buffer);
+                    char[] array = new char[4096];
+                    for (int j = 0, k = 0; j < array.length; j++, k += 2) {
+                        array[j] = (char) (((buffer[k] & 0xFF) << 8) | (buffer[k + 1] & 0xFF));
+                    }
+                    ids[i] = array;
+                    break;
+                }
+                case 2: {
+                    PaletteSection palette = PaletteSection.read(in);
+                    if (palettes != null) {
+                        palettes[i] = palette;
+                    } else {
+                        ids[i] = palette.toArray();
+                    }
+                    break;
+                }
+            }
+            count[i] = in.readShort();
+            air[i] = in.readShort();
+        }
+        in.readFully(heightMap);
+        if (in.readBoolean()) {
+            biomes = new byte[256];
+            in.readFully(biomes);
+        }
+        int numTiles = in.readVarInt();
+        for (int i = 0; i < numTiles; i++) {
+            short index = in.readShort();
+            if (tiles == null) {
+                tiles = new HashMap<>();
+            }
+            tiles.put(index, (CompoundTag) in.readNBT().getTag());
+        }
+        int numEntities = in.readVarInt();
+        for (int i = 0; i < numEntities; i++) {
+            setEntity((CompoundTag) in.readNBT().getTag());
+        }
+        int numRemoves = in.readVarInt();
+        for (int i = 0; i < numRemoves; i++) {
+            removeEntity(new UUID(in.readLong(), in.readLong()));
+        }
+    }
 }
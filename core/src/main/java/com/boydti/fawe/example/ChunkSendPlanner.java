@@ -0,0 +1,166 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweLocation;
+import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.TaskManager;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides how a changed chunk is sent to players, and batches the sends for each tick<br>
+ * - Chunks with few changes go out as a multi block change, others resend the changed sections<br>
+ * - The choice is made by estimating the packet size of each from the queued block count and bit mask<br>
+ * - Sends for the same chunk within a tick are merged, and everything is sent once per tick on the main thread
+ */
+public class ChunkSendPlanner {
+
+    /**
+     * Approximate size of a resent section (global palette ids + block light), plus {@link #SKY_BYTES} with sky light
+     */
+    public static final int SECTION_BYTES = 4 + ((13 * 4096) >> 3) + 2048;
+    public static final int SKY_BYTES = 2048;
+    /**
+     * Approximate size of a single entry in a multi block change (position + id)
+     */
+    public static final int BLOCK_CHANGE_BYTES = 5;
+    /**
+     * Above this many changes the client relights each block separately, which is slower than rebuilding the sections
+     */
+    public static final int MAX_BLOCK_CHANGES = 512;
+
+    private final NMSMappedFaweQueue queue;
+
+    private Long2ObjectOpenHashMap<FaweChunk> blockUpdates = new Long2ObjectOpenHashMap<>();
+    private Long2IntOpenHashMap sectionUpdates = new Long2IntOpenHashMap();
+    private boolean scheduled;
+
+    public ChunkSendPlanner(NMSMappedFaweQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * If sending the queued blocks of a chunk is cheaper than resending its sections
+     *
+     * @param chunk
+     * @param sky if sections are sent with sky light
+     * @return
+     */
+    public static boolean isBlockUpdateCheaper(FaweChunk chunk, boolean sky) {
+        if (!(chunk instanceof CharFaweChunk)) {
+            return false;
+        }
+        CharFaweChunk cfc = (CharFaweChunk) chunk;
+        // Tiles and biomes aren't part of a block change
+        if (cfc.biomes != null || !cfc.getTiles().isEmpty()) {
+            return false;
+        }
+        int mask = cfc.getBitMask();
+        if (mask == 0) {
+            return false;
+        }
+        int count = cfc.getTotalCount();
+        if (count == 0 || count > MAX_BLOCK_CHANGES) {
+            return false;
+        }
+        long sectionBytes = (long) Integer.bitCount(mask) * (SECTION_BYTES + (sky ? SKY_BYTES : 0));
+        return (long) count * BLOCK_CHANGE_BYTES < sectionBytes;
+    }
+
+    /**
+     * Plan the send for a chunk which has been placed (sent on the next tick)
+     *
+     * @param chunk
+     */
+    public synchronized void add(FaweChunk chunk) {
+        long pair = MathMan.pairInt(chunk.getX(), chunk.getZ());
+        if (!sectionUpdates.containsKey(pair) && !blockUpdates.containsKey(pair) && isBlockUpdateCheaper(chunk, queue.hasSky())) {
+            blockUpdates.put(pair, chunk);
+        } else {
+            // Several sends for one chunk this tick, resend every section they touch
+            int mask = chunk.getBitMask();
+            FaweChunk previous = blockUpdates.remove(pair);
+            if (previous != null) {
+                mask = mergeMask(mask, previous.getBitMask());
+            }
+            if (sectionUpdates.containsKey(pair)) {
+                mask = mergeMask(mask, sectionUpdates.get(pair));
+            }
+            sectionUpdates.put(pair, mask);
+        }
+        if (!scheduled) {
+            scheduled = true;
+            TaskManager.IMP.task(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * A mask of 0 resends the whole chunk
+     */
+    private static int mergeMask(int a, int b) {
+        return (a == 0 || b == 0) ? 0 : a | b;
+    }
+
+    /**
+     * Send everything planned since the last flush
+     */
+    public void flush() {
+        Long2ObjectOpenHashMap<FaweChunk> blocks;
+        Long2IntOpenHashMap sections;
+        synchronized (this) {
+            blocks = this.blockUpdates;
+            sections = this.sectionUpdates;
+            this.blockUpdates = new Long2ObjectOpenHashMap<>();
+            this.sectionUpdates = new Long2IntOpenHashMap();
+            scheduled = false;
+        }
+        for (Long2IntMap.Entry entry : sections.long2IntEntrySet()) {
+            long pair = entry.getLongKey();
+            try {
+                queue.sendChunk(MathMan.unpairIntX(pair), MathMan.unpairIntY(pair), entry.getIntValue());
+            } catch (Throwable e) {
+                MainUtil.handleError(e);
+            }
+        }
+        if (blocks.isEmpty()) {
+            return;
+        }
+        FawePlayer[] players = getPlayers();
+        if (players.length == 0) {
+            return;
+        }
+        for (FaweChunk chunk : blocks.values()) {
+            try {
+                queue.sendBlockUpdate(chunk, players);
+            } catch (Throwable e) {
+                MainUtil.handleError(e);
+            }
+        }
+    }
+
+    /**
+     * The players in this world (the queue only sends to those watching each chunk)
+     */
+    private FawePlayer[] getPlayers() {
+        String world = queue.getWorldName();
+        List<FawePlayer> players = new ArrayList<>();
+        for (FawePlayer player : Fawe.get().getCachedPlayers()) {
+            FaweLocation loc = player.getLocation();
+            if (loc != null && world.equals(loc.world)) {
+                players.add(player);
+            }
+        }
+        return players.toArray(new FawePlayer[players.size()]);
+    }
+}
@@ -0,0 +1,264 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.SetQueue;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue map which several threads can write to at once<br>
+ * - Chunks are split between {@link #STRIPES} segments by their position, each guarded by its own lock<br>
+ * - Neighbouring chunks use different segments, so threads working on nearby areas rarely wait on each other<br>
+ * - Each change (setBlock etc.) is made while holding the segment lock, and chunks are only dispatched under the same lock
+ */
+public class ConcurrentFaweQueueMap implements IFaweQueueMap {
+
+    /**
+     * The number of segments (8x8 chunks)
+     */
+    public static final int STRIPES = 64;
+
+    private final MappedFaweQueue parent;
+    private final Long2ObjectOpenHashMap<FaweChunk>[] segments;
+    private int cursor;
+
+    public ConcurrentFaweQueueMap(MappedFaweQueue parent) {
+        this.parent = parent;
+        this.segments = new Long2ObjectOpenHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Long2ObjectOpenHashMap<>();
+        }
+    }
+
+    private Long2ObjectOpenHashMap<FaweChunk> getSegment(int cx, int cz) {
+        return segments[(cx & 7) + ((cz & 7) << 3)];
+    }
+
+
+    @Override
+    public Collection<FaweChunk> getFaweCunks() {
+        ArrayList<FaweChunk> chunks = new ArrayList<>();
+        for (Long2ObjectOpenHashMap<FaweChunk> segment : segments) {
+            synchronized (segment) {
+                chunks.addAll(segment.values());
+            }
+        }
+        return chunks;
+    }
+
+    @Override
+    public void forEachChunk(RunnableVal<FaweChunk> onEach) {
+        for (Long2ObjectOpenHashMap<FaweChunk> segment : segments) {
+            synchronized (segment) {
+                for (FaweChunk chunk : segment.values()) {
+                    onEach.run(chunk);
+                }
+            }
+        }
+    }
+
+    @Override
+    public FaweChunk getFaweChunk(int cx, int cz) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            return getFaweChunk(segment, cx, cz);
+        }
+    }
+
+    /**
+     * Get or create a chunk (the segment lock must be held)
+     */
+    private FaweChunk getFaweChunk(Long2ObjectOpenHashMap<FaweChunk> segment, int cx, int cz) {
+        long pair = MathMan.pairInt(cx, cz);
+        FaweChunk chunk = segment.get(pair);
+        if (chunk == null) {
+            chunk = parent.getFaweChunk(cx, cz);
+            segment.put(pair, chunk);
+            updateProgress();
+        }
+        return chunk;
+    }
+
+    @Override
+    public void setBlock(int cx, int cz, int x, int y, int z, int id, int data) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).setBlock(x, y, z, id, data);
+        }
+    }
+
+    @Override
+    public void setBlock(int cx, int cz, int x, int y, int z, int id) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).setBlock(x, y, z, id);
+        }
+    }
+
+    @Override
+    public void setTile(int cx, int cz, int x, int y, int z, CompoundTag tag) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).setTile(x, y, z, tag);
+        }
+    }
+
+    @Override
+    public void setEntity(int cx, int cz, CompoundTag tag) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).setEntity(tag);
+        }
+    }
+
+    @Override
+    public void removeEntity(int cx, int cz, UUID uuid) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).removeEntity(uuid);
+        }
+    }
+
+    @Override
+    public void setBiome(int cx, int cz, int x, int z, BaseBiome biome) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).setBiome(x, z, biome);
+        }
+    }
+
+    @Override
+    public void addNotifyTask(int cx, int cz, Runnable runnable) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            getFaweChunk(segment, cx, cz).addNotifyTask(runnable);
+        }
+    }
+
+    @Override
+    public FaweChunk getCachedFaweChunk(int cx, int cz) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(cx, cz);
+        synchronized (segment) {
+            return segment.get(MathMan.pairInt(cx, cz));
+        }
+    }
+
+    @Override
+    public void add(FaweChunk chunk) {
+        Long2ObjectOpenHashMap<FaweChunk> segment = getSegment(chunk.getX(), chunk.getZ());
+        long pair = MathMan.pairInt(chunk.getX(), chunk.getZ());
+        synchronized (segment) {
+            // Keep the existing chunk, the same as the default map
+            if (!segment.containsKey(pair)) {
+                segment.put(pair, chunk);
+                updateProgress();
+            }
+        }
+    }
+
+    private void updateProgress() {
+        if (parent.getProgressTask() != null) {
+            try {
+                parent.getProgressTask().run(FaweQueue.ProgressType.QUEUE, size());
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Long2ObjectOpenHashMap<FaweChunk> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Long2ObjectOpenHashMap<FaweChunk> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Remove the next chunk to dispatch, taking the segments in turn
+     *
+     * @return the chunk, or null if the map is empty
+     */
+    private FaweChunk poll() {
+        for (int i = 0; i < STRIPES; i++) {
+            Long2ObjectOpenHashMap<FaweChunk> segment = segments[cursor];
+            cursor = (cursor + 1) & (STRIPES - 1);
+            synchronized (segment) {
+                if (!segment.isEmpty()) {
+                    ObjectIterator<FaweChunk> iter = segment.values().iterator();
+                    FaweChunk chunk = iter.next();
+                    iter.remove();
+                    return chunk;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean next(int amount, long time) {
+        try {
+            long start = System.currentTimeMillis();
+            if (amount == 1) {
+                do {
+                    FaweChunk chunk = poll();
+                    if (chunk == null) {
+                        break;
+                    }
+                    parent.start(chunk);
+                    chunk.call();
+                    parent.end(chunk);
+                } while (System.currentTimeMillis() - start < time);
+            } else {
+                ExecutorCompletionService service = SetQueue.IMP.getCompleterService();
+                ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+                int submitted = 0;
+                // Submit at least `amount` chunks, then keep going while there is time
+                while (submitted < amount || System.currentTimeMillis() - start < time) {
+                    FaweChunk chunk = poll();
+                    if (chunk == null) {
+                        break;
+                    }
+                    parent.start(chunk);
+                    service.submit(chunk);
+                    if (++submitted > amount) {
+                        Future future = service.poll(50, TimeUnit.MILLISECONDS);
+                        if (future != null) {
+                            parent.end((FaweChunk) future.get());
+                        }
+                    }
+                }
+                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                Future future;
+                while ((future = service.poll()) != null) {
+                    parent.end((FaweChunk) future.get());
+                }
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        return size() != 0;
+    }
+}
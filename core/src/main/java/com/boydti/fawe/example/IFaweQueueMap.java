@@ -2,7 +2,10 @@ package com.boydti.fawe.example;
 
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.RunnableVal;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.world.biome.BaseBiome;
 import java.util.Collection;
+import java.util.UUID;
 
 public interface IFaweQueueMap {
 
@@ -21,4 +24,35 @@ public interface IFaweQueueMap {
     int size();
 
     boolean next(int size, long time);
+
+    // Changes to the queued chunk at cx, cz (x, y, z are relative to the chunk)
+    // A map which allows concurrent writers overrides these to make each change while holding the lock for that chunk
+
+    default void setBlock(int cx, int cz, int x, int y, int z, int id, int data) {
+        getFaweChunk(cx, cz).setBlock(x, y, z, id, data);
+    }
+
+    default void setBlock(int cx, int cz, int x, int y, int z, int id) {
+        getFaweChunk(cx, cz).setBlock(x, y, z, id);
+    }
+
+    default void setTile(int cx, int cz, int x, int y, int z, CompoundTag tag) {
+        getFaweChunk(cx, cz).setTile(x, y, z, tag);
+    }
+
+    default void setEntity(int cx, int cz, CompoundTag tag) {
+        getFaweChunk(cx, cz).setEntity(tag);
+    }
+
+    default void removeEntity(int cx, int cz, UUID uuid) {
+        getFaweChunk(cx, cz).removeEntity(uuid);
+    }
+
+    default void setBiome(int cx, int cz, int x, int z, BaseBiome biome) {
+        getFaweChunk(cx, cz).setBiome(x, z, biome);
+    }
+
+    default void addNotifyTask(int cx, int cz, Runnable runnable) {
+        getFaweChunk(cx, cz).addNotifyTask(runnable);
+    }
 }
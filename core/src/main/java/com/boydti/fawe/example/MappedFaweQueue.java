@@ -71,13 +71,13 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
 
     public MappedFaweQueue(final String world) {
         this.world = world;
-        map = getSettings().PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+        map = newQueueMap();
     }
 
     public MappedFaweQueue(final String world, IFaweQueueMap map) {
         this.world = world;
         if (map == null) {
-            map = getSettings().PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+            map = newQueueMap();
         }
         this.map = map;
     }
@@ -86,11 +86,19 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         this.weWorld = world;
         if (world != null) this.world = Fawe.imp().getWorldName(world);
         if (map == null) {
-            map = getSettings().PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+            map = newQueueMap();
         }
         this.map = map;
     }
 
+    private IFaweQueueMap newQueueMap() {
+        Settings settings = getSettings();
+        if (settings.QUEUE.SPILL_TO_DISK) {
+            return new SpillingFaweQueueMap(this);
+        }
+        return settings.PREVENT_CRASHES ? new WeakFaweQueueMap(this) : new DefaultFaweQueueMap(this);
+    }
+
     @Override
     public int getMaxY() {
         return weWorld == null ? 255 : weWorld.getMaxY();
@@ -100,6 +108,29 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         return map;
     }
 
+    /**
+     * Allow several threads to write to this queue at once (see {@link ConcurrentFaweQueueMap})<br>
+     * - Must be called before anything is queued, and before the writers are started<br>
+     * - Only the default map is replaced, other maps (e.g. spilling to disk or anvil) are rejected<br>
+     * - Block reads still use a per-queue cache, so only writes may be shared between threads
+     */
+    public void setConcurrent() {
+        if (map instanceof ConcurrentFaweQueueMap) {
+            return;
+        }
+        if (map.getClass() != DefaultFaweQueueMap.class) {
+            throw new UnsupportedOperationException(map.getClass().getSimpleName() + " does not support concurrent writers");
+        }
+        if (map.size() != 0) {
+            throw new IllegalStateException("Queue already has chunks");
+        }
+        map = new ConcurrentFaweQueueMap(this);
+    }
+
+    public boolean isConcurrent() {
+        return map instanceof ConcurrentFaweQueueMap;
+    }
+
     @Override
     public Collection<FaweChunk> getFaweChunks() {
         return map.getFaweCunks();
@@ -151,16 +182,14 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
 
     @Override
     public void addNotifyTask(int x, int z, Runnable runnable) {
-        FaweChunk chunk = map.getFaweChunk(x, z);
-        chunk.addNotifyTask(runnable);
+        map.addNotifyTask(x, z, runnable);
     }
 
     @Override
     public boolean setBlock(int x, int y, int z, int id, int data) {
         int cx = x >> 4;
         int cz = z >> 4;
-        FaweChunk chunk = map.getFaweChunk(cx, cz);
-        chunk.setBlock(x & 15, y, z & 15, id, data);
+        map.setBlock(cx, cz, x & 15, y, z & 15, id, data);
         return true;
     }
 
@@ -168,8 +197,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
     public boolean setBlock(int x, int y, int z, int id) {
         int cx = x >> 4;
         int cz = z >> 4;
-        FaweChunk chunk = map.getFaweChunk(cx, cz);
-        chunk.setBlock(x & 15, y, z & 15, id);
+        map.setBlock(cx, cz, x & 15, y, z & 15, id);
         return true;
     }
 
@@ -180,8 +208,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        FaweChunk chunk = map.getFaweChunk(cx, cz);
-        chunk.setTile(x & 15, y, z & 15, tag);
+        map.setTile(cx, cz, x & 15, y, z & 15, tag);
     }
 
     @Override
@@ -191,8 +218,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        FaweChunk chunk = map.getFaweChunk(cx, cz);
-        chunk.setEntity(tag);
+        map.setEntity(cx, cz, tag);
     }
 
     @Override
@@ -202,16 +228,14 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        FaweChunk chunk = map.getFaweChunk(cx, cz);
-        chunk.removeEntity(uuid);
+        map.removeEntity(cx, cz, uuid);
     }
 
     @Override
     public boolean setBiome(int x, int z, BaseBiome biome) {
         int cx = x >> 4;
         int cz = z >> 4;
-        FaweChunk chunk = map.getFaweChunk(cx, cz);
-        chunk.setBiome(x & 15, z & 15, biome);
+        map.setBiome(cx, cz, x & 15, z & 15, biome);
         return true;
     }
 
@@ -220,7 +244,15 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, CHUNKSECTIONS, SECTION> impl
         return map.next(amount, time);
     }
 
+    @Override
+    public boolean spillChunks() {
+        return map instanceof SpillingFaweQueueMap && ((SpillingFaweQueueMap) map).requestSpill();
+    }
+
     public void start(FaweChunk chunk) {
+        if (chunk instanceof CharFaweChunk) {
+            ((CharFaweChunk) chunk).inflate();
+        }
         chunk.start();
     }
 
@@ -51,6 +51,8 @@ public abstract class NMSMappedFaweQueue<WORLD, CHUNK, CHUNKSECTION, SECTION> ex
         }
     }
 
+    private final ChunkSendPlanner sendPlanner = new ChunkSendPlanner(this);
+
     private final Relighter relighter = getSettings().IMP.LIGHTING.MODE > 0 ? new NMSRelighter(this) : NullRelighter.INSTANCE;
 
     @Override
@@ -102,7 +104,11 @@ public abstract class NMSMappedFaweQueue<WORLD, CHUNK, CHUNKSECTION, SECTION> ex
     @Override
     public void sendChunk(final FaweChunk fc) {
         try {
-            refreshChunk(fc);
+            if (supports(Capability.BLOCK_UPDATES)) {
+                sendPlanner.add(fc);
+            } else {
+                refreshChunk(fc);
+            }
         } catch (Throwable e) {
             MainUtil.handleError(e);
         }
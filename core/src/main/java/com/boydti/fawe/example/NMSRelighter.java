@@ -4,30 +4,34 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FaweQueue;
-import com.boydti.fawe.object.IntegerTrio;
 import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.object.collection.BlockBitSet;
 import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.LongRingBuffer;
+import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.SetQueue;
 import com.boydti.fawe.util.TaskManager;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class NMSRelighter implements Relighter {
     private final NMSMappedFaweQueue queue;
 
     private final Map<Long, RelightSkyEntry> skyToRelight;
-    private final Object present = new Object();
     private final Map<Long, Integer> chunksToSend;
     private final ConcurrentLinkedQueue<RelightSkyEntry> queuedSkyToRelight = new ConcurrentLinkedQueue<>();
 
@@ -38,9 +42,10 @@ public class NMSRelighter implements Relighter {
     private final int maxY;
     private volatile boolean relighting = false;
 
-    public final IntegerTrio mutableBlockPos = new IntegerTrio();
-
     private static final int DISPATCH_SIZE = 64;
+    private static final int TILE_BITS = 3;
+    private static final int[] DIRECTIONS_X = {1, -1, 0, 0};
+    private static final int[] DIRECTIONS_Z = {0, 0, 1, -1};
     private boolean removeFirst;
 
     public NMSRelighter(NMSMappedFaweQueue queue) {
@@ -152,10 +157,11 @@ public class NMSRelighter implements Relighter {
         if (size == 0) {
             return;
         }
-        Queue<IntegerTrio> lightPropagationQueue = new ArrayDeque<>();
-        Queue<Object[]> lightRemovalQueue = new ArrayDeque<>();
-        Map<IntegerTrio, Object> visited = new HashMap<>();
-        Map<IntegerTrio, Object> removalVisited = new HashMap<>();
+        // Nodes are packed with MathMan.tripleWorldCoord, removal nodes store the old light level in the top 4 bits
+        LongRingBuffer lightPropagationQueue = new LongRingBuffer();
+        LongRingBuffer lightRemovalQueue = new LongRingBuffer();
+        BlockBitSet visited = new BlockBitSet();
+        BlockBitSet removalVisited = new BlockBitSet();
 
         Iterator<Map.Entry<Long, long[][][]>> iter = map.entrySet().iterator();
         while (iter.hasNext() && size-- > 0) {
@@ -185,13 +191,12 @@ public class NMSRelighter implements Relighter {
                                     int newLevel = queue.getBrightness(x, y, z);
                                     if (oldLevel != newLevel) {
                                         queue.setBlockLight(x, y, z, newLevel);
-                                        IntegerTrio node = new IntegerTrio(x, y, z);
                                         if (newLevel < oldLevel) {
-                                            removalVisited.put(node, present);
-                                            lightRemovalQueue.add(new Object[]{node, oldLevel});
+                                            removalVisited.add(x, y, z);
+                                            lightRemovalQueue.add(packLightNode(x, y, z, oldLevel));
                                         } else {
-                                            visited.put(node, present);
-                                            lightPropagationQueue.add(node);
+                                            visited.add(x, y, z);
+                                            lightPropagationQueue.add(MathMan.tripleWorldCoord(x, y, z));
                                         }
                                     }
                                 }
@@ -204,73 +209,75 @@ public class NMSRelighter implements Relighter {
         }
 
         while (!lightRemovalQueue.isEmpty()) {
-            Object[] val = lightRemovalQueue.poll();
-            IntegerTrio node = (IntegerTrio) val[0];
-            int lightLevel = (int) val[1];
-
-            this.computeRemoveBlockLight(node.x - 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(node.x + 1, node.y, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            if (node.y > 0) {
-                this.computeRemoveBlockLight(node.x, node.y - 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            long node = lightRemovalQueue.poll();
+            int x = (int) MathMan.untripleWorldCoordX(node);
+            int y = (int) MathMan.untripleWorldCoordY(node);
+            int z = (int) MathMan.untripleWorldCoordZ(node);
+            int lightLevel = (int) (node >>> 60);
+
+            this.computeRemoveBlockLight(x - 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(x + 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            if (y > 0) {
+                this.computeRemoveBlockLight(x, y - 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
             }
-            if (node.y < 255) {
-                this.computeRemoveBlockLight(node.x, node.y + 1, node.z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            if (y < 255) {
+                this.computeRemoveBlockLight(x, y + 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
             }
-            this.computeRemoveBlockLight(node.x, node.y, node.z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
-            this.computeRemoveBlockLight(node.x, node.y, node.z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(x, y, z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
+            this.computeRemoveBlockLight(x, y, z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue, removalVisited, visited);
         }
 
         while (!lightPropagationQueue.isEmpty()) {
-            IntegerTrio node = lightPropagationQueue.poll();
-            int lightLevel = queue.getEmmittedLight(node.x, node.y, node.z);
+            long node = lightPropagationQueue.poll();
+            int x = (int) MathMan.untripleWorldCoordX(node);
+            int y = (int) MathMan.untripleWorldCoordY(node);
+            int z = (int) MathMan.untripleWorldCoordZ(node);
+            int lightLevel = queue.getEmmittedLight(x, y, z);
             if (lightLevel > 1) {
-                this.computeSpreadBlockLight(node.x - 1, node.y, node.z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(node.x + 1, node.y, node.z, lightLevel, lightPropagationQueue, visited);
-                if (node.y > 0) {
-                    this.computeSpreadBlockLight(node.x, node.y - 1, node.z, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(x - 1, y, z, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(x + 1, y, z, lightLevel, lightPropagationQueue, visited);
+                if (y > 0) {
+                    this.computeSpreadBlockLight(x, y - 1, z, lightLevel, lightPropagationQueue, visited);
                 }
-                if (node.y < 255) {
-                    this.computeSpreadBlockLight(node.x, node.y + 1, node.z, lightLevel, lightPropagationQueue, visited);
+                if (y < 255) {
+                    this.computeSpreadBlockLight(x, y + 1, z, lightLevel, lightPropagationQueue, visited);
                 }
-                this.computeSpreadBlockLight(node.x, node.y, node.z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(node.x, node.y, node.z + 1, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(x, y, z - 1, lightLevel, lightPropagationQueue, visited);
+                this.computeSpreadBlockLight(x, y, z + 1, lightLevel, lightPropagationQueue, visited);
             }
         }
     }
 
-    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Queue<Object[]> queue, Queue<IntegerTrio> spreadQueue, Map<IntegerTrio, Object> visited,
-                                         Map<IntegerTrio, Object> spreadVisited) {
+    private static long packLightNode(int x, int y, int z, int level) {
+        return MathMan.tripleWorldCoord(x, y, z) | ((long) level << 60);
+    }
+
+    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, LongRingBuffer queue, LongRingBuffer spreadQueue, BlockBitSet visited,
+                                         BlockBitSet spreadVisited) {
         int current = this.queue.getEmmittedLight(x, y, z);
         if (current != 0 && current < currentLight) {
             this.queue.setBlockLight(x, y, z, 0);
             if (current > 1) {
-                if (!visited.containsKey(mutableBlockPos)) {
-                    IntegerTrio index = new IntegerTrio(x, y, z);
-                    visited.put(index, present);
-                    queue.add(new Object[]{index, current});
+                if (visited.add(x, y, z)) {
+                    queue.add(packLightNode(x, y, z, current));
                 }
             }
         } else if (current >= currentLight) {
-            mutableBlockPos.set(x, y, z);
-            if (!spreadVisited.containsKey(mutableBlockPos)) {
-                IntegerTrio index = new IntegerTrio(x, y, z);
-                spreadVisited.put(index, present);
-                spreadQueue.add(index);
+            if (spreadVisited.add(x, y, z)) {
+                spreadQueue.add(MathMan.tripleWorldCoord(x, y, z));
             }
         }
     }
 
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, Queue<IntegerTrio> queue, Map<IntegerTrio, Object> visited) {
+    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, LongRingBuffer queue, BlockBitSet visited) {
         currentLight = currentLight - Math.max(1, this.queue.getOpacity(x, y, z));
         if (currentLight > 0) {
             int current = this.queue.getEmmittedLight(x, y, z);
             if (current < currentLight) {
                 this.queue.setBlockLight(x, y, z, currentLight);
-                mutableBlockPos.set(x, y, z);
-                if (!visited.containsKey(mutableBlockPos)) {
-                    visited.put(new IntegerTrio(x, y, z), present);
+                if (visited.add(x, y, z)) {
                     if (currentLight > 1) {
-                        queue.add(new IntegerTrio(x, y, z));
+                        queue.add(MathMan.tripleWorldCoord(x, y, z));
                     }
                 }
             }
@@ -301,12 +308,49 @@ public class NMSRelighter implements Relighter {
     }
 
     public void fixBlockLighting() {
-        synchronized (lightQueue) {
-            while (!lightLock.compareAndSet(false, true));
-            try {
+        // Take the lock before the monitor, addLightUpdate acquires them in the same order
+        while (!lightLock.compareAndSet(false, true));
+        try {
+            synchronized (lightQueue) {
+                mergeConcurrentLightQueue();
                 updateBlockLight(this.lightQueue);
-            } finally {
-                lightLock.set(false);
+            }
+        } finally {
+            lightLock.set(false);
+        }
+    }
+
+    private void mergeConcurrentLightQueue() {
+        Iterator<Map.Entry<Long, long[][][]>> iter = concurrentLightQueue.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<Long, long[][][]> entry = iter.next();
+            iter.remove();
+            long[][][] from = entry.getValue();
+            long[][][] to = lightQueue.get(entry.getKey());
+            if (to == null) {
+                lightQueue.put(entry.getKey(), from);
+                continue;
+            }
+            for (int z = 0; z < from.length; z++) {
+                long[][] m1 = from[z];
+                if (m1 == null) continue;
+                for (int x = 0; x < m1.length; x++) {
+                    long[] m2 = m1[x];
+                    if (m2 == null) continue;
+                    for (int i = 0; i < m2.length; i++) {
+                        long value = m2[i];
+                        if (value == 0) continue;
+                        long[][] t1 = to[z];
+                        if (t1 == null) {
+                            t1 = to[z] = new long[16][];
+                        }
+                        long[] t2 = t1[x];
+                        if (t2 == null) {
+                            t2 = t1[x] = new long[4];
+                        }
+                        t2[i] |= value;
+                    }
+                }
             }
         }
     }
@@ -352,18 +396,218 @@ public class NMSRelighter implements Relighter {
         Collections.sort(chunksList);
         int size = chunksList.size();
         if (size > DISPATCH_SIZE) {
-            int amount = (size + DISPATCH_SIZE - 1) / DISPATCH_SIZE;
-            for (int i = 0; i < amount; i++) {
-                int start = i * DISPATCH_SIZE;
-                int end = Math.min(size, start + DISPATCH_SIZE);
-                List<RelightSkyEntry> sub = chunksList.subList(start, end);
-                fixSkyLighting(sub);
-            }
+            fixSkyLightingParallel(chunksList);
         } else {
             fixSkyLighting(chunksList);
         }
     }
 
+    /**
+     * Relight the chunks on the ForkJoinPool<br>
+     * - Chunks are grouped into islands (4-connected groups of chunks being relit)<br>
+     * - Islands larger than DISPATCH_SIZE are split into 8x8 chunk tiles which run in 4 checkerboard phases,
+     * so a task never reads a chunk another task is writing<br>
+     * - Chunks on tile borders are smoothed again once all the tiles are done
+     *
+     * @param sorted
+     */
+    private void fixSkyLightingParallel(List<RelightSkyEntry> sorted) {
+        RelightSkyEntry[] chunks = loadChunks(sorted);
+        final BlockVectorSet removeSet = getRemoveSet(chunks);
+
+        Long2ObjectOpenHashMap<RelightSkyEntry> byPos = new Long2ObjectOpenHashMap<>(chunks.length);
+        for (RelightSkyEntry chunk : chunks) {
+            byPos.put(MathMan.pairInt(chunk.x, chunk.z), chunk);
+        }
+        List<RelightSkyEntry[]>[] phases = new List[4];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new ArrayList<>();
+        }
+        List<RelightSkyEntry> borders = new ArrayList<>();
+        Set<RelightSkyEntry> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<RelightSkyEntry> frontier = new ArrayDeque<>();
+        for (RelightSkyEntry start : chunks) {
+            if (!assigned.add(start)) continue;
+            ArrayList<RelightSkyEntry> island = new ArrayList<>();
+            frontier.add(start);
+            while (!frontier.isEmpty()) {
+                RelightSkyEntry chunk = frontier.poll();
+                island.add(chunk);
+                for (int i = 0; i < 4; i++) {
+                    RelightSkyEntry adjacent = byPos.get(MathMan.pairInt(chunk.x + DIRECTIONS_X[i], chunk.z + DIRECTIONS_Z[i]));
+                    if (adjacent != null && assigned.add(adjacent)) {
+                        frontier.add(adjacent);
+                    }
+                }
+            }
+            Collections.sort(island);
+            if (island.size() <= DISPATCH_SIZE) {
+                phases[0].add(island.toArray(new RelightSkyEntry[island.size()]));
+                continue;
+            }
+            Long2ObjectOpenHashMap<List<RelightSkyEntry>> tiles = new Long2ObjectOpenHashMap<>();
+            for (RelightSkyEntry chunk : island) {
+                long tilePair = MathMan.pairInt(chunk.x >> TILE_BITS, chunk.z >> TILE_BITS);
+                List<RelightSkyEntry> tile = tiles.get(tilePair);
+                if (tile == null) {
+                    tiles.put(tilePair, tile = new ArrayList<>());
+                }
+                tile.add(chunk);
+                for (int i = 0; i < 4; i++) {
+                    int ax = chunk.x + DIRECTIONS_X[i];
+                    int az = chunk.z + DIRECTIONS_Z[i];
+                    if ((ax >> TILE_BITS) != (chunk.x >> TILE_BITS) || (az >> TILE_BITS) != (chunk.z >> TILE_BITS)) {
+                        if (byPos.containsKey(MathMan.pairInt(ax, az))) {
+                            borders.add(chunk);
+                            break;
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<Long, List<RelightSkyEntry>> entry : tiles.entrySet()) {
+                long tilePair = entry.getKey();
+                int phase = ((MathMan.unpairIntX(tilePair) & 1) << 1) | (MathMan.unpairIntY(tilePair) & 1);
+                List<RelightSkyEntry> tile = entry.getValue();
+                phases[phase].add(tile.toArray(new RelightSkyEntry[tile.size()]));
+            }
+        }
+
+        ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+        // Wait on this relight's own tasks, the pool is shared with other work
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (List<RelightSkyEntry[]> phase : phases) {
+            tasks.clear();
+            for (final RelightSkyEntry[] unit : phase) {
+                tasks.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            fixSkyLighting(unit, removeSet);
+                        } catch (Throwable e) {
+                            MainUtil.handleError(e);
+                        }
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+        for (RelightSkyEntry chunk : borders) {
+            smoothBorderSkyLight(chunk);
+        }
+    }
+
+    /**
+     * Raise the skylight of a chunk from its neighbours and the block above (used after the tiles are relit)
+     *
+     * @param chunk
+     */
+    private void smoothBorderSkyLight(RelightSkyEntry chunk) {
+        Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+        if (sections == null) return;
+        int bx = chunk.x << 4;
+        int bz = chunk.z << 4;
+        for (int y = FaweChunk.HEIGHT - 2; y > 0; y--) {
+            int layer = y >> 4;
+            if (chunk.fix[layer] != SkipReason.NONE) continue;
+            Object section = queue.getCachedSection(sections, layer);
+            if (section == null) continue;
+            boolean changed = false;
+            for (int j = 0; j < 256; j++) {
+                changed |= smoothBorderSkyLight(section, bx, bz, j & 15, y, j >> 4);
+            }
+            for (int j = 255; j >= 0; j--) {
+                changed |= smoothBorderSkyLight(section, bx, bz, j & 15, y, j >> 4);
+            }
+            if (changed) {
+                queue.saveChunk(chunk.chunk);
+            }
+        }
+    }
+
+    private boolean smoothBorderSkyLight(Object section, int bx, int bz, int x, int y, int z) {
+        int current = queue.getSkyLight(section, bx + x, y, bz + z);
+        if (current >= 14 || queue.getOpacity(section, bx + x, y, bz + z) > 1) {
+            return false;
+        }
+        int value = current;
+        value = Math.max(value, getSkyLight(section, bx, bz, x - 1, y, z) - 1);
+        value = Math.max(value, getSkyLight(section, bx, bz, x + 1, y, z) - 1);
+        value = Math.max(value, getSkyLight(section, bx, bz, x, y, z - 1) - 1);
+        value = Math.max(value, getSkyLight(section, bx, bz, x, y, z + 1) - 1);
+        value = Math.max(value, getSkyLight(bx + x, y + 1, bz + z) - 1);
+        if (value > current) {
+            queue.setSkyLight(section, bx + x, y, bz + z, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the skylight at a local position relative to a section (may be outside the chunk)<br>
+     * - Does not use the queue's cached chunk, so it can be called from several threads
+     */
+    private int getSkyLight(Object section, int bx, int bz, int x, int y, int z) {
+        if (x >= 0 && x < 16 && z >= 0 && z < 16) {
+            return queue.getSkyLight(section, bx + x, y, bz + z);
+        }
+        return getSkyLight(bx + x, y, bz + z);
+    }
+
+    /**
+     * Get the skylight at a world position<br>
+     * - Does not use the queue's cached chunk, so it can be called from several threads
+     */
+    private int getSkyLight(int x, int y, int z) {
+        if (y >= FaweChunk.HEIGHT) {
+            return 15;
+        }
+        Object sections = queue.getCachedSections(queue.getWorld(), x >> 4, z >> 4);
+        if (sections == null) {
+            return 0;
+        }
+        int max = FaweChunk.HEIGHT >> 4;
+        for (int cy = y >> 4; cy < max; cy++) {
+            Object section = queue.getCachedSection(sections, cy);
+            if (section != null) {
+                return queue.getSkyLight(section, x, y, z);
+            }
+        }
+        return 15;
+    }
+
+    private RelightSkyEntry[] loadChunks(List<RelightSkyEntry> sorted) {
+        ArrayList<RelightSkyEntry> loaded = new ArrayList<>(sorted.size());
+        for (RelightSkyEntry chunk : sorted) {
+            Object chunkObj = queue.ensureChunkLoaded(chunk.x, chunk.z);
+            if (chunkObj != null) {
+                chunk.chunk = chunkObj;
+                loaded.add(chunk);
+            }
+        }
+        return loaded.toArray(new RelightSkyEntry[loaded.size()]);
+    }
+
+    private BlockVectorSet getRemoveSet(RelightSkyEntry[] chunks) {
+        if (!this.removeFirst) {
+            return null;
+        }
+        BlockVectorSet chunkSet = new BlockVectorSet();
+        BlockVectorSet tmpSet = new BlockVectorSet();
+        for (RelightSkyEntry chunk : chunks) {
+            tmpSet.add(chunk.x, 0, chunk.z);
+        }
+        for (RelightSkyEntry chunk : chunks) {
+            int x = chunk.x;
+            int z = chunk.z;
+            if (tmpSet.contains(x + 1, 0, z) && tmpSet.contains(x - 1, 0, z) && tmpSet.contains(x, 0, z + 1) && tmpSet.contains(x, 0, z - 1)) {
+                chunkSet.add(x, 0, z);
+            }
+        }
+        return chunkSet;
+    }
+
     public void fill(byte[] mask, int chunkX, int y, int chunkZ, byte reason) {
         if (y >= FaweChunk.HEIGHT) {
             Arrays.fill(mask, (byte) 15);
@@ -380,7 +624,7 @@ public class NMSRelighter implements Relighter {
                 int index = 0;
                 for (int z = 0; z < 16; z++) {
                     for (int x = 0; x < 16; x++) {
-                        mask[index++] = (byte) queue.getSkyLight(bx + x, y, bz + z);
+                        mask[index++] = (byte) getSkyLight(bx + x, y, bz + z);
                     }
                 }
             }
@@ -388,23 +632,12 @@ public class NMSRelighter implements Relighter {
     }
 
     private void fixSkyLighting(List<RelightSkyEntry> sorted) {
-        RelightSkyEntry[] chunks = sorted.toArray(new RelightSkyEntry[sorted.size()]);
-        boolean remove = this.removeFirst;
-        BlockVectorSet chunkSet = null;
-        if (remove) {
-            chunkSet = new BlockVectorSet();
-            BlockVectorSet tmpSet = new BlockVectorSet();
-            for (RelightSkyEntry chunk : chunks) {
-                tmpSet.add(chunk.x, 0, chunk.z);
-            }
-            for (RelightSkyEntry chunk : chunks) {
-                int x = chunk.x;
-                int z = chunk.z;
-                if (tmpSet.contains(x + 1, 0, z) && tmpSet.contains(x - 1, 0, z) && tmpSet.contains(x, 0, z + 1) && tmpSet.contains(x, 0, z - 1)) {
-                    chunkSet.add(x, 0, z);
-                }
-            }
-        }
+        RelightSkyEntry[] chunks = loadChunks(sorted);
+        fixSkyLighting(chunks, getRemoveSet(chunks));
+    }
+
+    private void fixSkyLighting(RelightSkyEntry[] chunks, BlockVectorSet chunkSet) {
+        boolean remove = chunkSet != null;
 
         byte[] cacheX = FaweCache.CACHE_X[0];
         byte[] cacheZ = FaweCache.CACHE_Z[0];
@@ -420,7 +653,7 @@ public class NMSRelighter implements Relighter {
                 }
                 int bx = chunk.x << 4;
                 int bz = chunk.z << 4;
-                Object chunkObj = queue.ensureChunkLoaded(chunk.x, chunk.z);
+                Object chunkObj = chunk.chunk;
                 Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
                 if (sections == null) continue;
                 Object section = queue.getCachedSection(sections, layer);
@@ -504,7 +737,6 @@ public class NMSRelighter implements Relighter {
         byte[] mask = chunk.mask;
         int bx = chunk.x << 4;
         int bz = chunk.z << 4;
-        queue.ensureChunkLoaded(chunk.x, chunk.z);
         Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
         if (sections == null) return;
         Object section = queue.getCachedSection(sections, y >> 4);
@@ -517,8 +749,8 @@ public class NMSRelighter implements Relighter {
                     continue;
                 }
                 byte value = mask[j];
-                if ((value = (byte) Math.max(queue.getSkyLight(bx + x - 1, y, bz + z) - 1, value)) >= 14) ;
-                else if ((value = (byte) Math.max(queue.getSkyLight(bx + x, y, bz + z - 1) - 1, value)) >= 14) ;
+                if ((value = (byte) Math.max(getSkyLight(section, bx, bz, x - 1, y, z) - 1, value)) >= 14) ;
+                else if ((value = (byte) Math.max(getSkyLight(section, bx, bz, x, y, z - 1) - 1, value)) >= 14) ;
                 if (value > mask[j]) queue.setSkyLight(section, x, y, z, mask[j] = value);
             }
         } else {
@@ -529,8 +761,8 @@ public class NMSRelighter implements Relighter {
                     continue;
                 }
                 byte value = mask[j];
-                if ((value = (byte) Math.max(queue.getSkyLight(bx + x + 1, y, bz + z) - 1, value)) >= 14) ;
-                else if ((value = (byte) Math.max(queue.getSkyLight(bx + x, y, bz + z + 1) - 1, value)) >= 14) ;
+                if ((value = (byte) Math.max(getSkyLight(section, bx, bz, x + 1, y, z) - 1, value)) >= 14) ;
+                else if ((value = (byte) Math.max(getSkyLight(section, bx, bz, x, y, z + 1) - 1, value)) >= 14) ;
                 if (value > mask[j]) queue.setSkyLight(section, x, y, z, mask[j] = value);
             }
         }
@@ -552,6 +784,7 @@ public class NMSRelighter implements Relighter {
         public final byte[] fix;
         public int bitmask;
         public boolean smooth;
+        public Object chunk;
 
         public RelightSkyEntry(int x, int z, byte[] fix, int bitmask) {
             this.x = x;
@@ -23,10 +23,10 @@ public class SimpleCharFaweChunk extends CharFaweChunk {
     public CharFaweChunk copy(boolean shallow) {
         SimpleCharFaweChunk copy;
         if (shallow) {
-            copy = new SimpleCharFaweChunk(getParent(), getX(), getZ(), ids, count, air, heightMap);
+            copy = new SimpleCharFaweChunk(getParent(), getX(), getZ(), inflate(), count, air, heightMap);
             copy.biomes = biomes;
         } else {
-            copy = new SimpleCharFaweChunk(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone());
+            copy = new SimpleCharFaweChunk(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone());
             copy.biomes = biomes != null ? biomes.clone() : null;
         }
         return copy;
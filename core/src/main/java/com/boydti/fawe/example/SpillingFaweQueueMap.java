@@ -0,0 +1,451 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.config.BBC;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
+import com.boydti.fawe.object.exception.FaweException;
+import com.boydti.fawe.object.io.FastByteArrayInputStream;
+import com.boydti.fawe.object.io.FastByteArrayOutputStream;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.TaskManager;
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queue map which moves queued chunks to disk when memory is low<br>
+ * - Spilling is requested by the {@link com.boydti.fawe.util.SetQueue}, and done by the thread creating chunks, so a chunk is never spilled while it's being written to<br>
+ * - Only cold chunks are spilled: the {@link #RECENT} chunks most recently accessed stay in memory<br>
+ * - Spilled chunks are written with {@link CharFaweChunk#writeChanges}, LZ4 compressed and appended to a file in the spill folder<br>
+ * - The file is only accessed while holding the file lock, never while holding the lock on the chunk map<br>
+ * - A spilled chunk is read back when it's accessed again, or by an async prefetch when {@link #next(int, long)} runs low on chunks in memory<br>
+ * - If a chunk can't be read back the edit is cancelled (instead of silently losing those changes)<br>
+ * - Only {@link CharFaweChunk}s without notify tasks are spilled
+ */
+public class SpillingFaweQueueMap extends DefaultFaweQueueMap {
+
+    /**
+     * The number of recently accessed chunks which are never spilled
+     */
+    public static final int RECENT = 16;
+
+    // Stale files from a previous run are removed before the first spill
+    private static boolean cleaned;
+
+    private final MappedFaweQueue parent;
+    // Insertion order is file order, so chunks are read back sequentially
+    private final Long2LongLinkedOpenHashMap spilled = new Long2LongLinkedOpenHashMap();
+    // Chunks taken out of the map which are being written to disk
+    private final Long2ObjectLinkedOpenHashMap<CharFaweChunk<?, ?>> spilling = new Long2ObjectLinkedOpenHashMap<>();
+    // Guards the file (acquired before the lock on the chunk map)
+    private final Object fileLock = new Object();
+    private volatile boolean prefetching;
+    private volatile Throwable failure;
+    private final long[] recent = new long[RECENT];
+    private int recentIndex;
+    private long lastPair = Long.MIN_VALUE;
+    private volatile boolean spillRequested;
+    private final AtomicInteger moved = new AtomicInteger();
+    private File file;
+    private RandomAccessFile raf;
+
+    public SpillingFaweQueueMap(MappedFaweQueue parent) {
+        super(parent);
+        this.parent = parent;
+    }
+
+    /**
+     * Request that the cold queued chunks be moved to disk<br>
+     * - The chunks are moved the next time a new chunk is created
+     *
+     * @return if any chunks were moved to disk since the last request
+     */
+    public boolean requestSpill() {
+        if (blocks.size() > RECENT) {
+            spillRequested = true;
+        }
+        return moved.getAndSet(0) != 0;
+    }
+
+    /**
+     * @return the number of chunks on disk
+     */
+    public int getSpilledSize() {
+        synchronized (blocks) {
+            return spilled.size() + spilling.size();
+        }
+    }
+
+    /**
+     * @return the error reading a chunk back from disk, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public FaweChunk getFaweChunk(int cx, int cz) {
+        if (failure != null) {
+            throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_SPILL_FAILED);
+        }
+        long pair = MathMan.pairInt(cx, cz);
+        if (pair != lastPair) {
+            lastPair = pair;
+            recent[recentIndex++ & (RECENT - 1)] = pair;
+        }
+        FaweChunk chunk = blocks.get(pair);
+        if (chunk != null) {
+            return chunk;
+        }
+        if (spillRequested) {
+            spillRequested = false;
+            spill();
+        }
+        chunk = restoreOrFail(pair);
+        if (chunk != null) {
+            return chunk;
+        }
+        return super.getFaweChunk(cx, cz);
+    }
+
+    @Override
+    public FaweChunk getCachedFaweChunk(int cx, int cz) {
+        long pair = MathMan.pairInt(cx, cz);
+        FaweChunk chunk = blocks.get(pair);
+        if (chunk != null) {
+            return chunk;
+        }
+        return restoreOrFail(pair);
+    }
+
+    /**
+     * Get all queued chunks (this reads every spilled chunk back into memory)
+     *
+     * @return
+     */
+    @Override
+    public Collection<FaweChunk> getFaweCunks() {
+        while (true) {
+            long pair;
+            synchronized (blocks) {
+                if (!spilling.isEmpty()) {
+                    pair = spilling.firstLongKey();
+                } else if (!spilled.isEmpty()) {
+                    pair = spilled.firstLongKey();
+                } else {
+                    break;
+                }
+            }
+            restoreOrFail(pair);
+        }
+        return super.getFaweCunks();
+    }
+
+    @Override
+    public void add(FaweChunk chunk) {
+        long pair = MathMan.pairInt(chunk.getX(), chunk.getZ());
+        synchronized (blocks) {
+            if (spilled.containsKey(pair) || spilling.containsKey(pair)) {
+                // Keep the existing chunk, the same as the default map
+                return;
+            }
+        }
+        super.add(chunk);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (fileLock) {
+            synchronized (blocks) {
+                super.clear();
+                spilled.clear();
+                spilling.clear();
+                closeFile();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return blocks.size() + spilled.size() + spilling.size();
+    }
+
+    @Override
+    public boolean next(int amount, long time) {
+        if (failure != null) {
+            return false;
+        }
+        boolean onDisk;
+        synchronized (blocks) {
+            onDisk = !spilled.isEmpty() || !spilling.isEmpty();
+            if (!spilled.isEmpty() && !prefetching) {
+                // Never read from disk here (this is usually the main thread), have the chunks read back async for a later call
+                final int batch = Math.max(amount, parent.getSettings().QUEUE.TARGET_SIZE);
+                if (blocks.size() < batch) {
+                    prefetching = true;
+                    TaskManager.IMP.async(new Runnable() {
+                        @Override
+                        public void run() {
+                            prefetch(batch);
+                        }
+                    });
+                }
+            }
+        }
+        boolean result = super.next(amount, time);
+        return result || onDisk;
+    }
+
+    /**
+     * Read spilled chunks back (in file order) until there are enough chunks in memory
+     *
+     * @param batch
+     */
+    private void prefetch(int batch) {
+        try {
+            while (failure == null) {
+                long pair;
+                synchronized (blocks) {
+                    if (spilled.isEmpty() || blocks.size() >= batch) {
+                        break;
+                    }
+                    pair = spilled.firstLongKey();
+                }
+                restore(pair);
+            }
+        } catch (Throwable e) {
+            fail(e);
+        } finally {
+            prefetching = false;
+        }
+    }
+
+    private boolean isRecent(long pair) {
+        for (long value : recent) {
+            if (value == pair) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the cold chunks to disk<br>
+     * - The candidates are taken out of the map under the lock, and written outside it<br>
+     * - A chunk which is accessed while it's being written is taken back (see {@link #restore(long)})
+     */
+    private void spill() {
+        synchronized (blocks) {
+            Iterator<Long2ObjectMap.Entry<FaweChunk>> iter = blocks.long2ObjectEntrySet().iterator();
+            while (iter.hasNext()) {
+                Long2ObjectMap.Entry<FaweChunk> entry = iter.next();
+                FaweChunk chunk = entry.getValue();
+                if (chunk instanceof CharFaweChunk && !chunk.hasNotifyTasks() && !isRecent(entry.getLongKey())) {
+                    spilling.put(entry.getLongKey(), (CharFaweChunk<?, ?>) chunk);
+                    iter.remove();
+                }
+            }
+        }
+        int count = 0;
+        while (true) {
+            synchronized (fileLock) {
+                long pair;
+                CharFaweChunk<?, ?> chunk;
+                synchronized (blocks) {
+                    if (spilling.isEmpty()) {
+                        break;
+                    }
+                    pair = spilling.firstLongKey();
+                    chunk = spilling.get(pair);
+                }
+                try {
+                    long offset = write(chunk);
+                    synchronized (blocks) {
+                        if (spilling.remove(pair) != null) {
+                            spilled.put(pair, offset);
+                            count++;
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    // Keep the remaining chunks in memory
+                    synchronized (blocks) {
+                        for (Long2ObjectMap.Entry<CharFaweChunk<?, ?>> entry : spilling.long2ObjectEntrySet()) {
+                            blocks.put(entry.getLongKey(), entry.getValue());
+                        }
+                        spilling.clear();
+                    }
+                    break;
+                }
+            }
+        }
+        if (count != 0) {
+            moved.addAndGet(count);
+            Fawe.debug("Moved " + count + " queued chunks to disk (" + getSpilledSize() + " total)");
+        }
+    }
+
+    private static synchronized void cleanFolder(File folder) {
+        if (!cleaned) {
+            cleaned = true;
+            File[] files = folder.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private RandomAccessFile getFile() throws IOException {
+        if (raf == null) {
+            File folder = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.SPILL);
+            if (!folder.exists()) {
+                folder.mkdirs();
+            }
+            cleanFolder(folder);
+            file = File.createTempFile("queue", ".bin", folder);
+            raf = new RandomAccessFile(file, "rw");
+        }
+        return raf;
+    }
+
+    private void closeFile() {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            file.delete();
+            raf = null;
+            file = null;
+        }
+    }
+
+    /**
+     * Must be called while holding the file lock
+     */
+    private long write(CharFaweChunk<?, ?> chunk) throws IOException {
+        FastByteArrayOutputStream bytes = new FastByteArrayOutputStream();
+        FaweOutputStream out = new FaweOutputStream(bytes);
+        chunk.writeChanges(out);
+        out.flush();
+        byte[] raw = bytes.toByteArray();
+        byte[] compressed = MainUtil.compress(raw, null, 1);
+
+        RandomAccessFile raf = getFile();
+        long offset = raf.length();
+        raf.seek(offset);
+        raf.writeInt(raw.length);
+        raf.writeInt(compressed.length);
+        raf.write(compressed);
+        return offset;
+    }
+
+    /**
+     * Restore a chunk, cancelling the edit if it can't be read back
+     *
+     * @param pair
+     * @return the chunk, or null if it isn't on disk
+     */
+    private FaweChunk restoreOrFail(long pair) {
+        try {
+            return restore(pair);
+        } catch (IOException e) {
+            fail(e);
+            throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_SPILL_FAILED);
+        }
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+            Fawe.debug("Failed to read queued chunks back from disk, cancelling the edit");
+            MainUtil.handleError(e);
+            parent.cancel();
+        }
+    }
+
+    /**
+     * Get a chunk which is in memory, taking it back if it's waiting to be written to disk
+     */
+    private FaweChunk reclaim(long pair) {
+        synchronized (blocks) {
+            FaweChunk chunk = blocks.get(pair);
+            if (chunk == null) {
+                chunk = spilling.remove(pair);
+                if (chunk != null) {
+                    blocks.put(pair, chunk);
+                }
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Move a chunk from disk (or from the chunks being spilled) back into the map<br>
+     * - The file is read without holding the lock on the map
+     *
+     * @param pair
+     * @return the chunk, or null if it isn't on disk
+     * @throws IOException if the chunk can't be read back (the chunk is dropped)
+     */
+    private FaweChunk restore(long pair) throws IOException {
+        FaweChunk existing = reclaim(pair);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (blocks) {
+            if (!spilled.containsKey(pair)) {
+                return null;
+            }
+        }
+        synchronized (fileLock) {
+            long offset;
+            synchronized (blocks) {
+                existing = reclaim(pair);
+                if (existing != null || !spilled.containsKey(pair)) {
+                    return existing;
+                }
+                offset = spilled.get(pair);
+            }
+            int cx = MathMan.unpairIntX(pair);
+            int cz = MathMan.unpairIntY(pair);
+            CharFaweChunk<?, ?> chunk = (CharFaweChunk<?, ?>) parent.getFaweChunk(cx, cz);
+            try {
+                raf.seek(offset);
+                int rawLength = raf.readInt();
+                byte[] compressed = new byte[raf.readInt()];
+                raf.readFully(compressed);
+                byte[] raw = MainUtil.decompress(compressed, null, rawLength, 1);
+                FaweInputStream in = new FaweInputStream(new FastByteArrayInputStream(raw));
+                chunk.readChanges(in);
+            } catch (IOException e) {
+                synchronized (blocks) {
+                    spilled.remove(pair);
+                }
+                throw new IOException("Failed to read spilled chunk " + cx + "," + cz, e);
+            }
+            synchronized (blocks) {
+                spilled.remove(pair);
+                blocks.put(pair, chunk);
+                if (spilled.isEmpty() && spilling.isEmpty()) {
+                    // Nothing left on disk, start a new file for the next spill
+                    closeFile();
+                }
+            }
+            return chunk;
+        }
+    }
+}
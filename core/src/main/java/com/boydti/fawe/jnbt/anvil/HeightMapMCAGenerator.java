@@ -121,6 +121,19 @@ public class HeightMapMCAGenerator extends MCAWriter implements StreamChange, Dr
         blocks.flushChanges(out);
     }
 
+    /**
+     * Discard all unflushed changes (they can no longer be undone)<br>
+     * - Frees the change buffers, which are as large as the map itself
+     */
+    public void discardChanges() {
+        heights.discardChanges();
+        biomes.discardChanges();
+        floor.discardChanges();
+        main.discardChanges();
+        if (overlay != null) overlay.discardChanges();
+        blocks.clearChanges();
+    }
+
     public boolean isModified() {
         return blocks.isModified() ||
                 heights.isModified() ||
@@ -0,0 +1,16 @@
+package com.boydti.fawe.jnbt.anvil;
+
+import com.boydti.fawe.example.NMSMappedFaweQueue;
+
+/**
+ * An anvil queue which only writes the chunks that aren't loaded<br>
+ * - Loaded chunks are placed through the parent queue, so players don't see them unload<br>
+ * - Unloaded chunks are read from and written to the region files, without loading them on the main thread<br>
+ * - Chunks which haven't been generated yet are still generated by the parent queue
+ */
+public class HybridMCAQueue extends MCAQueue {
+    public HybridMCAQueue(NMSMappedFaweQueue parent) {
+        super(parent);
+        ((MCAQueueMap) getFaweQueueMap()).setRouteLoadedChunks(true);
+    }
+}
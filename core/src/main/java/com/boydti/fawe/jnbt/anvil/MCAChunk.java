@@ -44,6 +44,18 @@ public class MCAChunk extends FaweChunk<Void> {
     private int modified;
     private boolean deleted;
 
+    /**
+     * Parts of a chunk which can be decoded (see {@link MCAFilter#getParts()})
+     */
+    public static final int PART_BLOCKS = 1;
+    public static final int PART_LIGHT = 2;
+    public static final int PART_BIOMES = 4;
+    public static final int PART_TILES = 8;
+    public static final int PART_ENTITIES = 16;
+    public static final int PART_ALL = PART_BLOCKS | PART_LIGHT | PART_BIOMES | PART_TILES | PART_ENTITIES;
+
+    private int parts = PART_ALL;
+
     public MCAChunk(FaweQueue queue, int x, int z) {
         super(queue, x, z);
         this.ids = new byte[16][];
@@ -73,12 +85,13 @@ public class MCAChunk extends FaweChunk<Void> {
             this.heightMap = parent.heightMap;
             this.modified = parent.modified;
             this.deleted = parent.deleted;
+            this.parts = parent.parts;
         } else {
             this.ids = (byte[][]) MainUtil.copyNd(parent.ids);
             this.data = (byte[][]) MainUtil.copyNd(parent.data);
             this.skyLight = (byte[][]) MainUtil.copyNd(parent.skyLight);
             this.blockLight = (byte[][]) MainUtil.copyNd(parent.blockLight);
-            this.biomes = parent.biomes.clone();
+            this.biomes = parent.biomes != null ? parent.biomes.clone() : null;
             this.tiles = new HashMap<>(parent.tiles);
             this.entities = new HashMap<>(parent.entities);
             this.inhabitedTime = parent.inhabitedTime;
@@ -86,6 +99,7 @@ public class MCAChunk extends FaweChunk<Void> {
             this.heightMap = parent.heightMap.clone();
             this.modified = parent.modified;
             this.deleted = parent.deleted;
+            this.parts = parent.parts;
         }
     }
 
@@ -457,7 +471,25 @@ public class MCAChunk extends FaweChunk<Void> {
     }
 
     public MCAChunk(NBTInputStream nis, FaweQueue parent, int x, int z, boolean readPos) throws IOException {
+        this(nis, parent, x, z, readPos, PART_ALL);
+    }
+
+    /**
+     * Decode a chunk, skipping the parts which aren't needed<br>
+     * - Skipped tags are never allocated<br>
+     * - A chunk without every part is merged with the stored chunk when written (see {@link #mergeParts(MCAChunk)})
+     *
+     * @param nis
+     * @param parent
+     * @param x
+     * @param z
+     * @param readPos
+     * @param parts a bitmask of PART_ values
+     * @throws IOException
+     */
+    public MCAChunk(NBTInputStream nis, FaweQueue parent, int x, int z, boolean readPos, int parts) throws IOException {
         super(parent, x, z);
+        this.parts = parts;
         ids = new byte[16][];
         data = new byte[16][];
         skyLight = new byte[16][];
@@ -475,43 +507,108 @@ public class MCAChunk extends FaweChunk<Void> {
                 lastUpdate = value;
             }
         });
-        streamer.addReader(".Level.Sections.#", new RunnableVal2<Integer, CompoundTag>() {
-            @Override
-            public void run(Integer index, CompoundTag tag) {
-                int layer = tag.getByte("Y");
-                ids[layer] = tag.getByteArray("Blocks");
-                data[layer] = tag.getByteArray("Data");
-                skyLight[layer] = tag.getByteArray("SkyLight");
-                blockLight[layer] = tag.getByteArray("BlockLight");
-            }
-        });
-        streamer.addReader(".Level.TileEntities.#", new RunnableVal2<Integer, CompoundTag>() {
-            @Override
-            public void run(Integer index, CompoundTag tile) {
-                int x = tile.getInt("x") & 15;
-                int y = tile.getInt("y");
-                int z = tile.getInt("z") & 15;
-                short pair = MathMan.tripleBlockCoord(x, y, z);
-                tiles.put(pair, tile);
-            }
-        });
-        streamer.addReader(".Level.Entities.#", new RunnableVal2<Integer, CompoundTag>() {
-            @Override
-            public void run(Integer index, CompoundTag entityTag) {
-                if (entities == null) {
-                    entities = new HashMap<UUID, CompoundTag>();
+        if ((parts & (PART_BLOCKS | PART_LIGHT)) != 0) {
+            final SectionReader section = new SectionReader();
+            streamer.addReader(".Level.Sections.!", new RunnableVal2<Integer, Integer>() {
+                @Override
+                public void run(Integer index, Integer type) {
+                    section.flush();
+                }
+            });
+            streamer.addReader(".Level.Sections.#.Y", new RunnableVal2<Integer, Byte>() {
+                @Override
+                public void run(Integer index, Byte value) {
+                    section.y = value;
                 }
-                long least = entityTag.getLong("UUIDLeast");
-                long most = entityTag.getLong("UUIDMost");
-                entities.put(new UUID(most, least), entityTag);
+            });
+            if ((parts & PART_BLOCKS) != 0) {
+                streamer.addReader(".Level.Sections.#.Blocks", new RunnableVal2<Integer, byte[]>() {
+                    @Override
+                    public void run(Integer index, byte[] value) {
+                        section.ids = value;
+                    }
+                });
+                streamer.addReader(".Level.Sections.#.Data", new RunnableVal2<Integer, byte[]>() {
+                    @Override
+                    public void run(Integer index, byte[] value) {
+                        section.data = value;
+                    }
+                });
             }
-        });
-        streamer.addReader(".Level.Biomes", new RunnableVal2<Integer, byte[]>() {
-            @Override
-            public void run(Integer index, byte[] value) {
-                biomes = value;
+            if ((parts & PART_LIGHT) != 0) {
+                streamer.addReader(".Level.Sections.#.SkyLight", new RunnableVal2<Integer, byte[]>() {
+                    @Override
+                    public void run(Integer index, byte[] value) {
+                        section.skyLight = value;
+                    }
+                });
+                streamer.addReader(".Level.Sections.#.BlockLight", new RunnableVal2<Integer, byte[]>() {
+                    @Override
+                    public void run(Integer index, byte[] value) {
+                        section.blockLight = value;
+                    }
+                });
             }
-        });
+            readLevel(streamer, readPos);
+            section.flush();
+        } else {
+            readLevel(streamer, readPos);
+        }
+    }
+
+    /**
+     * Collects the tags of one section, since the Y tag may come after the arrays
+     */
+    private final class SectionReader {
+        private int y = -1;
+        private byte[] ids, data, skyLight, blockLight;
+
+        private void flush() {
+            if (y >= 0 && y < MCAChunk.this.ids.length) {
+                if (ids != null) MCAChunk.this.ids[y] = ids;
+                if (data != null) MCAChunk.this.data[y] = data;
+                if (skyLight != null) MCAChunk.this.skyLight[y] = skyLight;
+                if (blockLight != null) MCAChunk.this.blockLight[y] = blockLight;
+            }
+            y = -1;
+            ids = data = skyLight = blockLight = null;
+        }
+    }
+
+    private void readLevel(NBTStreamer streamer, boolean readPos) throws IOException {
+        if ((parts & PART_TILES) != 0) {
+            streamer.addReader(".Level.TileEntities.#", new RunnableVal2<Integer, CompoundTag>() {
+                @Override
+                public void run(Integer index, CompoundTag tile) {
+                    int x = tile.getInt("x") & 15;
+                    int y = tile.getInt("y");
+                    int z = tile.getInt("z") & 15;
+                    short pair = MathMan.tripleBlockCoord(x, y, z);
+                    tiles.put(pair, tile);
+                }
+            });
+        }
+        if ((parts & PART_ENTITIES) != 0) {
+            streamer.addReader(".Level.Entities.#", new RunnableVal2<Integer, CompoundTag>() {
+                @Override
+                public void run(Integer index, CompoundTag entityTag) {
+                    if (entities == null) {
+                        entities = new HashMap<UUID, CompoundTag>();
+                    }
+                    long least = entityTag.getLong("UUIDLeast");
+                    long most = entityTag.getLong("UUIDMost");
+                    entities.put(new UUID(most, least), entityTag);
+                }
+            });
+        }
+        if ((parts & PART_BIOMES) != 0) {
+            streamer.addReader(".Level.Biomes", new RunnableVal2<Integer, byte[]>() {
+                @Override
+                public void run(Integer index, byte[] value) {
+                    biomes = value;
+                }
+            });
+        }
         streamer.addReader(".Level.HeightMap", new RunnableVal2<Integer, int[]>() {
             @Override
             public void run(Integer index, int[] value) {
@@ -535,6 +632,48 @@ public class MCAChunk extends FaweChunk<Void> {
         streamer.readFully();
     }
 
+    /**
+     * @return the decoded parts (a bitmask of PART_ values)
+     */
+    public int getParts() {
+        return parts;
+    }
+
+    public boolean hasParts(int parts) {
+        return (this.parts & parts) == parts;
+    }
+
+    /**
+     * Copy the decoded parts of a partially decoded chunk into this (fully decoded) chunk
+     *
+     * @param partial
+     */
+    public void mergeParts(MCAChunk partial) {
+        int other = partial.parts;
+        if ((other & PART_BLOCKS) != 0) {
+            this.ids = partial.ids;
+            this.data = partial.data;
+        }
+        if ((other & PART_LIGHT) != 0) {
+            this.skyLight = partial.skyLight;
+            this.blockLight = partial.blockLight;
+        }
+        if ((other & PART_BIOMES) != 0) {
+            this.biomes = partial.biomes;
+        }
+        if ((other & PART_TILES) != 0) {
+            this.tiles = partial.tiles;
+        }
+        if ((other & PART_ENTITIES) != 0) {
+            this.entities = partial.entities;
+        }
+        this.inhabitedTime = partial.inhabitedTime;
+        this.lastUpdate = partial.lastUpdate;
+        this.heightMap = partial.heightMap;
+        this.modified = partial.modified;
+        this.deleted = partial.deleted;
+    }
+
     public long filterBlocks(MutableMCABackedBaseBlock mutableBlock, MCAFilter filter) {
         MutableLong result = new MutableLong();
         mutableBlock.setChunk(this);
@@ -7,7 +7,7 @@ import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.RunnableVal4;
 import com.boydti.fawe.object.collection.IterableThreadLocal;
 import com.boydti.fawe.object.exception.FaweException;
-import com.boydti.fawe.object.io.BufferedRandomAccessFile;
+import com.boydti.fawe.object.io.ByteBufferInputStream;
 import com.boydti.fawe.object.io.FastByteArrayInputStream;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
@@ -17,14 +17,24 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
@@ -51,6 +61,9 @@ public class MCAFile {
     private final FaweQueue queue;
     private final File file;
     private RandomAccessFile raf;
+    private MappedByteBuffer mapped;
+    // Readers hold the read lock while they decode from the mapping, as unmapping frees it immediately
+    private final ReentrantReadWriteLock mapLock = new ReentrantReadWriteLock();
     private byte[] locations;
     private boolean deleted;
     private final int X, Z;
@@ -98,6 +111,7 @@ public class MCAFile {
     }
 
     public void clear() {
+        unmap();
         if (raf != null) {
             try {
                 raf.close();
@@ -138,13 +152,34 @@ public class MCAFile {
      * Loads the location header from disk
      */
     public void init() {
+        init(false);
+    }
+
+    /**
+     * Loads the location header from disk
+     *
+     * @param mmap if the whole file should be memory mapped for reading<br>
+     *             - Chunk reads then copy from the mapping without locking the RandomAccessFile<br>
+     *             - The mapping is released when the file is flushed, closed or cleared (after current reads finish)
+     */
+    public void init(boolean mmap) {
         try {
             if (raf == null) {
                 this.locations = new byte[4096];
                 if (file != null) {
                     this.raf = new RandomAccessFile(file, "rw");
-                    if (raf.length() < 8192) {
+                    long length = raf.length();
+                    if (length < 8192) {
                         raf.setLength(8192);
+                    } else if (mmap && length <= Integer.MAX_VALUE) {
+                        MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+                        map.duplicate().get(locations);
+                        mapLock.writeLock().lock();
+                        try {
+                            this.mapped = map;
+                        } finally {
+                            mapLock.writeLock().unlock();
+                        }
                     } else {
                         raf.seek(0);
                         raf.readFully(locations);
@@ -156,6 +191,28 @@ public class MCAFile {
         }
     }
 
+    private void unmap() {
+        mapLock.writeLock().lock();
+        try {
+            MappedByteBuffer tmp = mapped;
+            if (tmp != null) {
+                mapped = null;
+                MainUtil.closeDirectBuffer(tmp);
+            }
+        } finally {
+            mapLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isMapped() {
+        mapLock.readLock().lock();
+        try {
+            return mapped != null;
+        } finally {
+            mapLock.readLock().unlock();
+        }
+    }
+
     public int getX() {
         return X;
     }
@@ -189,24 +246,47 @@ public class MCAFile {
     }
 
     public MCAChunk getChunk(int cx, int cz) throws IOException {
+        return getChunk(cx, cz, MCAChunk.PART_ALL);
+    }
+
+    /**
+     * Get a chunk, decoding only the parts which are needed if it isn't cached
+     *
+     * @param cx
+     * @param cz
+     * @param parts a bitmask of MCAChunk.PART_ values
+     * @return
+     * @throws IOException
+     */
+    public MCAChunk getChunk(int cx, int cz, int parts) throws IOException {
         MCAChunk cached = getCachedChunk(cx, cz);
-        if (cached != null) {
+        if (cached != null && (cached.hasParts(parts) || cached.isModified())) {
             return cached;
         } else {
-            return readChunk(cx, cz);
+            return readChunk(cx, cz, parts);
         }
     }
 
     public MCAChunk readChunk(int cx, int cz) throws IOException {
+        return readChunk(cx, cz, MCAChunk.PART_ALL);
+    }
+
+    public MCAChunk readChunk(int cx, int cz, int parts) throws IOException {
         int i = ((cx & 31) << 2) + ((cz & 31) << 7);
         int offset = (((locations[i] & 0xFF) << 16) + ((locations[i + 1] & 0xFF) << 8) + ((locations[i + 2] & 0xFF))) << 12;
         int size = (locations[i + 3] & 0xFF) << 12;
         if (offset == 0) {
             return null;
         }
-        NBTInputStream nis = getChunkIS(offset);
-        MCAChunk chunk = new MCAChunk(nis, queue, cx, cz, false);
-        nis.close();
+        MCAChunk chunk;
+        mapLock.readLock().lock();
+        try {
+            NBTInputStream nis = getChunkIS(offset);
+            chunk = new MCAChunk(nis, queue, cx, cz, false, parts);
+            nis.close();
+        } finally {
+            mapLock.readLock().unlock();
+        }
         int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
         synchronized (chunks) {
             chunks.put(pair, chunk);
@@ -309,9 +389,22 @@ public class MCAFile {
         if (offset == 0) {
             return null;
         }
+        mapLock.readLock().lock();
+        try {
+            MappedByteBuffer map = this.mapped;
+            if (map != null && offset + 5 <= map.capacity()) {
+                // The length includes the compression byte
+                int size = Math.min(map.getInt(offset) - 1, map.capacity() - offset - 5);
+                byte[] data = new byte[size];
+                new ByteBufferInputStream(map, offset + 5, size).read(data, 0, size);
+                return data;
+            }
+        } finally {
+            mapLock.readLock().unlock();
+        }
         synchronized (raf) {
             raf.seek(offset);
-            int size = raf.readInt();
+            int size = raf.readInt() - 1;
             int compression = raf.read();
             byte[] data = new byte[size];
             raf.readFully(data);
@@ -319,10 +412,30 @@ public class MCAFile {
         }
     }
 
+    /**
+     * Get a stream of the compressed chunk data at an offset<br>
+     * - Reads straight from the mapped file if available, so the read lock must be held until the stream is done with
+     *
+     * @param offset
+     * @return the stream, or null if there is no chunk
+     * @throws IOException
+     */
+    private InputStream getChunkCompressedIS(int offset) throws IOException {
+        if (offset == 0) {
+            return null;
+        }
+        MappedByteBuffer map = this.mapped;
+        if (map != null && offset + 5 <= map.capacity()) {
+            // The length includes the compression byte
+            int size = Math.min(map.getInt(offset) - 1, map.capacity() - offset - 5);
+            return new ByteBufferInputStream(map, offset + 5, size);
+        }
+        return new FastByteArrayInputStream(getChunkCompressedBytes(offset));
+    }
+
     private NBTInputStream getChunkIS(int offset) throws IOException {
         try {
-            byte[] data = getChunkCompressedBytes(offset);
-            FastByteArrayInputStream bais = new FastByteArrayInputStream(data);
+            InputStream bais = getChunkCompressedIS(offset);
             InflaterInputStream iis = new InflaterInputStream(bais, new Inflater(), 1);
             fieldBuf2.set(iis, byteStore2.get());
             BufferedInputStream bis = new BufferedInputStream(iis);
@@ -339,16 +452,27 @@ public class MCAFile {
         streamChunk(getOffset(cx, cz), addReaders);
     }
 
+    /**
+     * Stream a chunk (the file stays mapped until this returns)
+     */
     public void streamChunk(int offset, RunnableVal<NBTStreamer> withStream) throws IOException {
-        byte[] data = getChunkCompressedBytes(offset);
-        streamChunk(data, withStream);
+        mapLock.readLock().lock();
+        try {
+            streamChunk(getChunkCompressedIS(offset), withStream);
+        } finally {
+            mapLock.readLock().unlock();
+        }
     }
 
     public void streamChunk(byte[] data, RunnableVal<NBTStreamer> withStream) throws IOException {
         if (data != null) {
+            streamChunk(new FastByteArrayInputStream(data), withStream);
+        }
+    }
+
+    private void streamChunk(InputStream bais, RunnableVal<NBTStreamer> withStream) throws IOException {
+        if (bais != null) {
             try {
-                FastByteArrayInputStream nbtIn = new FastByteArrayInputStream(data);
-                FastByteArrayInputStream bais = new FastByteArrayInputStream(data);
                 InflaterInputStream iis = new InflaterInputStream(bais, new Inflater(), 1);
                 fieldBuf2.set(iis, byteStore2.get());
                 BufferedInputStream bis = new BufferedInputStream(iis);
@@ -387,6 +511,38 @@ public class MCAFile {
         }
     }
 
+    /**
+     * Get a chunk with every part decoded, so it can be written<br>
+     * - The parts a partially decoded chunk skipped are read from the file
+     *
+     * @param chunk
+     * @return
+     */
+    private MCAChunk getFullChunk(MCAChunk chunk) {
+        if (chunk.hasParts(MCAChunk.PART_ALL)) {
+            return chunk;
+        }
+        try {
+            int offset = getOffset(chunk.getX(), chunk.getZ());
+            if (offset != 0) {
+                MCAChunk full;
+                mapLock.readLock().lock();
+                try {
+                    NBTInputStream nis = getChunkIS(offset);
+                    full = new MCAChunk(nis, queue, chunk.getX(), chunk.getZ(), false);
+                    nis.close();
+                } finally {
+                    mapLock.readLock().unlock();
+                }
+                full.mergeParts(chunk);
+                return full;
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        return chunk;
+    }
+
     private byte[] toBytes(MCAChunk chunk) throws Exception {
         if (chunk.isDeleted()) {
             return null;
@@ -409,38 +565,6 @@ public class MCAFile {
     }
 
 
-    private void writeSafe(RandomAccessFile raf, int offset, byte[] data) throws IOException {
-        int len = data.length + 5;
-        raf.seek(offset);
-        if (raf.length() - offset < len) {
-            raf.setLength(((offset + len + 4095) / 4096) * 4096);
-        }
-        // Length of remaining data
-        raf.writeInt(data.length + 1);
-        // Compression type
-        raf.write(2);
-        raf.write(data);
-    }
-
-    private void writeHeader(RandomAccessFile raf, int cx, int cz, int offsetMedium, int sizeByte, boolean writeTime) throws IOException {
-        int i = ((cx & 31) << 2) + ((cz & 31) << 7);
-        locations[i] = (byte) (offsetMedium >> 16);
-        locations[i + 1] = (byte) (offsetMedium >> 8);
-        locations[i + 2] = (byte) (offsetMedium);
-        locations[i + 3] = (byte) sizeByte;
-        raf.seek(i);
-        raf.write((offsetMedium >> 16));
-        raf.write((offsetMedium >> 8));
-        raf.write((offsetMedium >> 0));
-        raf.write(sizeByte);
-        raf.seek(i + 4096);
-        if (offsetMedium == 0 && sizeByte == 0) {
-            raf.writeInt(0);
-        } else {
-            raf.writeInt((int) (System.currentTimeMillis() / 1000L));
-        }
-    }
-
     public void close(ForkJoinPool pool) {
         if (raf == null) return;
         synchronized (raf) {
@@ -473,11 +597,26 @@ public class MCAFile {
     }
 
     /**
-     * Write the chunk to the file
+     * The number of chunks which may be compressed ahead of the one being written
+     */
+    private static final int FLUSH_WINDOW = 64;
+
+    /**
+     * The most sectors a chunk can use (the size in the header is a single byte)
+     */
+    private static final int MAX_SECTORS = 255;
+
+    /**
+     * Write the chunk to the file<br>
+     * - Modified chunks are compressed concurrently into sector aligned buffers<br>
+     * - The region is written sequentially to a temporary file which then replaces the original<br>
+     * - Unmodified chunks are copied using the header as it is on disk, so chunks the server saved meanwhile are kept
      * @param pool
      */
     public void flush(ForkJoinPool pool) {
         synchronized (raf) {
+            // The file is replaced, so stop reading from the mapping
+            unmap();
             // If the file is marked as deleted, nothing is written
             if (isDeleted()) {
                 clear();
@@ -485,183 +624,25 @@ public class MCAFile {
                 return;
             }
 
-            boolean wait; // If the flush method needs to wait for the pool
-            if (pool == null) {
-                wait = true;
-                pool = new ForkJoinPool();
-            } else wait = false;
-
-            // Chunks that need to be relocated
-            Int2ObjectOpenHashMap<byte[]> relocate = new Int2ObjectOpenHashMap<>();
-            // The position of each chunk
-            final Int2ObjectOpenHashMap<Integer> offsetMap = new Int2ObjectOpenHashMap<>(); // Offset -> <byte cx, byte cz, short size>
-            // The data of each modified chunk
-            final Int2ObjectOpenHashMap<byte[]> compressedMap = new Int2ObjectOpenHashMap<>();
-            // The data of each chunk that needs to be moved
-            final Int2ObjectOpenHashMap<byte[]> append = new Int2ObjectOpenHashMap<>();
             boolean modified = false;
-            // Get the current time for the chunk timestamp
-            long now = System.currentTimeMillis();
-
-            // Load the chunks into the append or compressed map
             for (MCAChunk chunk : getCachedChunks()) {
                 if (chunk.isModified() || chunk.isDeleted()) {
                     modified = true;
-                    chunk.setLastUpdate(now);
-                    if (!chunk.isDeleted()) {
-                        pool.submit(new Runnable() {
-                            @Override
-                            public void run() {
-                                try {
-                                    byte[] compressed = toBytes(chunk);
-                                    int pair = MathMan.pair((short) (chunk.getX() & 31), (short) (chunk.getZ() & 31));
-                                    Int2ObjectOpenHashMap map;
-                                    if (getOffset(chunk.getX(), chunk.getZ()) == 0) {
-                                        map = append;
-                                    } else {
-                                        map = compressedMap;
-                                    }
-                                    synchronized (map) {
-                                        map.put(pair, compressed);
-                                    }
-                                } catch (Throwable e) {
-                                    e.printStackTrace();
-                                }
-                            }
-                        });
-                    }
+                    break;
                 }
             }
 
             // If any changes were detected
             if (modified) {
-                file.setLastModified(now);
-
-                // Load the offset data into the offset map
-                forEachChunk(new RunnableVal4<Integer, Integer, Integer, Integer>() {
-                    @Override
-                    public void run(Integer cx, Integer cz, Integer offset, Integer size) {
-                        short pair1 = MathMan.pairByte((byte) (cx & 31), (byte) (cz & 31));
-                        short pair2 = (short) (size >> 12);
-                        offsetMap.put((int) offset, (Integer) MathMan.pair(pair1, pair2));
-                    }
-                });
-                // Wait for previous tasks
-                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-
-
-                int start = 8192;
-                int written = start;
-                int end = 8192;
-                int nextOffset = 8192;
+                boolean wait; // If the flush method needs to wait for the pool
+                if (pool == null) {
+                    wait = true;
+                    pool = new ForkJoinPool();
+                } else wait = false;
                 try {
-                    for (int count = 0; count < offsetMap.size(); count++) {
-                        // Get the previous position of the next chunk
-                        Integer loc = offsetMap.get(nextOffset);
-                        while (loc == null) {
-                            nextOffset += 4096;
-                            loc = offsetMap.get(nextOffset);
-                        }
-                        int offset = nextOffset;
-
-                        // Get the x/z from the paired location
-                        short cxz = MathMan.unpairX(loc);
-                        int cx = MathMan.unpairShortX(cxz);
-                        int cz = MathMan.unpairShortY(cxz);
-
-                        // Get the size from the pair
-                        int size = MathMan.unpairY(loc) << 12;
-
-                        nextOffset += size;
-                        end = Math.min(start + size, end);
-                        int pair = MathMan.pair((short) (cx & 31), (short) (cz & 31));
-                        byte[] newBytes = relocate.get(pair);
-
-                        // newBytes is null if the chunk isn't modified or marked for moving
-                        if (newBytes == null) {
-                            MCAChunk cached = getCachedChunk(cx, cz);
-                            // If the previous offset marks the current write position (start) then we only write the header
-                            if (offset == start) {
-                                if (cached == null || !cached.isModified()) {
-                                    writeHeader(raf, cx, cz, start >> 12, size >> 12, true);
-                                    start += size;
-                                    written = start + size;
-                                    continue;
-                                } else {
-                                    newBytes = compressedMap.get(pair);
-                                }
-                            } else {
-                                // The chunk needs to be moved, fetch the data if necessary
-                                newBytes = compressedMap.get(pair);
-                                if (newBytes == null) {
-                                    if (cached == null || !cached.isDeleted()) {
-                                        newBytes = getChunkCompressedBytes(getOffset(cx, cz));
-                                    }
-                                }
-                            }
-                        }
-
-                        if (newBytes == null) {
-                            writeHeader(raf, cx, cz, 0, 0, false);
-                            continue;
-                        }
-
-                        // The length to be written (compressed data + 5 byte chunk header)
-                        int len = newBytes.length + 5;
-                        int oldSize = (size + 4095) >> 12;
-                        int newSize = (len + 4095) >> 12;
-                        int nextOffset2 = end;
-
-                        // If the current write position (start) + length of data to write (len) are longer than the position of the next chunk, we need to move the next chunks
-                        while (start + len > end) {
-                            Integer nextLoc = offsetMap.get(nextOffset2);
-                            if (nextLoc != null) {
-                                short nextCXZ = MathMan.unpairX(nextLoc);
-                                int nextCX = MathMan.unpairShortX(nextCXZ);
-                                int nextCZ = MathMan.unpairShortY(nextCXZ);
-                                MCAChunk cached = getCachedChunk(nextCX, nextCZ);
-                                if (cached == null || !cached.isModified()) {
-                                    byte[] nextBytes = getChunkCompressedBytes(nextOffset2);
-                                    relocate.put(MathMan.pair((short) (nextCX & 31), (short) (nextCZ & 31)), nextBytes);
-                                }
-                                int nextSize = MathMan.unpairY(nextLoc) << 12;
-                                end += nextSize;
-                                nextOffset2 += nextSize;
-                            } else {
-                                end += 4096;
-                                nextOffset2 += 4096;
-                            }
-                        }
-                        // Write the chunk + chunk header
-                        writeSafe(raf, start, newBytes);
-                        // Write the location data (beginning of file)
-                        writeHeader(raf, cx, cz, start >> 12, newSize, true);
-
-                        written = start + newBytes.length + 5;
-                        start += newSize << 12;
-                    }
-
-                    // Write all the chunks which need to be appended
-                    if (!append.isEmpty()) {
-                        for (Int2ObjectMap.Entry<byte[]> entry : append.int2ObjectEntrySet()) {
-                            int pair = entry.getIntKey();
-                            short cx = MathMan.unpairX(pair);
-                            short cz = MathMan.unpairY(pair);
-                            byte[] bytes = entry.getValue();
-                            int len = bytes.length + 5;
-                            int newSize = (len + 4095) >> 12;
-                            writeSafe(raf, start, bytes);
-                            writeHeader(raf, cx, cz, start >> 12, newSize, true);
-                            written = start + bytes.length + 5;
-                            start += newSize << 12;
-                        }
-                    }
-                    // Round the file length, since the vanilla server doesn't like it for some reason
-                    raf.setLength(4096 * ((written + 4095) / 4096));
-                    if (raf instanceof BufferedRandomAccessFile) {
-                        ((BufferedRandomAccessFile) raf).flush();
-                    }
-                    raf.close();
+                    // The server may have saved chunks since the header was loaded, so copy sectors using the current one
+                    readHeader();
+                    writeRegion(pool);
                 } catch (Throwable e) {
                     e.printStackTrace();
                 }
@@ -670,10 +651,217 @@ public class MCAFile {
                     pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
                 }
             }
-            chunks.clear();
+            synchronized (chunks) {
+                chunks.clear();
+            }
         }
         IterableThreadLocal.clean(byteStore1);
         IterableThreadLocal.clean(byteStore2);
         IterableThreadLocal.clean(byteStore3);
     }
+
+    /**
+     * Reload the location header from the file (should be called while the region is locked)
+     */
+    private void readHeader() throws IOException {
+        if (raf.length() < 8192) {
+            return;
+        }
+        byte[] header = new byte[4096];
+        raf.seek(0);
+        raf.readFully(header);
+        this.locations = header;
+    }
+
+    private void writeRegion(ForkJoinPool pool) throws IOException {
+        final long now = System.currentTimeMillis();
+        final FileChannel channel = raf.getChannel();
+        final long length = raf.length();
+
+        // The previous timestamps are kept for unmodified chunks
+        byte[] timestamps = new byte[4096];
+        if (length >= 8192) {
+            raf.seek(4096);
+            raf.readFully(timestamps);
+        }
+        final byte[] oldTimestamps = timestamps.clone();
+
+        // Prepare each slot: modified chunks are fully decoded here (may read the file), compression happens in the pool
+        final Callable<byte[]>[] tasks = new Callable[1024];
+        for (int i = 0; i < 1024; i++) {
+            final int cx = i & 31;
+            final int cz = i >> 5;
+            MCAChunk cached = getCachedChunk(cx, cz);
+            if (cached != null && (cached.isModified() || cached.isDeleted())) {
+                if (cached.isDeleted()) {
+                    Arrays.fill(timestamps, i << 2, (i << 2) + 4, (byte) 0);
+                    continue;
+                }
+                cached.setLastUpdate(now);
+                final MCAChunk chunk = getFullChunk(cached);
+                int index = i << 2;
+                timestamps[index] = (byte) (now / 1000 >> 24);
+                timestamps[index + 1] = (byte) (now / 1000 >> 16);
+                timestamps[index + 2] = (byte) (now / 1000 >> 8);
+                timestamps[index + 3] = (byte) (now / 1000);
+                tasks[i] = new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return toSectors(toBytes(chunk));
+                    }
+                };
+            } else {
+                final int offset = getOffset(cx, cz);
+                if (offset == 0) {
+                    continue;
+                }
+                final int size = getSize(cx, cz);
+                tasks[i] = new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return readSectors(channel, length, offset, size);
+                    }
+                };
+            }
+        }
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        byte[] newLocations = new byte[4096];
+        ForkJoinTask<byte[]>[] futures = new ForkJoinTask[1024];
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            out.seek(8192);
+            int submitted = 0;
+            int position = 8192;
+            for (int i = 0; i < 1024; i++) {
+                // Keep a bounded number of chunks compressing ahead of the writer
+                for (; submitted < 1024 && submitted <= i + FLUSH_WINDOW; submitted++) {
+                    if (tasks[submitted] != null) {
+                        futures[submitted] = pool.submit(tasks[submitted]);
+                    }
+                }
+                if (futures[i] == null) {
+                    continue;
+                }
+                int index = i << 2;
+                byte[] sectors;
+                try {
+                    sectors = futures[i].get();
+                    if (sectors != null && sectors.length > MAX_SECTORS << 12) {
+                        // The size doesn't fit in the header, so keep the chunk as it is on disk (like vanilla)
+                        int cx = (X << 5) + (i & 31);
+                        int cz = (Z << 5) + (i >> 5);
+                        Fawe.debug("Chunk " + cx + "," + cz + " in " + file.getName() + " is too large to save (" + (sectors.length >> 12) + " sectors)");
+                        System.arraycopy(oldTimestamps, index, timestamps, index, 4);
+                        sectors = readOldSectors(channel, length, i);
+                    }
+                } catch (Throwable e) {
+                    // Don't drop the chunk from the region, keep it as it is on disk
+                    e.printStackTrace();
+                    System.arraycopy(oldTimestamps, index, timestamps, index, 4);
+                    sectors = readOldSectors(channel, length, i);
+                }
+                futures[i] = null;
+                if (sectors == null || sectors.length == 0) {
+                    Arrays.fill(timestamps, index, index + 4, (byte) 0);
+                    continue;
+                }
+                out.write(sectors);
+                int offsetMedium = position >> 12;
+                newLocations[index] = (byte) (offsetMedium >> 16);
+                newLocations[index + 1] = (byte) (offsetMedium >> 8);
+                newLocations[index + 2] = (byte) (offsetMedium);
+                newLocations[index + 3] = (byte) (sectors.length >> 12);
+                position += sectors.length;
+            }
+            out.seek(0);
+            out.write(newLocations);
+            out.write(timestamps);
+            out.getFD().sync();
+        } catch (Throwable e) {
+            tmp.delete();
+            throw e;
+        }
+
+        raf.close();
+        try {
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            file.setLastModified(now);
+            this.locations = newLocations;
+        } finally {
+            // Later reads (and close) use the new file, or the old one if it wasn't replaced
+            this.raf = new RandomAccessFile(file, "rw");
+        }
+    }
+
+    /**
+     * Read the sectors of a chunk as they are in the file being replaced
+     *
+     * @return the sectors, or null if there are none (or they can't be read)
+     */
+    private byte[] readOldSectors(FileChannel channel, long length, int i) {
+        int offset = getOffset(i & 31, i >> 5);
+        if (offset == 0) {
+            return null;
+        }
+        try {
+            byte[] sectors = readSectors(channel, length, offset, getSize(i & 31, i >> 5));
+            return sectors != null && sectors.length > MAX_SECTORS << 12 ? null : sectors;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Copy compressed chunk data into a buffer padded to whole sectors, with the 5 byte chunk header
+     */
+    private static byte[] toSectors(byte[] compressed) {
+        if (compressed == null) {
+            return null;
+        }
+        int len = compressed.length + 5;
+        byte[] sectors = new byte[(len + 4095) & ~4095];
+        int dataLength = compressed.length + 1;
+        sectors[0] = (byte) (dataLength >> 24);
+        sectors[1] = (byte) (dataLength >> 16);
+        sectors[2] = (byte) (dataLength >> 8);
+        sectors[3] = (byte) (dataLength);
+        // Compression type
+        sectors[4] = 2;
+        System.arraycopy(compressed, 0, sectors, 5, compressed.length);
+        return sectors;
+    }
+
+    /**
+     * Read the sectors of an unmodified chunk as is (positional reads don't need the RandomAccessFile lock)
+     */
+    private static byte[] readSectors(FileChannel channel, long fileLength, int offset, int size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (offset + 5 > fileLength || channel.read(header, offset) != 4) {
+            return null;
+        }
+        header.flip();
+        int dataLength = header.getInt();
+        int len = dataLength + 4;
+        if (dataLength <= 1 || offset + len > fileLength) {
+            // Corrupt length, keep the sectors from the header
+            len = (int) Math.min(size, fileLength - offset);
+            if (len <= 0) {
+                return null;
+            }
+        }
+        byte[] sectors = new byte[(len + 4095) & ~4095];
+        ByteBuffer buffer = ByteBuffer.wrap(sectors, 0, len);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return sectors;
+    }
 }
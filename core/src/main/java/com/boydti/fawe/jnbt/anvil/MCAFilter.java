@@ -16,6 +16,17 @@ public class MCAFilter<T> extends IterableThreadLocal<T> {
         return;
     }
 
+    /**
+     * The parts of each chunk this filter reads or modifies<br>
+     * - Other parts are skipped when the chunk is decoded, and kept as is when it's written<br>
+     * - Default: every part
+     *
+     * @return a bitmask of MCAChunk.PART_ values
+     */
+    public int getParts() {
+        return MCAChunk.PART_ALL;
+    }
+
     /**
      * Check whether this .mca file should be read
      * @param path
@@ -510,7 +510,7 @@ public class MCAQueue extends NMSMappedFaweQueue<FaweQueue, FaweChunk, FaweChunk
                         final MCAFile original = new MCAFile(MCAQueue.this, file);
                         final MCAFile finalFile = filter.applyFile(original);
                         if (finalFile != null && !finalFile.isDeleted()) {
-                            finalFile.init();
+                            finalFile.init(true);
                             // May not do anything, but seems to lead to smaller lag spikes
                             final int cbx = mcaX << 5;
                             final int cbz = mcaZ << 5;
@@ -525,7 +525,7 @@ public class MCAQueue extends NMSMappedFaweQueue<FaweQueue, FaweChunk, FaweChunk
                                                 int cx = cbx + rcx;
                                                 int cz = cbz + rcz;
                                                 if (filter.appliesChunk(cx, cz)) {
-                                                    MCAChunk chunk = finalFile.getChunk(cx, cz);
+                                                    MCAChunk chunk = finalFile.getChunk(cx, cz, filter.getParts());
                                                     try {
                                                         final G value = filter.get();
                                                         chunk = filter.applyChunk(chunk, value);
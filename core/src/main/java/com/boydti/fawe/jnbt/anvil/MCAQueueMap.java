@@ -26,6 +26,7 @@ public class MCAQueueMap implements IFaweQueueMap {
     private Map<Long, MCAFile> mcaFileMap = new ConcurrentHashMap<>(8, 0.9f, 1);
     private NullFaweChunk nullChunk;
     private boolean isHybridQueue;
+    private boolean routeLoadedChunks;
 
     public void setParentQueue(FaweQueue queue) {
         this.queue = queue;
@@ -33,6 +34,39 @@ public class MCAQueueMap implements IFaweQueueMap {
         this.isHybridQueue = queue != null && !(queue instanceof MCAQueue) && (!(queue instanceof MappedFaweQueue) || ((MappedFaweQueue) queue).getFaweQueueMap() != this);
     }
 
+    /**
+     * Send chunks which are loaded to the parent queue, instead of writing them to the region file<br>
+     * - Only applies to a hybrid queue (one with a mapped parent queue)<br>
+     * - A chunk stays with whichever queue it was first accessed through
+     *
+     * @param route
+     */
+    public void setRouteLoadedChunks(boolean route) {
+        this.routeLoadedChunks = route;
+    }
+
+    public boolean isRouteLoadedChunks() {
+        return routeLoadedChunks && isHybridQueue;
+    }
+
+    /**
+     * If a chunk which isn't queued in the parent yet should be placed through the parent queue<br>
+     * - A chunk the region file already has stays with the region file, even if it has been loaded since<br>
+     * - Otherwise loaded chunks go to the parent, so they aren't unloaded when the region is written
+     *
+     * @param cachedInRegion if the region file has the chunk cached
+     * @param loaded         if the chunk is loaded
+     * @return
+     */
+    static boolean isParentChunk(boolean cachedInRegion, boolean loaded) {
+        return !cachedInRegion && loaded;
+    }
+
+    private boolean isLoaded(int cx, int cz) {
+        MappedFaweQueue mfq = (MappedFaweQueue) queue;
+        return mfq.getCachedChunk(mfq.getWorld(), cx, cz) != null;
+    }
+
     private MCAFile lastFile;
     private int lastFileX = Integer.MIN_VALUE;
     private int lastFileZ = Integer.MIN_VALUE;
@@ -113,6 +147,10 @@ public class MCAQueueMap implements IFaweQueueMap {
             if (lastChunk != null) {
                 return lastChunk;
             }
+            if (routeLoadedChunks && isParentChunk(getCachedFaweChunk(cx, cz) != null, isLoaded(cx, cz))) {
+                lastChunk = mfq.getFaweQueueMap().getFaweChunk(cx, cz);
+                return lastChunk;
+            }
         }
         try {
             MCAFile mcaFile = getMCAFile(cx, cz, create);
@@ -203,7 +241,18 @@ public class MCAQueueMap implements IFaweQueueMap {
                 if (result = iter.hasNext()) {
                     MCAFile file = iter.next().getValue();
                     iter.remove();
-                    queue.setMCA(file.getX(), file.getZ(), RegionWrapper.GLOBAL(), new Runnable() {
+                    RegionWrapper unload = RegionWrapper.GLOBAL();
+                    if (isRouteLoadedChunks()) {
+                        // Only unload the chunks that were loaded after being changed here, so they reload with the changes
+                        unload = new RegionWrapper(file.getX() << 9, (file.getX() << 9) + 511, file.getZ() << 9, (file.getZ() << 9) + 511) {
+                            @Override
+                            public boolean isInChunk(int cx, int cz) {
+                                MCAChunk chunk = file.getCachedChunk(cx, cz);
+                                return chunk != null && chunk.isModified();
+                            }
+                        };
+                    }
+                    queue.setMCA(file.getX(), file.getZ(), unload, new Runnable() {
                         @Override
                         public void run() {
                             file.close(SetQueue.IMP.getForkJoinPool());
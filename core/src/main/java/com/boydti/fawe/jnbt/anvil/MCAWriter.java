@@ -6,7 +6,10 @@ import com.boydti.fawe.util.MainUtil;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.Deflater;
 
 public abstract class MCAWriter {
@@ -16,6 +19,11 @@ public abstract class MCAWriter {
     private final int area;
     private int OX, OZ;
 
+    /**
+     * The maximum number of regions generated but not yet written (one, like a region at a time)
+     */
+    private static final int MAX_PENDING_REGIONS = 1;
+
 
     public MCAWriter(int width, int length, File regionFolder) {
         this.folder = regionFolder;
@@ -69,13 +77,20 @@ public abstract class MCAWriter {
 
     public abstract MCAChunk write(MCAChunk input, int startX, int endX, int startZ, int endZ);
 
+    /**
+     * Write all region files<br>
+     * - Each region (32x32 chunks) is a tile: its chunks are generated and compressed in parallel<br>
+     * - A tile is written to disk by the worker which finishes its last chunk<br>
+     * - At most {@link #MAX_PENDING_REGIONS} tiles are held in memory at once<br>
+     * - Only the output is tiled, the source {@link #write} reads from (e.g. the heightmap) must be resident
+     *
+     * @throws IOException if a chunk or region could not be written
+     */
     public void generate() throws IOException {
         if (!folder.exists()) {
             folder.mkdirs();
         }
         final ForkJoinPool pool = new ForkJoinPool();
-        int bcx = 0;
-        int bcz = 0;
         int tcx = (width - 1) >> 4;
         int tcz = (length - 1) >> 4;
         final ThreadLocal<MCAChunk> chunkStore = new ThreadLocal<MCAChunk>() {
@@ -105,117 +120,155 @@ public abstract class MCAWriter {
                 return deflater;
             }
         };
-        byte[] fileBuf = new byte[1 << 16];
-        int mcaXMin = 0;
-        int mcaZMin = 0;
-        int mcaXMax = mcaXMin + ((width - 1) >> 9);
-        int mcaZMax = mcaZMin + ((length - 1) >> 9);
-
-        for (int mcaZ = mcaXMin; mcaZ <= mcaZMax; mcaZ++) {
-            for (int mcaX = mcaXMin; mcaX <= mcaXMax; mcaX++) {
-                final int fmcaX = mcaX;
-                final int fmcaZ = mcaZ;
-                File file = new File(folder, "r." + (mcaX + (getOffsetX() >> 9)) + "." + (mcaZ + (getOffsetZ() >> 9)) + ".mca");
-                if (!file.exists()) {
-                    file.createNewFile();
-                }
-                final BufferedRandomAccessFile raf = new BufferedRandomAccessFile(file, "rw", fileBuf);
-                final byte[] header = new byte[4096];
-                final byte[][] compressed = new byte[1024][];
-                int bx = mcaX << 9;
-                int bz = mcaZ << 9;
-                int scx = bx >> 4;
-                int ecx = Math.min(scx + 31, tcx);
-                int scz = bz >> 4;
-                int ecz = Math.min(scz + 31, tcz);
-                for (int cz = scz; cz <= ecz; cz++) {
-                    final int csz = cz << 4;
-                    final int cez = Math.min(csz + 15, length - 1);
-                    for (int cx = scx; cx <= ecx; cx++) {
-                        final int csx = cx << 4;
-                        final int cex = Math.min(csx + 15, width - 1);
-                        final int fcx = cx;
-                        final int fcz = cz;
-                        if (shouldWrite(cx, cz)) {
-                            pool.submit(new Runnable() {
-                                @Override
-                                public void run() {
-                                    try {
-                                        MCAChunk chunk = chunkStore.get();
-                                        chunk.setLoc(null, fcx, fcz);
-                                        chunk = write(chunk, csx, cex, csz, cez);
-                                        if (chunk != null) {
-                                            // Generation offset
-                                            chunk.setLoc(null, fcx + (getOffsetX() >> 4), fcz + (getOffsetZ() >> 4));
-                                            // Compress
-                                            byte[] bytes = chunk.toBytes(byteStore1.get());
-                                            byte[] compressedBytes = MainUtil.compress(bytes, byteStore2.get(), deflateStore.get());
-                                            int blocks = (compressed.length + 4095) >> 12;
-                                            compressed[((fcx & 31)) + ((fcz & 31) << 5)] = compressedBytes.clone();
+        final Semaphore pending = new Semaphore(MAX_PENDING_REGIONS);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        int mcaXMax = (width - 1) >> 9;
+        int mcaZMax = (length - 1) >> 9;
+
+        try {
+            for (int mcaZ = 0; mcaZ <= mcaZMax; mcaZ++) {
+                for (int mcaX = 0; mcaX <= mcaXMax; mcaX++) {
+                    pending.acquire();
+                    File file = new File(folder, "r." + (mcaX + (getOffsetX() >> 9)) + "." + (mcaZ + (getOffsetZ() >> 9)) + ".mca");
+                    final RegionTile tile = new RegionTile(file, pending, error);
+                    int bx = mcaX << 9;
+                    int bz = mcaZ << 9;
+                    int scx = bx >> 4;
+                    int ecx = Math.min(scx + 31, tcx);
+                    int scz = bz >> 4;
+                    int ecz = Math.min(scz + 31, tcz);
+                    for (int cz = scz; cz <= ecz; cz++) {
+                        final int csz = cz << 4;
+                        final int cez = Math.min(csz + 15, length - 1);
+                        for (int cx = scx; cx <= ecx; cx++) {
+                            final int csx = cx << 4;
+                            final int cex = Math.min(csx + 15, width - 1);
+                            final int fcx = cx;
+                            final int fcz = cz;
+                            if (shouldWrite(cx, cz)) {
+                                tile.remaining.incrementAndGet();
+                                pool.submit(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        try {
+                                            MCAChunk chunk = chunkStore.get();
+                                            chunk.setLoc(null, fcx, fcz);
+                                            chunk = write(chunk, csx, cex, csz, cez);
+                                            if (chunk != null) {
+                                                // Generation offset
+                                                chunk.setLoc(null, fcx + (getOffsetX() >> 4), fcz + (getOffsetZ() >> 4));
+                                                // Compress
+                                                byte[] bytes = chunk.toBytes(byteStore1.get());
+                                                byte[] compressedBytes = MainUtil.compress(bytes, byteStore2.get(), deflateStore.get());
+                                                tile.compressed[((fcx & 31)) + ((fcz & 31) << 5)] = compressedBytes.clone();
+                                            }
+                                        } catch (Throwable e) {
+                                            error.compareAndSet(null, e);
+                                        } finally {
+                                            tile.complete();
                                         }
-                                    } catch (Throwable e) {
-                                        e.printStackTrace();
                                     }
-                                }
-                            });
+                                });
+                            }
                         }
                     }
+                    // Release the submitter's hold, the last chunk writes the file
+                    tile.complete();
                 }
-                pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-                pool.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            int totalLength = 8192;
-                            for (int i = 0; i < compressed.length; i++) {
-                                byte[] compressedBytes = compressed[i];
-                                if (compressedBytes != null) {
-                                    int blocks = ((4095 + compressedBytes.length + 5) / 4096) * 4096;
-                                    totalLength += blocks;
-                                }
-                            }
-                            raf.setLength(totalLength);
-                            int offset = 8192;
-                            for (int i = 0; i < compressed.length; i++) {
-                                byte[] compressedBytes = compressed[i];
-                                if (compressedBytes != null) {
-                                    // Set header
-                                    int index = i << 2;
-                                    int offsetMedium = offset >> 12;
-                                    int blocks = ((4095 + compressedBytes.length + 5) / 4096);
-                                    header[index] = (byte) (offsetMedium >> 16);
-                                    header[index + 1] = (byte) ((offsetMedium >> 8));
-                                    header[index + 2] = (byte) ((offsetMedium >> 0));
-                                    header[index + 3] = (byte) (blocks);
-                                    // Write bytes
-                                    int cx = (fmcaX << 5) + (i & 31);
-                                    int cz = (fmcaZ << 5) + (i >> 5);
-                                    raf.seek(offset);
-                                    raf.writeInt(compressedBytes.length + 1);
-                                    raf.write(2);
-                                    raf.write(compressedBytes);
-                                    offset += blocks * 4096;
-                                }
-                            }
-                            raf.seek(0);
-                            raf.write(header);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        } finally {
-                            try {
-                                raf.close();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            pool.shutdown();
+            IterableThreadLocal.clean(byteStore1);
+            IterableThreadLocal.clean(byteStore2);
+            IterableThreadLocal.clean(deflateStore);
+        }
+        if (error.get() != null) {
+            throw new IOException("Failed to write " + folder, error.get());
+        }
+    }
+
+    /**
+     * The compressed chunks of one region file
+     */
+    private static final class RegionTile {
+        private final File file;
+        private final Semaphore pending;
+        private final AtomicReference<Throwable> error;
+        private final byte[][] compressed = new byte[1024][];
+        // Starts at 1 for the thread submitting the chunks
+        private final AtomicInteger remaining = new AtomicInteger(1);
+
+        private RegionTile(File file, Semaphore pending, AtomicReference<Throwable> error) {
+            this.file = file;
+            this.pending = pending;
+            this.error = error;
+        }
+
+        private void complete() {
+            if (remaining.decrementAndGet() == 0) {
+                try {
+                    save();
+                } finally {
+                    pending.release();
+                }
+            }
+        }
+
+        private void save() {
+            BufferedRandomAccessFile raf = null;
+            try {
+                if (!file.exists()) {
+                    file.createNewFile();
+                }
+                raf = new BufferedRandomAccessFile(file, "rw", new byte[1 << 16]);
+                byte[] header = new byte[4096];
+                int totalLength = 8192;
+                for (int i = 0; i < compressed.length; i++) {
+                    byte[] compressedBytes = compressed[i];
+                    if (compressedBytes != null) {
+                        int blocks = ((4095 + compressedBytes.length + 5) / 4096) * 4096;
+                        totalLength += blocks;
                     }
-                });
+                }
+                raf.setLength(totalLength);
+                int offset = 8192;
+                for (int i = 0; i < compressed.length; i++) {
+                    byte[] compressedBytes = compressed[i];
+                    if (compressedBytes != null) {
+                        // Set header
+                        int index = i << 2;
+                        int offsetMedium = offset >> 12;
+                        int blocks = ((4095 + compressedBytes.length + 5) / 4096);
+                        header[index] = (byte) (offsetMedium >> 16);
+                        header[index + 1] = (byte) ((offsetMedium >> 8));
+                        header[index + 2] = (byte) ((offsetMedium >> 0));
+                        header[index + 3] = (byte) (blocks);
+                        // Write bytes
+                        raf.seek(offset);
+                        raf.writeInt(compressedBytes.length + 1);
+                        raf.write(2);
+                        raf.write(compressedBytes);
+                        offset += blocks * 4096;
+                        compressed[i] = null;
+                    }
+                }
+                raf.seek(0);
+                raf.write(header);
+            } catch (IOException e) {
+                error.compareAndSet(null, e);
+            } finally {
+                if (raf != null) {
+                    try {
+                        raf.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
             }
         }
-        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-        pool.shutdown();
-        IterableThreadLocal.clean(byteStore1);
-        IterableThreadLocal.clean(byteStore2);
-        IterableThreadLocal.clean(deflateStore);
     }
 }
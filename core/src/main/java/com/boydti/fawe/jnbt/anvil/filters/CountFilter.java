@@ -24,6 +24,11 @@ public class CountFilter extends MCAFilterCounter {
         return this;
     }
 
+    @Override
+    public int getParts() {
+        return MCAChunk.PART_BLOCKS;
+    }
+
     @Override
     public MCAChunk applyChunk(MCAChunk chunk, MutableLong count) {
         for (int layer = 0; layer < chunk.ids.length; layer++) {
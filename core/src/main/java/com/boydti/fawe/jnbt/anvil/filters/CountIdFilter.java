@@ -22,6 +22,11 @@ public class CountIdFilter extends MCAFilterCounter {
         return this;
     }
 
+    @Override
+    public int getParts() {
+        return MCAChunk.PART_BLOCKS;
+    }
+
     @Override
     public MCAChunk applyChunk(MCAChunk chunk, MutableLong count) {
         for (int layer = 0; layer < chunk.ids.length; layer++) {
@@ -19,6 +19,11 @@ public class DelegateMCAFilter<T> extends MCAFilter<T> {
         filter.withPool(pool, queue);
     }
 
+    @Override
+    public int getParts() {
+        return filter.getParts();
+    }
+
     @Override
     public boolean appliesFile(Path path, BasicFileAttributes attr) {
         return filter.appliesFile(path, attr);
@@ -1,6 +1,7 @@
 package com.boydti.fawe.jnbt.anvil.filters;
 
 import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.jnbt.anvil.MCAChunk;
 import com.boydti.fawe.jnbt.anvil.MCAFilterCounter;
 import com.boydti.fawe.object.number.MutableLong;
 import com.boydti.fawe.util.StringMan;
@@ -53,6 +54,12 @@ public class MappedReplacePatternFilter extends MCAFilterCounter {
 
     private final MutableBlockVector mutable = new MutableBlockVector(0, 0, 0);
 
+    @Override
+    public int getParts() {
+        // Tiles are removed when a block is replaced
+        return MCAChunk.PART_BLOCKS | MCAChunk.PART_TILES;
+    }
+
     @Override
     public void applyBlock(int x, int y, int z, BaseBlock block, MutableLong ignore) {
         int id = block.getId();
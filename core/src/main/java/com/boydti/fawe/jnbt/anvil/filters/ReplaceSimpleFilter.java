@@ -1,5 +1,6 @@
 package com.boydti.fawe.jnbt.anvil.filters;
 
+import com.boydti.fawe.jnbt.anvil.MCAChunk;
 import com.boydti.fawe.jnbt.anvil.MCAFilterCounter;
 import com.boydti.fawe.object.mask.FaweBlockMatcher;
 import com.boydti.fawe.object.number.MutableLong;
@@ -14,6 +15,12 @@ public class ReplaceSimpleFilter extends MCAFilterCounter {
         this.to = to;
     }
 
+    @Override
+    public int getParts() {
+        // Tiles are removed when a block is replaced
+        return MCAChunk.PART_BLOCKS | MCAChunk.PART_TILES;
+    }
+
     @Override
     public void applyBlock(int x, int y, int z, BaseBlock block, MutableLong count) {
         if (from.apply(block)) {
@@ -154,6 +154,20 @@ public abstract class FaweChunk<T> implements Callable<FaweChunk> {
         return ids;
     }
 
+    /**
+     * Get the combined id array at a layer for reading, without changing how the chunk stores it<br>
+     * - Compressed sections may be expanded into the buffer instead of being kept expanded
+     *
+     * @param layer
+     * @param buffer a char[4096] which may be used for the result
+     * @return char[] or null
+     */
+    public
+    @Nullable
+    char[] getIdArray(int layer, char[] buffer) {
+        return getIdArray(layer);
+    }
+
     public byte[][] getBlockLightArray() {
         return null;
     }
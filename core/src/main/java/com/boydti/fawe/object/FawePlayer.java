@@ -7,6 +7,7 @@ import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.brush.visualization.VirtualWorld;
 import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
+import com.boydti.fawe.object.clipboard.TiledDiskClipboard;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.object.task.SimpleAsyncNotifyQueue;
 import com.boydti.fawe.object.task.ThrowableSupplier;
@@ -370,7 +371,6 @@ public abstract class FawePlayer<T> extends Metadatable {
         File file = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.IMP.PATHS.CLIPBOARD + File.separator + getUUID() + ".bd");
         try {
             if (file.exists() && file.length() > 5) {
-                DiskOptimizedClipboard doc = new DiskOptimizedClipboard(file);
                 Player player = toWorldEditPlayer();
                 LocalSession session = getSession();
                 try {
@@ -381,7 +381,7 @@ public abstract class FawePlayer<T> extends Metadatable {
                 }
                 if (player != null && session != null) {
                     WorldData worldData = player.getWorld().getWorldData();
-                    Clipboard clip = doc.toClipboard();
+                    Clipboard clip = TiledDiskClipboard.isTiled(file) ? new TiledDiskClipboard(file).toClipboard() : new DiskOptimizedClipboard(file).toClipboard();
                     ClipboardHolder holder = new ClipboardHolder(clip, worldData);
                     getSession().setClipboard(holder);
                 }
@@ -51,7 +51,9 @@ public interface FaweQueue extends HasFaweQueue, Extent {
         // If history can be recorded in an async task by the dispatcher
         CHANGE_TASKS,
         // If custom chunk packets can be sent
-        CHUNK_PACKETS
+        CHUNK_PACKETS,
+        // If placed chunks can be sent as block changes (see ChunkSendPlanner)
+        BLOCK_UPDATES
         //
     }
 
@@ -373,6 +375,16 @@ public interface FaweQueue extends HasFaweQueue, Extent {
      */
     boolean next(int amount, long time);
 
+    /**
+     * Request that queued chunks be moved out of memory, if this queue supports it<br>
+     * - See {@link com.boydti.fawe.example.SpillingFaweQueueMap}
+     *
+     * @return if any chunks were moved out of memory since the last request
+     */
+    default boolean spillChunks() {
+        return false;
+    }
+
     default void saveMemory() {
         MainUtil.sendAdmin(BBC.OOM.s());
         // Set memory limited
@@ -0,0 +1,158 @@
+package com.boydti.fawe.object.changeset;
+
+import com.boydti.fawe.object.RegionWrapper;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A chunk index of a block change (.bd) stream, stored next to it as .bdi<br>
+ * - Each range is a run of consecutive records in one chunk: { cx, cz, start, end, lx, ly, lz }<br>
+ * - lx, ly, lz are the relative coordinates of the record before the range, so the delta encoded positions can be resumed mid stream<br>
+ * - Lets rollback / inspect skip the records (and for seekable codecs, the data) outside the area of interest
+ */
+public class BlockChangeIndex {
+
+    private static final int VERSION = 1;
+    private static final int MAX_RANGES = 65536;
+
+    private final IntArrayList ranges;
+    private final int recordSize;
+    private int records;
+    private int lastCx, lastCz, lastX, lastY, lastZ;
+    private boolean overflow;
+
+    public BlockChangeIndex(int recordSize) {
+        this.recordSize = recordSize;
+        this.ranges = new IntArrayList();
+    }
+
+    private BlockChangeIndex(int recordSize, IntArrayList ranges) {
+        this.recordSize = recordSize;
+        this.ranges = ranges;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Record the next block change in the stream
+     *
+     * @param x relative x
+     * @param y
+     * @param z relative z
+     * @param cx absolute chunk x
+     * @param cz absolute chunk z
+     */
+    public void add(int x, int y, int z, int cx, int cz) {
+        if (overflow) {
+            return;
+        }
+        int size = ranges.size();
+        if (size != 0 && cx == lastCx && cz == lastCz) {
+            ranges.set(size - 4, ++records);
+        } else if (size / 7 >= MAX_RANGES) {
+            overflow = true;
+            ranges.clear();
+        } else {
+            ranges.add(cx);
+            ranges.add(cz);
+            ranges.add(records);
+            ranges.add(++records);
+            ranges.add(lastX);
+            ranges.add(lastY);
+            ranges.add(lastZ);
+            lastCx = cx;
+            lastCz = cz;
+        }
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+    }
+
+    public boolean isEmpty() {
+        return overflow || ranges.isEmpty();
+    }
+
+    /**
+     * Check if any indexed chunk intersects a region
+     *
+     * @param region
+     * @return
+     */
+    public boolean intersects(RegionWrapper region) {
+        for (int i = 0; i < ranges.size(); i += 7) {
+            if (region.isInChunk(ranges.getInt(i), ranges.getInt(i + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the ranges of records in chunks intersecting any of the regions
+     *
+     * @param regions
+     * @return ascending { start, end, lx, ly, lz } groups, with adjacent ranges merged
+     */
+    public int[] getRanges(RegionWrapper[] regions) {
+        IntArrayList result = new IntArrayList();
+        for (int i = 0; i < ranges.size(); i += 7) {
+            int cx = ranges.getInt(i);
+            int cz = ranges.getInt(i + 1);
+            for (RegionWrapper region : regions) {
+                if (region.isInChunk(cx, cz)) {
+                    int size = result.size();
+                    int start = ranges.getInt(i + 2);
+                    if (size != 0 && result.getInt(size - 4) == start) {
+                        result.set(size - 4, ranges.getInt(i + 3));
+                    } else {
+                        result.addAll(ranges.subList(i + 2, i + 7));
+                    }
+                    break;
+                }
+            }
+        }
+        return result.toIntArray();
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(VERSION);
+            out.writeInt(recordSize);
+            out.writeInt(ranges.size() / 7);
+            for (int i = 0; i < ranges.size(); i++) {
+                out.writeInt(ranges.getInt(i));
+            }
+        }
+    }
+
+    /**
+     * Read an index file
+     *
+     * @param file
+     * @return the index, or null if it is not a supported version
+     * @throws IOException
+     */
+    public static BlockChangeIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            int recordSize = in.readInt();
+            int length = in.readInt() * 7;
+            IntArrayList ranges = new IntArrayList(length);
+            for (int i = 0; i < length; i++) {
+                ranges.add(in.readInt());
+            }
+            return new BlockChangeIndex(recordSize, ranges);
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     private UUID uuid;
     private File bdFile;
+    private File bdiFile;
     private File bioFile;
     private File nbtfFile;
     private File nbttFile;
@@ -51,6 +52,10 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
      * { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }
      */
     private OutputStream osBD;
+    // chunk index of osBD
+    private BlockChangeIndex indexBD;
+    // only read the records in these regions (if indexed)
+    private RegionWrapper[] indexFilter;
     // biome
     private OutputStream osBIO;
     // NBT From
@@ -110,6 +115,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
         entfFile = new File(folder, index + ".entf");
         enttFile = new File(folder, index + ".entt");
         bdFile = new File(folder, index + ".bd");
+        bdiFile = new File(folder, index + ".bdi");
         bioFile = new File(folder, index + ".bio");
     }
 
@@ -131,6 +137,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     public void deleteFiles() {
         bdFile.delete();
+        bdiFile.delete();
         nbtfFile.delete();
         nbttFile.delete();
         entfFile.delete();
@@ -138,16 +145,87 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     }
 
     public void undo(FawePlayer fp, Region[] regions) {
+        setIndexFilter(wrap(regions));
         EditSession session = toEditSession(fp, regions);
         session.undo(session);
         deleteFiles();
     }
 
     public void redo(FawePlayer fp, Region[] regions) {
+        setIndexFilter(wrap(regions));
         EditSession session = toEditSession(fp, regions);
         session.redo(session);
     }
 
+    private static RegionWrapper[] wrap(Region[] regions) {
+        if (regions == null) {
+            return null;
+        }
+        RegionWrapper[] wrappers = new RegionWrapper[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            wrappers[i] = new RegionWrapper(regions[i].getMinimumPoint(), regions[i].getMaximumPoint());
+        }
+        return wrappers;
+    }
+
+    /**
+     * Only read the block changes in chunks intersecting these regions<br>
+     * - Requires the chunk index (.bdi), otherwise every change is read
+     *
+     * @param regions the regions, or null to read everything
+     */
+    public void setIndexFilter(RegionWrapper... regions) {
+        this.indexFilter = regions;
+    }
+
+    /**
+     * Check the chunk index for any changes in a region
+     *
+     * @param region
+     * @return false if the edit definitely has no block changes in the region
+     */
+    public boolean mayContain(RegionWrapper region) {
+        if (!bdiFile.exists()) {
+            return true;
+        }
+        try {
+            BlockChangeIndex index = BlockChangeIndex.read(bdiFile);
+            return index == null || index.intersects(region);
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+            return true;
+        }
+    }
+
+    @Override
+    protected int[] getBlockRanges() {
+        if (indexFilter == null || !bdiFile.exists()) {
+            return null;
+        }
+        try {
+            BlockChangeIndex index = BlockChangeIndex.read(bdiFile);
+            if (index == null || index.getRecordSize() != getRecordSize()) {
+                return null;
+            }
+            return index.getRanges(indexFilter);
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+            return null;
+        }
+    }
+
+    @Override
+    public void add(int x, int y, int z, int combinedFrom, int combinedTo) {
+        // The index refers to records by their position, so the record and its index entry are added under the same lock
+        synchronized (this) {
+            super.add(x, y, z, combinedFrom, combinedTo);
+            if (indexBD == null) {
+                indexBD = new BlockChangeIndex(getRecordSize());
+            }
+            indexBD.add(x - getOriginX(), y, z - getOriginZ(), x >> 4, z >> 4);
+        }
+    }
+
     public void undo(FawePlayer fp) {
         undo(fp, null);
     }
@@ -197,6 +275,12 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
                     osBD.close();
                     osBD = null;
                 }
+                if (indexBD != null) {
+                    if (!indexBD.isEmpty()) {
+                        indexBD.write(bdiFile);
+                    }
+                    indexBD = null;
+                }
                 if (osBIO != null) {
                     osBIO.close();
                     osBIO = null;
@@ -266,7 +350,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
         synchronized (this) {
             bdFile.getParentFile().mkdirs();
             bdFile.createNewFile();
-            osBD = getCompressedOS(new FileOutputStream(bdFile));
+            osBD = getBlockCompressedOS(new FileOutputStream(bdFile));
             writeHeader(osBD, x, y, z);
             return osBD;
         }
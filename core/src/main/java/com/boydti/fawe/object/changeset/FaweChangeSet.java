@@ -40,6 +40,8 @@ public abstract class FaweChangeSet implements ChangeSet {
     private final int layers;
     protected AtomicInteger waitingCombined = new AtomicInteger(0);
     protected AtomicInteger waitingAsync = new AtomicInteger(0);
+    // Reused (while synchronized) so palette compressed sections are read without being expanded in place
+    private char[] currentBuffer, previousBuffer;
 
     public static FaweChangeSet getDefaultChangeSet(World world, UUID uuid) {
         if (Settings.IMP.HISTORY.USE_DISK) {
@@ -287,12 +289,16 @@ public abstract class FaweChangeSet implements ChangeSet {
                                     }
                                 }
                                 // Block changes
+                                if (currentBuffer == null) {
+                                    currentBuffer = new char[4096];
+                                    previousBuffer = new char[4096];
+                                }
                                 for (int layer = 0; layer < layers; layer++) {
-                                    char[] currentLayer = next.getIdArray(layer);
+                                    char[] currentLayer = next.getIdArray(layer, currentBuffer);
                                     if (currentLayer == null) {
                                         continue;
                                     }
-                                    char[] previousLayer = previous.getIdArray(layer);
+                                    char[] previousLayer = previous.getIdArray(layer, previousBuffer);
                                     int startY = layer << 4;
                                     int index = 0;
                                     for (int y = 0; y < 16; y++) {
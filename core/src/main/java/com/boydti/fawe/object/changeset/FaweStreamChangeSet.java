@@ -76,6 +76,11 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         int readY(FaweInputStream in) throws IOException;
 
         int readZ(FaweInputStream in) throws IOException;
+
+        /**
+         * Set the relative position the next delta is applied to (used when skipping records)
+         */
+        void setLast(int x, int y, int z);
     }
 
     public interface FaweStreamIdDelegate {
@@ -182,6 +187,13 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
                 public int readZ(FaweInputStream in) throws IOException {
                     return lz = lz + ((((buffer[2] & 0xFF) + ((MathMan.unpair16y(buffer[3])) << 8)) << 20) >> 20);
                 }
+
+                @Override
+                public void setLast(int x, int y, int z) {
+                    lx = x;
+                    ly = y;
+                    lz = z;
+                }
             };
         } else {
             posDel = new FaweStreamPositionDelegate() {
@@ -215,6 +227,13 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
                 public int readZ(FaweInputStream is) throws IOException {
                     return lz = (lz + (buffer[2] & 0xFF) + (buffer[3] << 8));
                 }
+
+                @Override
+                public void setLast(int x, int y, int z) {
+                    lx = x;
+                    ly = y;
+                    lz = z;
+                }
             };
         }
     }
@@ -247,6 +266,18 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         return MainUtil.getCompressedOS(os, compression);
     }
 
+    /**
+     * Get the compressed stream for block changes<br>
+     * - Also offers the data as training input for the compression dictionary
+     *
+     * @param os
+     * @return
+     * @throws IOException
+     */
+    public FaweOutputStream getBlockCompressedOS(OutputStream os) throws IOException {
+        return MainUtil.getCompressedOS(os, compression, Settings.IMP.HISTORY.BUFFER_SIZE, true);
+    }
+
     @Override
     public boolean isEmpty() {
         if (blockSize > 0) {
@@ -404,17 +435,85 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         }
     }
 
+    /**
+     * Get the size of one block change record in the block stream
+     *
+     * @return
+     */
+    public int getRecordSize() {
+        return (mode == 1 || mode == 4 ? 4 : 5) + (mode == 3 || mode == 4 ? 4 : 2);
+    }
+
+    /**
+     * Get the ranges of block change records to read (e.g. from a chunk index)
+     *
+     * @return ascending { start, end, lx, ly, lz } groups, or null to read every record
+     */
+    protected int[] getBlockRanges() {
+        return null;
+    }
+
+    /**
+     * Skips block change records outside of {@link #getBlockRanges()}
+     */
+    private final class BlockRangeReader {
+        private final int[] ranges;
+        private final int recordSize;
+        private int index = -5;
+        private long record;
+        private long end;
+
+        private BlockRangeReader(int[] ranges) {
+            this.ranges = ranges;
+            this.recordSize = getRecordSize();
+        }
+
+        /**
+         * Position the stream at the next record to read
+         *
+         * @param is
+         * @throws EOFException if there are no more records
+         */
+        private void next(FaweInputStream is) throws IOException {
+            if (record == end) {
+                index += 5;
+                if (index >= ranges.length) {
+                    throw new EOFException();
+                }
+                long start = ranges[index];
+                long skip = (start - record) * recordSize;
+                while (skip > 0) {
+                    long skipped = is.skip(skip);
+                    if (skipped <= 0) {
+                        if (is.read() == -1) {
+                            throw new EOFException();
+                        }
+                        skipped = 1;
+                    }
+                    skip -= skipped;
+                }
+                posDel.setLast(ranges[index + 2], ranges[index + 3], ranges[index + 4]);
+                record = start;
+                end = ranges[index + 1];
+            }
+            record++;
+        }
+    }
+
     public Iterator<MutableBlockChange> getBlockIterator(final boolean dir) throws IOException {
         final FaweInputStream is = getBlockIS();
         if (is == null) {
             return new ArrayList<MutableBlockChange>().iterator();
         }
+        int[] blockRanges = getBlockRanges();
+        final BlockRangeReader ranges = blockRanges == null ? null : new BlockRangeReader(blockRanges);
         final MutableBlockChange change = new MutableBlockChange(0, 0, 0, (short) 0, (byte) 0);
         return new Iterator<MutableBlockChange>() {
             private MutableBlockChange last = read();
 
             public MutableBlockChange read() {
                 try {
+                    if (ranges != null) ranges.next(is);
                     change.x = posDel.readX(is) + originX;
                     change.y = posDel.readY(is);
                     change.z = posDel.readZ(is) + originZ;
@@ -527,12 +626,15 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         if (is == null) {
             return new ArrayList<MutableFullBlockChange>().iterator();
         }
+        int[] blockRanges = getBlockRanges();
+        final BlockRangeReader ranges = blockRanges == null ? null : new BlockRangeReader(blockRanges);
         final MutableFullBlockChange change = new MutableFullBlockChange(blockBag, inventory, dir);
         return new Iterator<MutableFullBlockChange>() {
             private MutableFullBlockChange last = read();
 
             public MutableFullBlockChange read() {
                 try {
+                    if (ranges != null) ranges.next(is);
                     change.x = posDel.readX(is) + originX;
                     change.y = posDel.readY(is);
                     change.z = posDel.readZ(is) + originZ;
@@ -146,7 +146,7 @@ public class MemoryOptimizedHistory extends FaweStreamChangeSet {
         synchronized (this) {
             setOrigin(x, z);
             idsStream = new FastByteArrayOutputStream(Settings.IMP.HISTORY.BUFFER_SIZE);
-            idsStreamZip = getCompressedOS(idsStream);
+            idsStreamZip = getBlockCompressedOS(idsStream);
             writeHeader(idsStreamZip, x, y, z);
             return idsStreamZip;
         }
@@ -17,6 +17,7 @@ import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -27,6 +28,10 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
     public static final int BLOCK_SIZE = 1048576;
     public static final int BLOCK_MASK = 1048575;
     public static final int BLOCK_SHIFT = 20;
+    /**
+     * The number of decompressed blocks kept per array
+     */
+    public static final int CACHE_SIZE = 4;
 
     private int length;
     private int height;
@@ -46,17 +51,9 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
 
     private final HashSet<ClipboardEntity> entities;
 
-    private int lastIdsI = -1;
-    private int lastDatasI = -1;
-    private int lastAddI = -1;
-
-    private byte[] lastIds;
-    private byte[] lastDatas;
-    private byte[] lastAdd;
-
-    private boolean saveIds = false;
-    private boolean saveDatas = false;
-    private boolean saveAdd = false;
+    private final BlockCache idsCache = new BlockCache();
+    private final BlockCache datasCache = new BlockCache();
+    private final BlockCache addCache = new BlockCache();
 
     private int compressionLevel;
 
@@ -138,62 +135,19 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
     }
 
     public int getId(int index) {
-        int i = index >> BLOCK_SHIFT;
-        if (i == lastIdsI) {
-            if (lastIds == null) {
-                return 0;
-            }
-            return lastIds[index & BLOCK_MASK] & 0xFF;
-        }
-        saveIds();
-        byte[] compressed = ids[lastIdsI = i];
-        if (compressed == null) {
-            lastIds = null;
+        byte[] block = idsCache.read(ids, index >> BLOCK_SHIFT);
+        if (block == null) {
             return 0;
         }
-        lastIds = MainUtil.decompress(compressed, lastIds, BLOCK_SIZE, compressionLevel);
-        return lastIds[index & BLOCK_MASK] & 0xFF;
-    }
-
-    int saves = 0;
-
-    private void saveIds() {
-        if (saveIds && lastIds != null) {
-            ids[lastIdsI] = MainUtil.compress(lastIds, buffer, compressionLevel);
-        }
-        saveIds = false;
-    }
-
-    private void saveDatas() {
-        if (saveDatas && lastDatas != null) {
-            datas[lastDatasI] = MainUtil.compress(lastDatas, buffer, compressionLevel);
-        }
-        saveDatas = false;
-    }
-
-    private void saveAdd() {
-        if (saveAdd && lastAdd != null) {
-            add[lastAddI] = MainUtil.compress(lastAdd, buffer, compressionLevel);
-        }
-        saveAdd = false;
+        return block[index & BLOCK_MASK] & 0xFF;
     }
 
     public int getData(int index) {
-        int i = index >> BLOCK_SHIFT;
-        if (i == lastDatasI) {
-            if (lastDatas == null) {
-                return 0;
-            }
-            return lastDatas[index & BLOCK_MASK];
-        }
-        saveDatas();
-        byte[] compressed = datas[lastDatasI = i];
-        if (compressed == null) {
-            lastDatas = null;
+        byte[] block = datasCache.read(datas, index >> BLOCK_SHIFT);
+        if (block == null) {
             return 0;
         }
-        lastDatas = MainUtil.decompress(compressed, lastDatas, BLOCK_SIZE, compressionLevel);
-        return lastDatas[index & BLOCK_MASK];
+        return block[index & BLOCK_MASK];
     }
 
     @Override
@@ -207,12 +161,9 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
             volume = newVolume;
             ids = new byte[1 + (volume >> BLOCK_SHIFT)][];
             datas = new byte[1 + (volume >> BLOCK_SHIFT)][];
-            lastAddI = -1;
-            lastIdsI = -1;
-            lastDatasI = -1;
-            saveIds = false;
-            saveAdd = false;
-            saveDatas = false;
+            idsCache.clear();
+            datasCache.clear();
+            addCache.clear();
         }
     }
 
@@ -222,21 +173,11 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
     }
 
     public int getAdd(int index) {
-        int i = index >> BLOCK_SHIFT;
-        if (i == lastAddI) {
-            if (lastAdd == null) {
-                return 0;
-            }
-            return lastAdd[index & BLOCK_MASK] & 0xFF;
-        }
-        saveAdd();
-        byte[] compressed = add[lastAddI = i];
-        if (compressed == null) {
-            lastAdd = null;
+        byte[] block = addCache.read(add, index >> BLOCK_SHIFT);
+        if (block == null) {
             return 0;
         }
-        lastAdd = MainUtil.decompress(compressed, lastAdd, BLOCK_SIZE, compressionLevel);
-        return lastAdd[index & BLOCK_MASK] & 0xFF;
+        return block[index & BLOCK_MASK] & 0xFF;
     }
 
 
@@ -255,46 +196,18 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
 
     @Override
     public void setId(int index, int value) {
-        int i = getLocalIndex(index);
-        if (i != lastIdsI) {
-            saveIds();
-            byte[] compressed = ids[lastIdsI = i];
-            if (compressed != null) {
-                lastIds = MainUtil.decompress(compressed, lastIds, BLOCK_SIZE, compressionLevel);
-            } else {
-                lastIds = null;
-            }
+        byte[] block = idsCache.write(ids, getLocalIndex(index), value != 0);
+        if (block != null) {
+            block[index & BLOCK_MASK] = (byte) value;
         }
-        if (lastIds == null) {
-            if (value == 0) {
-                return;
-            }
-            lastIds = new byte[BLOCK_SIZE];
-        }
-        lastIds[index & BLOCK_MASK] = (byte) value;
-        saveIds = true;
     }
 
     @Override
     public void setData(int index, int value) {
-        int i = getLocalIndex(index);
-        if (i != lastDatasI) {
-            saveDatas();
-            byte[] compressed = datas[lastDatasI = i];
-            if (compressed != null) {
-                lastDatas = MainUtil.decompress(compressed, lastDatas, BLOCK_SIZE, compressionLevel);
-            } else {
-                lastDatas = null;
-            }
+        byte[] block = datasCache.write(datas, getLocalIndex(index), value != 0);
+        if (block != null) {
+            block[index & BLOCK_MASK] = (byte) value;
         }
-        if (lastDatas == null) {
-            if (value == 0) {
-                return;
-            }
-            lastDatas = new byte[BLOCK_SIZE];
-        }
-        lastDatas[index & BLOCK_MASK] = (byte) value;
-        saveDatas = true;
     }
 
     @Override
@@ -305,24 +218,8 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
         if (add == null) {
             add = new byte[1 + (volume >> BLOCK_SHIFT)][];
         }
-        int i = index >> BLOCK_SHIFT;
-        if (i != lastAddI) {
-            saveAdd();
-            byte[] compressed = add[lastAddI = i];
-            if (compressed != null) {
-                lastAdd = MainUtil.decompress(compressed, lastAdd, BLOCK_SIZE, compressionLevel);
-            } else {
-                lastAdd = null;
-            }
-        }
-        if (lastAdd == null) {
-            if (value == 0) {
-                return;
-            }
-            lastAdd = new byte[BLOCK_SIZE];
-        }
-        lastAdd[index & BLOCK_MASK] = (byte) value;
-        saveAdd = true;
+        byte[] block = addCache.write(add, index >> BLOCK_SHIFT, true);
+        block[index & BLOCK_MASK] = (byte) value;
     }
 
     @Override
@@ -448,8 +345,8 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
     }
 
     public int size() {
-        saveIds();
-        saveDatas();
+        idsCache.flush(ids);
+        datasCache.flush(datas);
         int total = 0;
         for (byte[] array : ids) {
             if (array != null) {
@@ -514,4 +411,123 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
     public boolean remove(ClipboardEntity clipboardEntity) {
         return entities.remove(clipboardEntity);
     }
+
+    /**
+     * A small LRU of decompressed blocks<br>
+     * - Non linear access (e.g. rotated pastes or patterns) no longer decompresses a block on every call<br>
+     * - Modified blocks are only compressed again when evicted or flushed
+     */
+    private final class BlockCache {
+        private final int[] keys = new int[CACHE_SIZE];
+        private final byte[][] values = new byte[CACHE_SIZE][];
+        private final boolean[] dirty = new boolean[CACHE_SIZE];
+        private final long[] used = new long[CACHE_SIZE];
+        private long tick;
+        private int last = -1;
+
+        public BlockCache() {
+            Arrays.fill(keys, -1);
+        }
+
+        /**
+         * Get a decompressed block for reading
+         *
+         * @param blocks the compressed blocks
+         * @param i the block index
+         * @return the block, or null if it is empty
+         */
+        public byte[] read(byte[][] blocks, int i) {
+            int slot = last;
+            if (slot == -1 || keys[slot] != i) {
+                slot = load(blocks, i, false);
+                if (slot == -1) {
+                    return null;
+                }
+            }
+            return values[slot];
+        }
+
+        /**
+         * Get a decompressed block for writing (marks it as modified)
+         *
+         * @param blocks the compressed blocks
+         * @param i the block index
+         * @param create if an empty block should be created
+         * @return the block, or null if it is empty and create is false
+         */
+        public byte[] write(byte[][] blocks, int i, boolean create) {
+            int slot = last;
+            if (slot == -1 || keys[slot] != i) {
+                slot = load(blocks, i, create);
+                if (slot == -1) {
+                    return null;
+                }
+            }
+            dirty[slot] = true;
+            return values[slot];
+        }
+
+        private int load(byte[][] blocks, int i, boolean create) {
+            int slot = -1;
+            int free = -1;
+            for (int j = 0; j < CACHE_SIZE; j++) {
+                int key = keys[j];
+                if (key == i) {
+                    slot = j;
+                    break;
+                }
+                if (free == -1 || (keys[free] != -1 && (key == -1 || used[j] < used[free]))) {
+                    free = j;
+                }
+            }
+            if (slot == -1) {
+                byte[] compressed = blocks == null ? null : blocks[i];
+                if (compressed == null && !create) {
+                    return -1;
+                }
+                slot = free;
+                save(blocks, slot);
+                // With compression level 0 the decompressed block is the stored array, so it can't be reused
+                byte[] reuse = compressionLevel == 0 ? null : values[slot];
+                if (compressed != null) {
+                    values[slot] = MainUtil.decompress(compressed, reuse, BLOCK_SIZE, compressionLevel);
+                } else if (reuse != null) {
+                    Arrays.fill(reuse, (byte) 0);
+                } else {
+                    values[slot] = new byte[BLOCK_SIZE];
+                }
+                keys[slot] = i;
+            }
+            used[slot] = ++tick;
+            last = slot;
+            return slot;
+        }
+
+        private void save(byte[][] blocks, int slot) {
+            if (dirty[slot]) {
+                blocks[keys[slot]] = MainUtil.compress(values[slot], buffer, compressionLevel);
+                dirty[slot] = false;
+            }
+        }
+
+        /**
+         * Compress all modified blocks, keeping them cached
+         *
+         * @param blocks the compressed blocks
+         */
+        public void flush(byte[][] blocks) {
+            for (int j = 0; j < CACHE_SIZE; j++) {
+                save(blocks, j);
+            }
+        }
+
+        /**
+         * Discard all cached blocks (without saving)
+         */
+        public void clear() {
+            Arrays.fill(keys, -1);
+            Arrays.fill(dirty, false);
+            last = -1;
+        }
+    }
 }
@@ -0,0 +1,323 @@
+package com.boydti.fawe.object.clipboard;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.jnbt.NBTStreamer;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.MemUtil;
+import com.boydti.fawe.util.SetQueue;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.MutableBlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Pastes a transformed clipboard one chunk column at a time<br>
+ * - The clipboard is decoded once into a flat snapshot, so it can be read concurrently<br>
+ * - Each destination chunk column is inverse transformed (source lookup + block rotation) on the ForkJoin pool<br>
+ * - Positions are rounded the same way as the sequential paste, so the result is identical to it<br>
+ * - Finished columns are applied in order on the calling thread, so history, masks and limits of the destination still apply
+ */
+public class ParallelTransformPaste implements Operation {
+
+    private final BlockTransformExtent source;
+    private final BlockArrayClipboard clipboard;
+    private final Region region;
+    private final Vector from;
+    private final Extent destination;
+    private final Vector to;
+    private final AffineTransform transform;
+    private final double[] inverse;
+    private final boolean pasteAir;
+    private final boolean copyBiomes;
+
+    private char[] combined;
+    private byte[] biomes;
+    private HashMap<Integer, CompoundTag> tiles;
+
+    /**
+     * @param source      the transformed clipboard (see {@link #canPaste(Extent, Region, AffineTransform)})
+     * @param region      the region to copy
+     * @param from        the source position
+     * @param destination the destination extent
+     * @param to          the destination position
+     * @param transform   the position transform
+     * @param pasteAir    if air should be pasted
+     * @param copyBiomes  if biomes should be pasted
+     */
+    public ParallelTransformPaste(BlockTransformExtent source, Region region, Vector from, Extent destination, Vector to, AffineTransform transform, boolean pasteAir, boolean copyBiomes) {
+        this.source = source;
+        this.clipboard = (BlockArrayClipboard) source.getExtent();
+        this.region = region;
+        this.from = from;
+        this.destination = destination;
+        this.to = to;
+        this.transform = transform;
+        this.inverse = transform.inverse().coefficients();
+        this.pasteAir = pasteAir;
+        this.copyBiomes = copyBiomes;
+    }
+
+    /**
+     * Check if a copy can be done by this operation
+     *
+     * @param source    the source of the copy
+     * @param region    the region to copy
+     * @param transform the position transform
+     * @return
+     */
+    public static boolean canPaste(Extent source, Region region, AffineTransform transform) {
+        if (!(source instanceof BlockTransformExtent) || !(region instanceof CuboidRegion)) {
+            return false;
+        }
+        // On axis transforms are pasted forwards, which only matches the inverse lookup when no block moves by a fraction
+        if (!transform.isOffAxis()) {
+            double[] c = transform.coefficients();
+            if (c[3] != Math.rint(c[3]) || c[7] != Math.rint(c[7]) || c[11] != Math.rint(c[11])) {
+                return false;
+            }
+        }
+        Extent extent = ((BlockTransformExtent) source).getExtent();
+        if (!(extent instanceof BlockArrayClipboard)) {
+            return false;
+        }
+        BlockArrayClipboard clipboard = (BlockArrayClipboard) extent;
+        if (!clipboard.getMinimumPoint().equals(region.getMinimumPoint()) || !clipboard.getMaximumPoint().equals(region.getMaximumPoint())) {
+            return false;
+        }
+        // The snapshot needs 2 bytes per block
+        return !MemUtil.isMemoryLimited() && ((long) region.getArea() << 1) < MemUtil.getFreeBytes();
+    }
+
+    private void snapshot() {
+        FaweClipboard imp = clipboard.IMP;
+        Vector dimensions = imp.getDimensions();
+        final int width = dimensions.getBlockX();
+        final int area = width * dimensions.getBlockZ();
+        final char[] combined = new char[area * dimensions.getBlockY()];
+        final HashMap<Integer, CompoundTag> tiles = new HashMap<>();
+        imp.forEach(new FaweClipboard.BlockReader() {
+            @Override
+            public void run(int x, int y, int z, BaseBlock block) {
+                int index = x + z * width + y * area;
+                combined[index] = (char) FaweCache.getCombined(block);
+                CompoundTag nbt = block.getNbtData();
+                if (nbt != null) {
+                    tiles.put(index, nbt);
+                }
+            }
+        }, false);
+        if (copyBiomes && imp.hasBiomes()) {
+            final byte[] biomes = new byte[area];
+            imp.streamBiomes(new NBTStreamer.ByteReader() {
+                @Override
+                public void run(int index, int value) {
+                    biomes[index] = (byte) value;
+                }
+            });
+            this.biomes = biomes;
+        }
+        this.combined = combined;
+        this.tiles = tiles;
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        snapshot();
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        double[] c = transform.coefficients();
+        // Destination bounds, before translation (the same as BackwardsExtentBlockCopy)
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (int x : new int[] { min.getBlockX(), max.getBlockX() }) {
+            for (int y : new int[] { min.getBlockY(), max.getBlockY() }) {
+                for (int z : new int[] { min.getBlockZ(), max.getBlockZ() }) {
+                    double rx = x - from.getBlockX(), ry = y - from.getBlockY(), rz = z - from.getBlockZ();
+                    int px = MathMan.roundInt(rx * c[0] + ry * c[1] + rz * c[2] + c[3]) + from.getBlockX();
+                    int py = MathMan.roundInt(rx * c[4] + ry * c[5] + rz * c[6] + c[7]) + from.getBlockY();
+                    int pz = MathMan.roundInt(rx * c[8] + ry * c[9] + rz * c[10] + c[11]) + from.getBlockZ();
+                    minX = Math.min(minX, px);
+                    minY = Math.min(minY, py);
+                    minZ = Math.min(minZ, pz);
+                    maxX = Math.max(maxX, px);
+                    maxY = Math.max(maxY, py);
+                    maxZ = Math.max(maxZ, pz);
+                }
+            }
+        }
+        int tx = to.getBlockX() - from.getBlockX();
+        int ty = to.getBlockY() - from.getBlockY();
+        int tz = to.getBlockZ() - from.getBlockZ();
+
+        ForkJoinPool pool = SetQueue.IMP.getForkJoinPool();
+        int maxPending = pool.getParallelism() << 2;
+        ArrayDeque<Future<Column>> pending = new ArrayDeque<>();
+        try {
+            // Columns are aligned to destination chunks
+            for (int cx = (minX + tx) >> 4; cx <= (maxX + tx) >> 4; cx++) {
+                for (int cz = (minZ + tz) >> 4; cz <= (maxZ + tz) >> 4; cz++) {
+                    final int x1 = Math.max(minX, (cx << 4) - tx);
+                    final int x2 = Math.min(maxX, (cx << 4) + 15 - tx);
+                    final int z1 = Math.max(minZ, (cz << 4) - tz);
+                    final int z2 = Math.min(maxZ, (cz << 4) + 15 - tz);
+                    final int y1 = minY;
+                    final int y2 = maxY;
+                    pending.add(pool.submit(new Callable<Column>() {
+                        @Override
+                        public Column call() throws Exception {
+                            return fill(x1, y1, z1, x2, y2, z2);
+                        }
+                    }));
+                    if (pending.size() >= maxPending) {
+                        apply(pending.poll().get(), tx, ty, tz);
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                apply(pending.poll().get(), tx, ty, tz);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<Column> future : pending) {
+                future.cancel(false);
+            }
+            combined = null;
+            biomes = null;
+            tiles = null;
+        }
+        return null;
+    }
+
+    private Column fill(int x1, int y1, int z1, int x2, int y2, int z2) {
+        double[] c = inverse;
+        Vector min = clipboard.getMinimumPoint();
+        Vector dimensions = clipboard.IMP.getDimensions();
+        int width = dimensions.getBlockX();
+        int height = dimensions.getBlockY();
+        int length = dimensions.getBlockZ();
+        int area = width * length;
+        int ox = from.getBlockX(), oy = from.getBlockY(), oz = from.getBlockZ();
+        int mx = min.getBlockX(), my = min.getBlockY(), mz = min.getBlockZ();
+
+        Column column = new Column(x1, y1, z1, x2, y2, z2);
+        BaseBlock[] blocks = column.blocks;
+        for (int z = z1; z <= z2; z++) {
+            double rz = z - oz;
+            for (int x = x1; x <= x2; x++) {
+                double rx = x - ox;
+                int columnIndex = (x - x1) + (z - z1) * column.width;
+                for (int y = y1; y <= y2; y++) {
+                    double ry = y - oy;
+                    double vx = rx * c[0] + ry * c[1] + rz * c[2] + c[3];
+                    double vy = rx * c[4] + ry * c[5] + rz * c[6] + c[7];
+                    double vz = rx * c[8] + ry * c[9] + rz * c[10] + c[11];
+                    // The region check and the block read round the same way as BackwardsExtentBlockCopy and PositionTransformExtent
+                    int cx = MathMan.roundInt(vx) + ox - mx;
+                    int cy = MathMan.roundInt(vy) + oy - my;
+                    int cz = MathMan.roundInt(vz) + oz - mz;
+                    if (cx < 0 || cy < 0 || cz < 0 || cx >= width || cy >= height || cz >= length) {
+                        continue;
+                    }
+                    int sx = MathMan.roundInt(vx + ox) - mx;
+                    int sy = MathMan.roundInt(vy + oy) - my;
+                    int sz = MathMan.roundInt(vz + oz) - mz;
+                    boolean inside = sx >= 0 && sy >= 0 && sz >= 0 && sx < width && sy < height && sz < length;
+                    int index = sx + sz * width + sy * area;
+                    if (biomes != null && inside && column.biomes[columnIndex] == -1) {
+                        column.biomes[columnIndex] = biomes[sx + sz * width] & 0xFF;
+                    }
+                    int combinedId = inside ? combined[index] : 0;
+                    if (combinedId == 0 && !pasteAir) {
+                        continue;
+                    }
+                    BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
+                    CompoundTag nbt = !inside || tiles.isEmpty() ? null : tiles.get(index);
+                    if (nbt != null) {
+                        block = new BaseBlock(block.getId(), block.getData(), nbt);
+                    }
+                    blocks[columnIndex + (y - y1) * column.area] = source.transformFast(block);
+                }
+            }
+        }
+        return column;
+    }
+
+    private void apply(Column column, int tx, int ty, int tz) throws WorldEditException {
+        BaseBlock[] blocks = column.blocks;
+        int index = 0;
+        for (int y = column.y1; y <= column.y2; y++) {
+            for (int z = column.z1; z <= column.z2; z++) {
+                for (int x = column.x1; x <= column.x2; x++, index++) {
+                    BaseBlock block = blocks[index];
+                    if (block != null) {
+                        destination.setBlock(x + tx, y + ty, z + tz, block);
+                    }
+                }
+            }
+        }
+        if (biomes != null) {
+            MutableBlockVector2D mutable = new MutableBlockVector2D();
+            index = 0;
+            for (int z = column.z1; z <= column.z2; z++) {
+                for (int x = column.x1; x <= column.x2; x++, index++) {
+                    int biome = column.biomes[index];
+                    if (biome != -1) {
+                        destination.setBiome(mutable.setComponents(x + tx, z + tz), FaweCache.CACHE_BIOME[biome]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The transformed blocks of one destination chunk column
+     */
+    private static final class Column {
+        private final int x1, y1, z1, x2, y2, z2;
+        private final int width, area;
+        private final BaseBlock[] blocks;
+        private final int[] biomes;
+
+        private Column(int x1, int y1, int z1, int x2, int y2, int z2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.z1 = z1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.z2 = z2;
+            this.width = x2 - x1 + 1;
+            this.area = width * (z2 - z1 + 1);
+            this.blocks = new BaseBlock[area * (y2 - y1 + 1)];
+            this.biomes = new int[area];
+            Arrays.fill(biomes, -1);
+        }
+    }
+
+    @Override
+    public void cancel() {
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+    }
+}
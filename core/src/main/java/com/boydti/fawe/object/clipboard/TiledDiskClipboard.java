@@ -0,0 +1,654 @@
+package com.boydti.fawe.object.clipboard;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.jnbt.NBTStreamer;
+import com.boydti.fawe.object.IntegerTrio;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.ReflectionUtils;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A disk backed clipboard stored as 16x16x16 tiles (lower memory + loads on crash)<br>
+ * - Each tile has its own palette with 1, 2, 4 or 8 bit indexes, or raw 16 bit ids past 256 distinct blocks<br>
+ * - Tiles which are never set take no space, and are skipped by forEach(task, false)<br>
+ * - The header, biomes, tile index and tiles are in one file mapped into memory<br>
+ * - Growing the file maps it again without unmapping the old buffer (it is freed by the GC), so a reader holding it never touches freed memory<br>
+ * - Slots left behind when a tile grows are reused by the next tile of that size<br>
+ * <br>
+ * [header] { short magic, byte version, byte flags, char width, char height, char length, short ox, short oy, short oz, int end }<br>
+ * [biomes] { byte[width * length] }<br>
+ * [index] { int tile offset (0 = empty), byte bits, byte unused, short palette size }[tiles]<br>
+ * [tiles] { char[1 << bits] palette, packed indexes } or { char[4096] ids }
+ */
+public class TiledDiskClipboard extends FaweClipboard implements Closeable {
+
+    public static final short MAGIC = 0x5443;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    private static final int FLAG_BIOMES = 1;
+    private static final int MIN_GROWTH = 1 << 20;
+    private static final byte[] ZEROS = new byte[8192];
+
+    private int width;
+    private int height;
+    private int length;
+    private int area;
+    private int tilesX;
+    private int tilesZ;
+    private int tilesArea;
+    private int tileCount;
+    private int indexOffset;
+
+    private final HashMap<IntegerTrio, CompoundTag> nbtMap;
+    private final HashSet<ClipboardEntity> entities;
+    private final File file;
+
+    private RandomAccessFile braf;
+    private FileChannel fc;
+    private volatile MappedByteBuffer mbb;
+    // Slots freed by grown tiles, by bits (1, 2, 4 or 8)
+    private final IntArrayList[] freeSlots = new IntArrayList[9];
+
+    // In memory copies of the tile palettes (for reverse lookups)
+    private char[][] palettes;
+    private int lastTile = -1;
+    private char lastValue;
+    private int lastPaletteIndex;
+
+    public TiledDiskClipboard(int width, int height, int length) {
+        this(width, height, length, UUID.randomUUID());
+    }
+
+    public TiledDiskClipboard(int width, int height, int length, UUID uuid) {
+        this(width, height, length, MainUtil.getFile(Fawe.imp() != null ? Fawe.imp().getDirectory() : new File("."), Settings.IMP.PATHS.CLIPBOARD + File.separator + uuid + ".bd"));
+    }
+
+    public TiledDiskClipboard(int width, int height, int length, File file) {
+        this.nbtMap = new HashMap<>();
+        this.entities = new HashSet<>();
+        this.file = file;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            this.braf = new RandomAccessFile(file, "rw");
+            create(width, height, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public TiledDiskClipboard(File file) {
+        this.nbtMap = new HashMap<>();
+        this.entities = new HashSet<>();
+        this.file = file;
+        try {
+            this.braf = new RandomAccessFile(file, "rw");
+            map(braf.length());
+            if (mbb.getShort(0) != MAGIC || mbb.get(2) != VERSION) {
+                throw new IOException("Not a tiled clipboard: " + file);
+            }
+            setSize(mbb.getChar(4), mbb.getChar(6), mbb.getChar(8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Check if a clipboard file uses this format (rather than the DiskOptimizedClipboard layout)
+     *
+     * @param file
+     * @return
+     */
+    public static boolean isTiled(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= HEADER_SIZE && raf.readShort() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private void setSize(int width, int height, int length) {
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.area = width * length;
+        this.tilesX = (width + 15) >> 4;
+        this.tilesZ = (length + 15) >> 4;
+        this.tilesArea = tilesX * tilesZ;
+        this.tileCount = tilesArea * ((height + 15) >> 4);
+        this.indexOffset = HEADER_SIZE + area;
+        this.palettes = new char[tileCount][];
+        this.lastTile = -1;
+    }
+
+    private void create(int width, int height, int length) throws IOException {
+        setSize(width, height, length);
+        int dataStart = (indexOffset + (tileCount << 3) + 7) & ~7;
+        if (mbb == null) {
+            braf.setLength(0);
+        }
+        // A mapped file isn't truncated, the header and index are cleared instead (tiles are cleared as they are allocated)
+        map(dataStart + MIN_GROWTH);
+        for (int i = 0; i < dataStart; i += ZEROS.length) {
+            clear(i, Math.min(ZEROS.length, dataStart - i));
+        }
+        for (int i = 0; i < freeSlots.length; i++) {
+            freeSlots[i] = null;
+        }
+        mbb.putShort(0, MAGIC);
+        mbb.put(2, (byte) VERSION);
+        mbb.putChar(4, (char) width);
+        mbb.putChar(6, (char) height);
+        mbb.putChar(8, (char) length);
+        mbb.putInt(16, dataStart);
+    }
+
+    /**
+     * Map at least size bytes of the file<br>
+     * - The previous buffer is left to the GC, as other threads may still be reading from it
+     */
+    private void map(long size) throws IOException {
+        if (braf.length() < size) {
+            braf.setLength(size);
+        }
+        if (mbb == null || mbb.capacity() < braf.length()) {
+            fc = braf.getChannel();
+            mbb = fc.map(FileChannel.MapMode.READ_WRITE, 0, braf.length());
+        }
+    }
+
+    private void unmap() {
+        MappedByteBuffer tmp = mbb;
+        if (tmp != null) {
+            mbb = null;
+            tmp.force();
+            MainUtil.closeDirectBuffer(tmp);
+        }
+    }
+
+    private void clear(int offset, int size) {
+        ByteBuffer buffer = mbb.duplicate();
+        buffer.position(offset);
+        buffer.put(ZEROS, 0, size);
+    }
+
+    private int allocate(int bits) {
+        int size = getTileSize(bits);
+        IntArrayList free = bits < freeSlots.length ? freeSlots[bits] : null;
+        int offset;
+        if (free != null && !free.isEmpty()) {
+            offset = free.removeInt(free.size() - 1);
+        } else {
+            offset = mbb.getInt(16);
+            int end = offset + size;
+            if (end > mbb.capacity()) {
+                try {
+                    map(Math.max(end, (long) mbb.capacity() + Math.max(MIN_GROWTH, mbb.capacity() >> 1)));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            mbb.putInt(16, end);
+        }
+        clear(offset, size);
+        return offset;
+    }
+
+    private void free(int slot, int bits) {
+        IntArrayList free = freeSlots[bits];
+        if (free == null) {
+            free = freeSlots[bits] = new IntArrayList();
+        }
+        free.add(slot);
+    }
+
+    private static int getTileSize(int bits) {
+        return bits == 16 ? 8192 : (2 << bits) + (bits << 9);
+    }
+
+    private int getTile(int x, int y, int z) {
+        return (x >> 4) + (z >> 4) * tilesX + (y >> 4) * tilesArea;
+    }
+
+    private static int getTileIndex(int x, int y, int z) {
+        return ((y & 15) << 8) + ((z & 15) << 4) + (x & 15);
+    }
+
+    private char[] getPalette(int tile, int entry, int slot) {
+        char[] palette = palettes[tile];
+        if (palette == null) {
+            int bits = mbb.get(entry + 4);
+            palette = palettes[tile] = new char[1 << bits];
+            int size = mbb.getShort(entry + 6);
+            for (int i = 0; i < size; i++) {
+                palette[i] = mbb.getChar(slot + (i << 1));
+            }
+        }
+        return palette;
+    }
+
+    private static int getPacked(MappedByteBuffer mbb, int dataPos, int bits, int i) {
+        int bitIndex = i * bits;
+        return ((mbb.get(dataPos + (bitIndex >> 3)) & 0xFF) >> (bitIndex & 7)) & ((1 << bits) - 1);
+    }
+
+    private static void setPacked(MappedByteBuffer mbb, int dataPos, int bits, int i, int value) {
+        int bitIndex = i * bits;
+        int pos = dataPos + (bitIndex >> 3);
+        int shift = bitIndex & 7;
+        int mask = ((1 << bits) - 1) << shift;
+        mbb.put(pos, (byte) ((mbb.get(pos) & ~mask) | (value << shift)));
+    }
+
+    private int getCombined(int x, int y, int z) {
+        int entry = indexOffset + (getTile(x, y, z) << 3);
+        int slot = mbb.getInt(entry);
+        if (slot == 0) {
+            return 0;
+        }
+        int bits = mbb.get(entry + 4);
+        int i = getTileIndex(x, y, z);
+        if (bits == 16) {
+            return mbb.getChar(slot + (i << 1));
+        }
+        return mbb.getChar(slot + (getPacked(mbb, slot + (2 << bits), bits, i) << 1));
+    }
+
+    private void setCombined(int x, int y, int z, char combined) {
+        int tile = getTile(x, y, z);
+        int entry = indexOffset + (tile << 3);
+        int slot = mbb.getInt(entry);
+        if (slot == 0) {
+            if (combined == 0) {
+                return;
+            }
+            slot = allocate(1);
+            mbb.putInt(entry, slot);
+            mbb.put(entry + 4, (byte) 1);
+            mbb.putShort(entry + 6, (short) 1);
+            palettes[tile] = new char[2];
+        }
+        int i = getTileIndex(x, y, z);
+        int bits = mbb.get(entry + 4);
+        if (bits == 16) {
+            mbb.putChar(slot + (i << 1), combined);
+            return;
+        }
+        int paletteIndex;
+        if (tile == lastTile && combined == lastValue) {
+            paletteIndex = lastPaletteIndex;
+        } else {
+            char[] palette = getPalette(tile, entry, slot);
+            int size = mbb.getShort(entry + 6);
+            paletteIndex = -1;
+            for (int p = 0; p < size; p++) {
+                if (palette[p] == combined) {
+                    paletteIndex = p;
+                    break;
+                }
+            }
+            if (paletteIndex == -1) {
+                if (size == palette.length) {
+                    slot = grow(tile, entry, slot, bits);
+                    bits = mbb.get(entry + 4);
+                    if (bits == 16) {
+                        lastTile = -1;
+                        mbb.putChar(slot + (i << 1), combined);
+                        return;
+                    }
+                    palette = palettes[tile];
+                }
+                paletteIndex = size;
+                palette[size] = combined;
+                mbb.putChar(slot + (size << 1), combined);
+                mbb.putShort(entry + 6, (short) (size + 1));
+            }
+            lastTile = tile;
+            lastValue = combined;
+            lastPaletteIndex = paletteIndex;
+        }
+        setPacked(mbb, slot + (2 << bits), bits, i, paletteIndex);
+    }
+
+    /**
+     * Move a tile to a new slot with twice the bits per entry (or raw ids after 8)
+     */
+    private int grow(int tile, int entry, int slot, int bits) {
+        int newBits = bits == 8 ? 16 : bits << 1;
+        int newSlot = allocate(newBits);
+        char[] palette = palettes[tile];
+        int dataPos = slot + (2 << bits);
+        if (newBits == 16) {
+            for (int i = 0; i < 4096; i++) {
+                mbb.putChar(newSlot + (i << 1), palette[getPacked(mbb, dataPos, bits, i)]);
+            }
+            palettes[tile] = null;
+        } else {
+            int newDataPos = newSlot + (2 << newBits);
+            for (int p = 0; p < palette.length; p++) {
+                mbb.putChar(newSlot + (p << 1), palette[p]);
+            }
+            for (int i = 0; i < 4096; i++) {
+                int value = getPacked(mbb, dataPos, bits, i);
+                if (value != 0) {
+                    setPacked(mbb, newDataPos, newBits, i, value);
+                }
+            }
+            char[] newPalette = new char[1 << newBits];
+            System.arraycopy(palette, 0, newPalette, 0, palette.length);
+            palettes[tile] = newPalette;
+        }
+        mbb.putInt(entry, newSlot);
+        mbb.put(entry + 4, (byte) newBits);
+        free(slot, bits);
+        return newSlot;
+    }
+
+    private BaseBlock toBlock(int x, int y, int z, int combined) {
+        BaseBlock block = FaweCache.CACHE_BLOCK[combined];
+        if (block.canStoreNBTData() && !nbtMap.isEmpty()) {
+            CompoundTag nbt = nbtMap.get(new IntegerTrio(x, y, z));
+            if (nbt != null) {
+                block = new BaseBlock(block.getId(), block.getData());
+                block.setNbtData(nbt);
+            }
+        }
+        return block;
+    }
+
+    public BlockArrayClipboard toClipboard() {
+        try {
+            CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(width - 1, height - 1, length - 1));
+            BlockArrayClipboard clipboard = new BlockArrayClipboard(region, this);
+            clipboard.setOrigin(new Vector(mbb.getShort(10), mbb.getShort(12), mbb.getShort(14)));
+            return clipboard;
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        }
+        return null;
+    }
+
+    @Override
+    public void setOrigin(Vector offset) {
+        mbb.putShort(10, (short) offset.getBlockX());
+        mbb.putShort(12, (short) offset.getBlockY());
+        mbb.putShort(14, (short) offset.getBlockZ());
+    }
+
+    /**
+     * Tiles depend on the dimensions, so changing them clears the clipboard
+     *
+     * @param dimensions
+     */
+    @Override
+    public void setDimensions(Vector dimensions) {
+        if (dimensions.getBlockX() == width && dimensions.getBlockY() == height && dimensions.getBlockZ() == length) {
+            return;
+        }
+        try {
+            nbtMap.clear();
+            create(dimensions.getBlockX(), dimensions.getBlockY(), dimensions.getBlockZ());
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    @Override
+    public Vector getDimensions() {
+        return new Vector(width, height, length);
+    }
+
+    @Override
+    public boolean hasBiomes() {
+        return (mbb.get(3) & FLAG_BIOMES) != 0;
+    }
+
+    @Override
+    public boolean setBiome(int x, int z, int biome) {
+        setBiome(x + z * width, biome);
+        return true;
+    }
+
+    @Override
+    public void setBiome(int index, int biome) {
+        mbb.put(3, (byte) (mbb.get(3) | FLAG_BIOMES));
+        mbb.put(HEADER_SIZE + index, (byte) biome);
+    }
+
+    @Override
+    public BaseBiome getBiome(int index) {
+        if (!hasBiomes()) {
+            return EditSession.nullBiome;
+        }
+        return FaweCache.CACHE_BIOME[mbb.get(HEADER_SIZE + index) & 0xFF];
+    }
+
+    @Override
+    public BaseBiome getBiome(int x, int z) {
+        return getBiome(x + z * width);
+    }
+
+    @Override
+    public void streamBiomes(NBTStreamer.ByteReader task) {
+        if (!hasBiomes()) return;
+        for (int index = 0; index < area; index++) {
+            task.run(index, mbb.get(HEADER_SIZE + index) & 0xFF);
+        }
+    }
+
+    @Override
+    public void streamIds(NBTStreamer.ByteReader task) {
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < length; z++) {
+                for (int x = 0; x < width; x++) {
+                    task.run(index++, FaweCache.getId(getCombined(x, y, z)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void streamDatas(NBTStreamer.ByteReader task) {
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < length; z++) {
+                for (int x = 0; x < width; x++) {
+                    task.run(index++, FaweCache.getData(getCombined(x, y, z)));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<CompoundTag> getTileEntities() {
+        return new ArrayList<>(nbtMap.values());
+    }
+
+    /**
+     * With air, blocks are visited in index order (y, z, x)<br>
+     * Without air, blocks are visited tile by tile, and tiles which are empty or only air are skipped
+     */
+    @Override
+    public void forEach(BlockReader task, boolean air) {
+        if (air) {
+            for (int y = 0; y < height; y++) {
+                for (int z = 0; z < length; z++) {
+                    for (int x = 0; x < width; x++) {
+                        task.run(x, y, z, toBlock(x, y, z, getCombined(x, y, z)));
+                    }
+                }
+            }
+            return;
+        }
+        for (int tile = 0; tile < tileCount; tile++) {
+            int entry = indexOffset + (tile << 3);
+            int slot = mbb.getInt(entry);
+            int bits = mbb.get(entry + 4);
+            if (slot == 0 || (bits != 16 && mbb.getShort(entry + 6) == 1)) {
+                continue;
+            }
+            int ty = tile / tilesArea;
+            int tz = (tile - ty * tilesArea) / tilesX;
+            int tx = tile - ty * tilesArea - tz * tilesX;
+            int bx = tx << 4, by = ty << 4, bz = tz << 4;
+            int maxX = Math.min(16, width - bx), maxY = Math.min(16, height - by), maxZ = Math.min(16, length - bz);
+            int dataPos = slot + (2 << bits);
+            for (int y = 0; y < maxY; y++) {
+                for (int z = 0; z < maxZ; z++) {
+                    for (int x = 0; x < maxX; x++) {
+                        int i = (y << 8) + (z << 4) + x;
+                        int combined = bits == 16 ? mbb.getChar(slot + (i << 1)) : mbb.getChar(slot + (getPacked(mbb, dataPos, bits, i) << 1));
+                        if (combined != 0) {
+                            task.run(bx + x, by + y, bz + z, toBlock(bx + x, by + y, bz + z, combined));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public BaseBlock getBlock(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= length) {
+            return EditSession.nullBlock;
+        }
+        return toBlock(x, y, z, getCombined(x, y, z));
+    }
+
+    @Override
+    public BaseBlock getBlock(int index) {
+        int y = index / area;
+        int i = index - y * area;
+        int z = i / width;
+        return getBlock(i - z * width, y, z);
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, BaseBlock block) {
+        setCombined(x, y, z, (char) ((block.getId() << 4) + block.getData()));
+        CompoundTag tile = block.getNbtData();
+        if (tile != null) {
+            setTile(x, y, z, tile);
+        }
+        return true;
+    }
+
+    private void setCombined(int index, int combined) {
+        int y = index / area;
+        int i = index - y * area;
+        int z = i / width;
+        setCombined(i - z * width, y, z, (char) combined);
+    }
+
+    private int getCombined(int index) {
+        int y = index / area;
+        int i = index - y * area;
+        int z = i / width;
+        return getCombined(i - z * width, y, z);
+    }
+
+    @Override
+    public void setId(int index, int id) {
+        setCombined(index, (getCombined(index) & 0xF00F) + (id << 4));
+    }
+
+    @Override
+    public void setData(int index, int data) {
+        setCombined(index, (getCombined(index) & 0xFFF0) + data);
+    }
+
+    @Override
+    public void setAdd(int index, int add) {
+        setCombined(index, (getCombined(index) & 0x0FFF) + (add << 12));
+    }
+
+    @Override
+    public boolean setTile(int x, int y, int z, CompoundTag tag) {
+        nbtMap.put(new IntegerTrio(x, y, z), tag);
+        Map<String, Tag> values = ReflectionUtils.getMap(tag.getValue());
+        values.put("x", new IntTag(x));
+        values.put("y", new IntTag(y));
+        values.put("z", new IntTag(z));
+        return true;
+    }
+
+    @Override
+    public Entity createEntity(Extent world, double x, double y, double z, float yaw, float pitch, BaseEntity entity) {
+        FaweClipboard.ClipboardEntity ret = new ClipboardEntity(world, x, y, z, yaw, pitch, entity);
+        entities.add(ret);
+        return ret;
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return new ArrayList<>(entities);
+    }
+
+    @Override
+    public boolean remove(ClipboardEntity clipboardEntity) {
+        return entities.remove(clipboardEntity);
+    }
+
+    @Override
+    public void flush() {
+        if (mbb != null) {
+            mbb.force();
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        close();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (mbb != null) {
+                unmap();
+                fc.close();
+                braf.close();
+                file.setWritable(true);
+                fc = null;
+                braf = null;
+            }
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.boydti.fawe.object.collection;
+
+import com.boydti.fawe.util.MathMan;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * A set of block positions stored as one 16x256x16 bitset per chunk<br>
+ * - 8KB per touched chunk, no object per position<br>
+ * - y must be within 0-255
+ */
+public class BlockBitSet {
+
+    private static final int WORDS = (16 * 256 * 16) >> 6;
+
+    private final Long2ObjectOpenHashMap<long[]> chunks = new Long2ObjectOpenHashMap<>();
+
+    private int lastX = Integer.MIN_VALUE;
+    private int lastZ = Integer.MIN_VALUE;
+    private long[] lastBits;
+
+    private long[] getBits(int cx, int cz, boolean create) {
+        if (cx == lastX && cz == lastZ) {
+            return lastBits;
+        }
+        long pair = MathMan.pairInt(cx, cz);
+        long[] bits = chunks.get(pair);
+        if (bits == null) {
+            if (!create) {
+                return null;
+            }
+            bits = new long[WORDS];
+            chunks.put(pair, bits);
+        }
+        lastX = cx;
+        lastZ = cz;
+        return lastBits = bits;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Add a position
+     *
+     * @return true if the position was not already in the set
+     */
+    public boolean add(int x, int y, int z) {
+        long[] bits = getBits(x >> 4, z >> 4, true);
+        int index = getIndex(x, y, z);
+        int word = index >> 6;
+        long bit = 1L << index;
+        long value = bits[word];
+        if ((value & bit) != 0) {
+            return false;
+        }
+        bits[word] = value | bit;
+        return true;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        long[] bits = getBits(x >> 4, z >> 4, false);
+        if (bits == null) {
+            return false;
+        }
+        int index = getIndex(x, y, z);
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Same as {@link #contains(int, int, int)}, but without the last chunk cache<br>
+     * - Safe for concurrent readers, as long as the set is not modified
+     */
+    public boolean containsConcurrent(int x, int y, int z) {
+        long[] bits = chunks.get(MathMan.pairInt(x >> 4, z >> 4));
+        if (bits == null) {
+            return false;
+        }
+        int index = getIndex(x, y, z);
+        return (bits[index >> 6] & (1L << index)) != 0;
+    }
+
+    public void remove(int x, int y, int z) {
+        long[] bits = getBits(x >> 4, z >> 4, false);
+        if (bits != null) {
+            int index = getIndex(x, y, z);
+            bits[index >> 6] &= ~(1L << index);
+        }
+    }
+
+    public boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    /**
+     * Add every position in this set to another set
+     *
+     * @param set
+     */
+    public void addTo(BlockVectorSet set) {
+        for (Long2ObjectMap.Entry<long[]> entry : chunks.long2ObjectEntrySet()) {
+            long pair = entry.getLongKey();
+            int bx = MathMan.unpairIntX(pair) << 4;
+            int bz = MathMan.unpairIntY(pair) << 4;
+            long[] bits = entry.getValue();
+            for (int word = 0; word < bits.length; word++) {
+                long value = bits[word];
+                while (value != 0) {
+                    int index = (word << 6) + Long.numberOfTrailingZeros(value);
+                    set.add(bx + (index & 15), index >> 8, bz + ((index >> 4) & 15));
+                    value &= value - 1;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        chunks.clear();
+        lastX = Integer.MIN_VALUE;
+        lastZ = Integer.MIN_VALUE;
+        lastBits = null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.boydti.fawe.object.collection;
+
+import com.boydti.fawe.util.MathMan;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import java.util.ArrayDeque;
+
+/**
+ * A queue of block positions bucketed by chunk<br>
+ * - Positions are packed with {@link MathMan#tripleWorldCoord(int, int, int)} into one {@link LongRingBuffer} per chunk<br>
+ * - Buckets are visited in insertion order, so consumers work through one chunk at a time<br>
+ * - Emptied buffers are reused by the next {@link #add(int, int, int)}<br>
+ * - y must be within 0-255
+ */
+public class ChunkBucketQueue {
+
+    private final Long2ObjectLinkedOpenHashMap<LongRingBuffer> buckets = new Long2ObjectLinkedOpenHashMap<>();
+    private final ArrayDeque<LongRingBuffer> pool = new ArrayDeque<>();
+    private long lastChunk;
+    private LongRingBuffer lastBucket;
+    private int size;
+
+    public void add(int x, int y, int z) {
+        long chunk = MathMan.pairInt(x >> 4, z >> 4);
+        LongRingBuffer bucket = lastBucket;
+        if (bucket == null || chunk != lastChunk) {
+            bucket = buckets.get(chunk);
+            if (bucket == null) {
+                bucket = pool.isEmpty() ? new LongRingBuffer(64) : pool.poll();
+                buckets.put(chunk, bucket);
+            }
+            lastChunk = chunk;
+            lastBucket = bucket;
+        }
+        bucket.add(MathMan.tripleWorldCoord(x, y, z));
+        size++;
+    }
+
+    /**
+     * Get the chunks with queued positions
+     *
+     * @return the chunks, packed with {@link MathMan#pairInt(int, int)}
+     */
+    public long[] getChunks() {
+        return buckets.keySet().toLongArray();
+    }
+
+    /**
+     * Get the positions queued in a chunk
+     *
+     * @param chunk the chunk, packed with {@link MathMan#pairInt(int, int)}
+     * @return the bucket, or null
+     */
+    public LongRingBuffer getBucket(long chunk) {
+        return buckets.get(chunk);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (LongRingBuffer bucket : buckets.values()) {
+            bucket.clear();
+            pool.add(bucket);
+        }
+        buckets.clear();
+        lastBucket = null;
+        size = 0;
+    }
+}
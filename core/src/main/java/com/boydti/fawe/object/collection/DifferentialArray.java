@@ -192,6 +192,16 @@ public final class DifferentialArray<T> implements DifferentialCollection<T> {
         }
     }
 
+    /**
+     * Discard the recorded changes and free the change buffer
+     */
+    public void discardChanges() {
+        changed = false;
+        changes = null;
+        changesBytes = null;
+        changesChars = null;
+    }
+
     public byte[] getByteArray() {
         return dataBytes;
     }
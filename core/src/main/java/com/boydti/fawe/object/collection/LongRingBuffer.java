@@ -0,0 +1,88 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.Arrays;
+
+/**
+ * A growable FIFO queue of primitive longs backed by a circular array<br>
+ * - Used as a BFS frontier of packed coordinates without boxing a node per entry
+ */
+public class LongRingBuffer {
+
+    private long[] values;
+    private int head;
+    private int tail;
+    private int mask;
+
+    public LongRingBuffer() {
+        this(1024);
+    }
+
+    public LongRingBuffer(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public void add(long value) {
+        values[tail] = value;
+        tail = (tail + 1) & mask;
+        if (tail == head) {
+            grow();
+        }
+    }
+
+    /**
+     * Remove the head of the queue<br>
+     * - The queue must not be empty
+     *
+     * @return
+     */
+    public long poll() {
+        long value = values[head];
+        head = (head + 1) & mask;
+        return value;
+    }
+
+    /**
+     * Get a value without removing it
+     *
+     * @param index the position from the head, less than {@link #size()}
+     * @return
+     */
+    public long get(int index) {
+        return values[(head + index) & mask];
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int size() {
+        return (tail - head) & mask;
+    }
+
+    public void clear() {
+        head = tail = 0;
+    }
+
+    private void grow() {
+        int length = values.length;
+        long[] newValues = new long[length << 1];
+        int right = length - head;
+        System.arraycopy(values, head, newValues, 0, right);
+        System.arraycopy(values, 0, newValues, right, head);
+        values = newValues;
+        head = 0;
+        tail = length;
+        mask = newValues.length - 1;
+    }
+
+    @Override
+    public String toString() {
+        long[] tmp = new long[size()];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = values[(head + i) & mask];
+        }
+        return Arrays.toString(tmp);
+    }
+}
@@ -0,0 +1,203 @@
+package com.boydti.fawe.object.collection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A 16x16x16 section of combined ids stored as a palette + packed bit array<br>
+ * - Index 0 of the palette is always 0 (unset), so a new section reads as unchanged<br>
+ * - Entries use 1, 2, 4 or 8 bits so they never straddle a long<br>
+ * - Once more than 256 distinct values are written, {@link #set(int, char)} returns -1 and the caller should switch to a char[4096]
+ */
+public final class PaletteSection {
+
+    public static final int MAX_PALETTE_SIZE = 256;
+
+    private char[] palette;
+    private int paletteSize;
+    private long[] bits;
+    private int bitsPerEntry;
+    private int entriesPerLongShift;
+    private long entryMask;
+
+    private char lastValue;
+    private int lastIndex;
+
+    public PaletteSection() {
+        this.palette = new char[2];
+        this.paletteSize = 1;
+        resize(1);
+    }
+
+    private PaletteSection(char[] palette, int paletteSize, int bitsPerEntry, long[] bits) {
+        this.palette = palette;
+        this.paletteSize = paletteSize;
+        this.bitsPerEntry = bitsPerEntry;
+        this.entriesPerLongShift = 6 - Integer.numberOfTrailingZeros(bitsPerEntry);
+        this.entryMask = (1L << bitsPerEntry) - 1;
+        this.bits = bits;
+    }
+
+    /**
+     * Write this section as it is (see {@link #read(DataInput)})
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeShort(paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            out.writeChar(palette[i]);
+        }
+        out.writeByte(bitsPerEntry);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    public static PaletteSection read(DataInput in) throws IOException {
+        int paletteSize = in.readShort();
+        char[] palette = new char[Math.max(2, paletteSize)];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = in.readChar();
+        }
+        int bitsPerEntry = in.readByte();
+        long[] bits = new long[(4096 * bitsPerEntry) >> 6];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new PaletteSection(palette, paletteSize, bitsPerEntry, bits);
+    }
+
+    private void resize(int bitsPerEntry) {
+        long[] oldBits = this.bits;
+        int oldBitsPerEntry = this.bitsPerEntry;
+        int oldShift = this.entriesPerLongShift;
+        long oldMask = this.entryMask;
+
+        this.bitsPerEntry = bitsPerEntry;
+        this.entriesPerLongShift = 6 - Integer.numberOfTrailingZeros(bitsPerEntry);
+        this.entryMask = (1L << bitsPerEntry) - 1;
+        this.bits = new long[(4096 * bitsPerEntry) >> 6];
+
+        if (oldBits != null) {
+            int oldPerLong = 1 << oldShift;
+            for (int i = 0; i < 4096; i++) {
+                long word = oldBits[i >> oldShift];
+                int value = (int) ((word >>> ((i & (oldPerLong - 1)) * oldBitsPerEntry)) & oldMask);
+                if (value != 0) {
+                    setIndex(i, value);
+                }
+            }
+        }
+    }
+
+    private int getIndex(int index) {
+        int perLong = 1 << entriesPerLongShift;
+        long word = bits[index >> entriesPerLongShift];
+        return (int) ((word >>> ((index & (perLong - 1)) * bitsPerEntry)) & entryMask);
+    }
+
+    private void setIndex(int index, int paletteIndex) {
+        int perLong = 1 << entriesPerLongShift;
+        int shift = (index & (perLong - 1)) * bitsPerEntry;
+        int wordIndex = index >> entriesPerLongShift;
+        bits[wordIndex] = (bits[wordIndex] & ~(entryMask << shift)) | ((long) paletteIndex << shift);
+    }
+
+    private int getOrAdd(char value) {
+        if (value == lastValue && lastIndex < paletteSize) {
+            return lastIndex;
+        }
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == value) {
+                lastValue = value;
+                return lastIndex = i;
+            }
+        }
+        if (paletteSize == MAX_PALETTE_SIZE) {
+            return -1;
+        }
+        if (paletteSize == palette.length) {
+            char[] newPalette = new char[palette.length << 1];
+            System.arraycopy(palette, 0, newPalette, 0, paletteSize);
+            palette = newPalette;
+        }
+        int paletteIndex = paletteSize++;
+        palette[paletteIndex] = value;
+        if (paletteIndex > entryMask) {
+            resize(bitsPerEntry << 1);
+        }
+        lastValue = value;
+        return lastIndex = paletteIndex;
+    }
+
+    /**
+     * Get the combined id at an index (0 if unset)
+     *
+     * @param index
+     * @return
+     */
+    public char get(int index) {
+        return palette[getIndex(index)];
+    }
+
+    /**
+     * Set the combined id at an index
+     *
+     * @param index
+     * @param value
+     * @return the previous value, or -1 if the palette is full and nothing was written
+     */
+    public int set(int index, char value) {
+        int paletteIndex = getOrAdd(value);
+        if (paletteIndex == -1) {
+            return -1;
+        }
+        int previous = getIndex(index);
+        if (previous != paletteIndex) {
+            setIndex(index, paletteIndex);
+        }
+        return palette[previous];
+    }
+
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+
+    public int getBitsPerEntry() {
+        return bitsPerEntry;
+    }
+
+    /**
+     * Expand this section to the raw char[4096] representation used by CharFaweChunk
+     *
+     * @return
+     */
+    public char[] toArray() {
+        return toArray(new char[4096]);
+    }
+
+    /**
+     * Expand this section into an existing array
+     *
+     * @param array a char[4096]
+     * @return the array
+     */
+    public char[] toArray(char[] array) {
+        if (paletteSize == 1) {
+            Arrays.fill(array, (char) 0);
+            return array;
+        }
+        int perLong = 1 << entriesPerLongShift;
+        int index = 0;
+        for (long word : bits) {
+            for (int i = 0; i < perLong; i++, index++) {
+                array[index] = palette[(int) ((word >>> (i * bitsPerEntry)) & entryMask)];
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,26 @@
+package com.boydti.fawe.object.expression;
+
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
+
+/**
+ * An expression tree compiled to a class by {@link ExpressionCompiler}
+ */
+public abstract class CompiledExpression {
+    /**
+     * The variables read or assigned by the compiled code
+     */
+    public final Variable[] variables;
+    /**
+     * Nodes which could not be compiled, and are evaluated through {@link RValue#getValue()}
+     */
+    public final RValue[] nodes;
+
+    protected CompiledExpression(Variable[] variables, RValue[] nodes) {
+        this.variables = variables;
+        this.nodes = nodes;
+    }
+
+    public abstract double evaluate() throws EvaluationException;
+}
@@ -0,0 +1,747 @@
+package com.boydti.fawe.object.expression;
+
+import com.boydti.fawe.Fawe;
+import com.sk89q.worldedit.internal.expression.runtime.Conditional;
+import com.sk89q.worldedit.internal.expression.runtime.Constant;
+import com.sk89q.worldedit.internal.expression.runtime.Function;
+import com.sk89q.worldedit.internal.expression.runtime.Functions;
+import com.sk89q.worldedit.internal.expression.runtime.Operators;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.Sequence;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles an (optimized) expression tree to a subclass of {@link CompiledExpression}<br>
+ * - Arithmetic, comparison, logic, (compound) assignment, increments and the Math functions are emitted as bytecode on primitive doubles<br>
+ * - Statement sequences and if/else (or ?:) are emitted too, so scripts like `a = x * y; if (a > 0) { ... }` are compiled<br>
+ * - Variables are read and written through their {@link Variable#value} field, so they stay visible to the rest of the expression<br>
+ * - Any other node (loops, switch, return, dynamic functions like query or perlin) is kept and called through {@link RValue#getValue()}<br>
+ * - Classes use version 49, so no stack map frames are needed<br>
+ * - Generated classes are cached by their bytecode, so expressions with the same shape share a class (and class loader)
+ */
+public final class ExpressionCompiler {
+
+    /**
+     * The number of generated classes kept (each has its own loader, so evicted classes can be unloaded)
+     */
+    private static final int CACHE_SIZE = 256;
+
+    private static final Map<String, Class<?>> CACHE = Collections.synchronizedMap(new LinkedHashMap<String, Class<?>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Class<?>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+
+    private static final String RVALUE = "com/sk89q/worldedit/internal/expression/runtime/RValue";
+    private static final String VARIABLE = "com/sk89q/worldedit/internal/expression/runtime/Variable";
+    private static final String SUPER = CompiledExpression.class.getName().replace('.', '/');
+    private static final String MATH = "java/lang/Math";
+
+    private static final int MAX_CODE = Short.MAX_VALUE;
+
+    // Not exposed by WorldEdit, if they can't be read these nodes stay interpreted
+    private static final Field SEQUENCE = field(Sequence.class, "sequence");
+    private static final Field CONDITION = field(Conditional.class, "condition");
+    private static final Field TRUE_PART = field(Conditional.class, "truePart");
+    private static final Field FALSE_PART = field(Conditional.class, "falsePart");
+
+    private final ConstantPool pool = new ConstantPool();
+    private final Code code = new Code();
+    private final IdentityHashMap<Variable, Integer> variableIndex = new IdentityHashMap<>();
+    private final ArrayList<Variable> variables = new ArrayList<>();
+    private final ArrayList<RValue> nodes = new ArrayList<>();
+    private int compiled;
+
+    private ExpressionCompiler() {
+    }
+
+    private static Field field(Class<?> clazz, String name) {
+        try {
+            Field field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Compile an expression tree
+     *
+     * @param root the root node
+     * @return the compiled expression, or null if nothing in the tree can be compiled
+     */
+    public static CompiledExpression compile(RValue root) {
+        if (root instanceof Constant || root instanceof Variable) {
+            return null;
+        }
+        try {
+            ExpressionCompiler compiler = new ExpressionCompiler();
+            String name = SUPER.substring(0, SUPER.lastIndexOf('/') + 1) + "GeneratedExpression";
+            byte[] bytes = compiler.write(name, root);
+            if (bytes == null) {
+                return null;
+            }
+            // The bytecode only depends on the shape of the tree, the variables and nodes are passed to the constructor
+            String key = new String(bytes, StandardCharsets.ISO_8859_1);
+            Class<?> clazz = CACHE.get(key);
+            if (clazz == null) {
+                clazz = new Loader(CompiledExpression.class.getClassLoader()).define(name.replace('/', '.'), bytes);
+                CACHE.put(key, clazz);
+            }
+            Variable[] variables = compiler.variables.toArray(new Variable[compiler.variables.size()]);
+            RValue[] nodes = compiler.nodes.toArray(new RValue[compiler.nodes.size()]);
+            return (CompiledExpression) clazz.getConstructor(Variable[].class, RValue[].class).newInstance(variables, nodes);
+        } catch (Throwable e) {
+            Fawe.debug("Failed to compile expression `" + root + "`: " + e);
+            return null;
+        }
+    }
+
+    private byte[] write(String name, RValue root) throws IOException, IllegalAccessException {
+        int thisClass = pool.clazz(name);
+        int superClass = pool.clazz(SUPER);
+        String ctorDesc = "([L" + VARIABLE + ";[L" + RVALUE + ";)V";
+
+        // Constructor
+        code.op(0x2A); // aload_0
+        code.op(0x2B); // aload_1
+        code.op(0x2C); // aload_2
+        code.op(0xB7); // invokespecial
+        code.u2(pool.method(SUPER, "<init>", ctorDesc));
+        code.op(0xB1); // return
+        byte[] ctor = code.toByteArray();
+
+        // evaluate()
+        code.reset();
+        code.op(0x2A); // aload_0
+        code.op(0xB4); // getfield
+        code.u2(pool.field(SUPER, "variables", "[L" + VARIABLE + ";"));
+        code.op(0x4C); // astore_1
+        code.op(0x2A); // aload_0
+        code.op(0xB4); // getfield
+        code.u2(pool.field(SUPER, "nodes", "[L" + RVALUE + ";"));
+        code.op(0x4D); // astore_2
+        emit(root);
+        code.op(0xAF); // dreturn
+        if (compiled == 0 || code.size() > MAX_CODE) {
+            return null;
+        }
+        byte[] evaluate = code.toByteArray();
+        int maxStack = Math.max(2, code.maxStack);
+
+        int codeName = pool.utf8("Code");
+        int initName = pool.utf8("<init>");
+        int initDesc = pool.utf8(ctorDesc);
+        int evalName = pool.utf8("evaluate");
+        int evalDesc = pool.utf8("()D");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        pool.write(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, 0x0001, initName, initDesc, codeName, 3, 3, ctor);
+        writeMethod(out, 0x0001, evalName, evalDesc, codeName, maxStack, 3, evaluate);
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int desc, int codeName, int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private void emit(RValue node) throws IllegalAccessException {
+        if (node instanceof Constant) {
+            emitDouble(((Constant) node).getValue());
+        } else if (node instanceof Variable) {
+            loadVariable((Variable) node);
+            code.op(0xB4, 1); // getfield
+            code.u2(pool.field(VARIABLE, "value", "D"));
+        } else if (node instanceof Function && emitFunction((Function) node)) {
+            compiled++;
+        } else if (node instanceof Sequence && SEQUENCE != null) {
+            emitSequence((RValue[]) SEQUENCE.get(node));
+        } else if (node instanceof Conditional && CONDITION != null && TRUE_PART != null && FALSE_PART != null) {
+            emitConditional((RValue) CONDITION.get(node), (RValue) TRUE_PART.get(node), (RValue) FALSE_PART.get(node));
+            compiled++;
+        } else {
+            code.op(0x2C, 1); // aload_2
+            pushInt(nodes.size());
+            nodes.add(node);
+            code.op(0x32, -1); // aaload
+            code.op(0xB9, 1); // invokeinterface
+            code.u2(pool.interfaceMethod(RVALUE, "getValue", "()D"));
+            code.u1(1);
+            code.u1(0);
+        }
+    }
+
+    /**
+     * Evaluate each statement in order, the value is the last one (or 0 if empty)
+     */
+    private void emitSequence(RValue[] sequence) throws IllegalAccessException {
+        if (sequence.length == 0) {
+            code.op(0x0E, 2); // dconst_0
+            return;
+        }
+        for (int i = 0; i < sequence.length; i++) {
+            emit(sequence[i]);
+            if (i != sequence.length - 1) {
+                code.op(0x58, -2); // pop2
+            }
+        }
+    }
+
+    /**
+     * condition > 0 ? truePart : falsePart (or 0 without an else)
+     */
+    private void emitConditional(RValue condition, RValue truePart, RValue falsePart) throws IllegalAccessException {
+        emit(condition);
+        code.op(0x0E, 2); // dconst_0
+        code.op(0x97, -3); // dcmpl
+        int toFalse = code.jump(0x9E, -1); // ifle
+        emit(truePart);
+        int toEnd = code.jump(0xA7, 0); // goto
+        code.bind(toFalse);
+        // The false branch starts at the depth before the true branch
+        code.stack -= 2;
+        if (falsePart == null) {
+            code.op(0x0E, 2); // dconst_0
+        } else {
+            emit(falsePart);
+        }
+        code.bind(toEnd);
+    }
+
+    private void emitDouble(double value) {
+        if (value == 0 && Double.doubleToRawLongBits(value) == 0) {
+            code.op(0x0E, 2); // dconst_0
+        } else if (value == 1) {
+            code.op(0x0F, 2); // dconst_1
+        } else {
+            code.op(0x14, 2); // ldc2_w
+            code.u2(pool.doubleValue(value));
+        }
+    }
+
+    private void loadVariable(Variable variable) {
+        Integer index = variableIndex.get(variable);
+        if (index == null) {
+            variableIndex.put(variable, index = variables.size());
+            variables.add(variable);
+        }
+        code.op(0x2B, 1); // aload_1
+        pushInt(index);
+        code.op(0x32, -1); // aaload
+    }
+
+    private void pushInt(int value) {
+        if (value <= 5) {
+            code.op(0x03 + value, 1); // iconst_<n>
+        } else if (value < 128) {
+            code.op(0x10, 1); // bipush
+            code.u1(value);
+        } else {
+            code.op(0x11, 1); // sipush
+            code.u2(value);
+        }
+    }
+
+    private boolean emitFunction(Function function) throws IllegalAccessException {
+        Class<?> owner = function.method.getDeclaringClass();
+        String name = function.method.getName();
+        RValue[] args = function.args;
+        if (owner == Operators.class) {
+            return emitOperator(name, args);
+        }
+        if (owner == Functions.class) {
+            return emitMath(name, args);
+        }
+        return false;
+    }
+
+    private boolean emitOperator(String name, RValue[] args) throws IllegalAccessException {
+        if (args.length == 1) {
+            switch (name) {
+                case "inc":
+                    return increment(args[0], 0x63, false);
+                case "dec":
+                    return increment(args[0], 0x67, false);
+                case "postinc":
+                    return increment(args[0], 0x63, true);
+                case "postdec":
+                    return increment(args[0], 0x67, true);
+                case "neg":
+                    emit(args[0]);
+                    code.op(0x77); // dneg
+                    return true;
+                case "not":
+                    // x > 0 ? 0 : 1
+                    emit(args[0]);
+                    code.op(0x0E, 2); // dconst_0
+                    code.op(0x97, -3); // dcmpl
+                    int toZero = code.jump(0x9D, -1); // ifgt
+                    code.op(0x0F, 2); // dconst_1
+                    int toEnd = code.jump(0xA7, 0); // goto
+                    code.bind(toZero);
+                    code.op(0x0E, 0); // dconst_0 (same depth as dconst_1)
+                    code.bind(toEnd);
+                    return true;
+            }
+            return false;
+        }
+        if (args.length != 2) {
+            return false;
+        }
+        switch (name) {
+            case "add":
+                return binary(args, 0x63);
+            case "sub":
+                return binary(args, 0x67);
+            case "mul":
+                return binary(args, 0x6B);
+            case "div":
+                return binary(args, 0x6F);
+            case "mod":
+                return binary(args, 0x73);
+            case "pow":
+                emit(args[0]);
+                emit(args[1]);
+                code.op(0xB8, -2); // invokestatic
+                code.u2(pool.method(MATH, "pow", "(DD)D"));
+                return true;
+            // dcmpg for < and <=, dcmpl for the rest, so NaN compares false like in Java
+            case "lth":
+                return compare(args, 0x98, 0x9B);
+            case "leq":
+                return compare(args, 0x98, 0x9E);
+            case "gth":
+                return compare(args, 0x97, 0x9D);
+            case "geq":
+                return compare(args, 0x97, 0x9C);
+            case "equ":
+                return compare(args, 0x97, 0x99);
+            case "neq":
+                return compare(args, 0x97, 0x9A);
+            case "and": {
+                // a > 0 && b > 0 ? 1 : 0
+                emit(args[0]);
+                code.op(0x0E, 2);
+                code.op(0x97, -3);
+                int false1 = code.jump(0x9E, -1); // ifle
+                emit(args[1]);
+                code.op(0x0E, 2);
+                code.op(0x97, -3);
+                int false2 = code.jump(0x9E, -1);
+                code.op(0x0F, 2);
+                int end = code.jump(0xA7, 0);
+                code.bind(false1);
+                code.bind(false2);
+                code.op(0x0E, 0);
+                code.bind(end);
+                return true;
+            }
+            case "or": {
+                // a > 0 || b > 0 ? 1 : 0
+                emit(args[0]);
+                code.op(0x0E, 2);
+                code.op(0x97, -3);
+                int true1 = code.jump(0x9D, -1); // ifgt
+                emit(args[1]);
+                code.op(0x0E, 2);
+                code.op(0x97, -3);
+                int true2 = code.jump(0x9D, -1);
+                code.op(0x0E, 2);
+                int end = code.jump(0xA7, 0);
+                code.bind(true1);
+                code.bind(true2);
+                code.op(0x0F, 0);
+                code.bind(end);
+                return true;
+            }
+            case "ass":
+                if (!(args[0] instanceof Variable)) {
+                    return false;
+                }
+                loadVariable((Variable) args[0]);
+                emit(args[1]);
+                code.op(0x5D, 2); // dup2_x1
+                code.op(0xB5, -3); // putfield
+                code.u2(pool.field(VARIABLE, "value", "D"));
+                return true;
+            case "aadd":
+                return assign(args, 0x63);
+            case "asub":
+                return assign(args, 0x67);
+            case "amul":
+                return assign(args, 0x6B);
+            case "adiv":
+                return assign(args, 0x6F);
+            case "amod":
+                return assign(args, 0x73);
+            case "aexp":
+                return assign(args, 0);
+        }
+        return false;
+    }
+
+    /**
+     * x op= y, with x read before y is evaluated (the same order as {@link Operators})
+     *
+     * @param opcode the operation, or 0 for Math.pow
+     */
+    private boolean assign(RValue[] args, int opcode) throws IllegalAccessException {
+        if (!(args[0] instanceof Variable)) {
+            return false;
+        }
+        loadVariable((Variable) args[0]);
+        code.op(0x59, 1); // dup
+        code.op(0xB4, 1); // getfield
+        code.u2(pool.field(VARIABLE, "value", "D"));
+        emit(args[1]);
+        if (opcode == 0) {
+            code.op(0xB8, -2); // invokestatic
+            code.u2(pool.method(MATH, "pow", "(DD)D"));
+        } else {
+            code.op(opcode, -2);
+        }
+        code.op(0x5D, 2); // dup2_x1
+        code.op(0xB5, -3); // putfield
+        code.u2(pool.field(VARIABLE, "value", "D"));
+        return true;
+    }
+
+    /**
+     * ++x, --x, x++ or x--
+     *
+     * @param opcode dadd or dsub
+     * @param post   if the old value is the result
+     */
+    private boolean increment(RValue arg, int opcode, boolean post) {
+        if (!(arg instanceof Variable)) {
+            return false;
+        }
+        loadVariable((Variable) arg);
+        code.op(0x59, 1); // dup
+        code.op(0xB4, 1); // getfield
+        code.u2(pool.field(VARIABLE, "value", "D"));
+        if (post) {
+            code.op(0x5D, 2); // dup2_x1
+        }
+        code.op(0x0F, 2); // dconst_1
+        code.op(opcode, -2);
+        if (!post) {
+            code.op(0x5D, 2); // dup2_x1
+        }
+        code.op(0xB5, -3); // putfield
+        code.u2(pool.field(VARIABLE, "value", "D"));
+        return true;
+    }
+
+    private boolean binary(RValue[] args, int opcode) throws IllegalAccessException {
+        emit(args[0]);
+        emit(args[1]);
+        code.op(opcode, -2);
+        return true;
+    }
+
+    private boolean compare(RValue[] args, int cmp, int jump) throws IllegalAccessException {
+        emit(args[0]);
+        emit(args[1]);
+        code.op(cmp, -3);
+        int toTrue = code.jump(jump, -1);
+        code.op(0x0E, 2); // dconst_0
+        int toEnd = code.jump(0xA7, 0); // goto
+        code.bind(toTrue);
+        code.op(0x0F, 0); // dconst_1 (same depth as dconst_0)
+        code.bind(toEnd);
+        return true;
+    }
+
+    private boolean emitMath(String name, RValue[] args) throws IllegalAccessException {
+        switch (args.length) {
+            case 1:
+                switch (name) {
+                    case "sin":
+                    case "cos":
+                    case "tan":
+                    case "asin":
+                    case "acos":
+                    case "atan":
+                    case "sinh":
+                    case "cosh":
+                    case "tanh":
+                    case "sqrt":
+                    case "cbrt":
+                    case "abs":
+                    case "ceil":
+                    case "floor":
+                    case "rint":
+                    case "exp":
+                    case "log10":
+                        return math(args, name, "(D)D", 0);
+                    case "ln":
+                    case "log":
+                        return math(args, "log", "(D)D", 0);
+                    case "round":
+                        math(args, "round", "(D)J", 0);
+                        code.op(0x8A); // l2d
+                        return true;
+                }
+                return false;
+            case 2:
+                switch (name) {
+                    case "atan2":
+                    case "min":
+                    case "max":
+                        return math(args, name, "(DD)D", -2);
+                }
+                return false;
+            case 3:
+                switch (name) {
+                    case "min":
+                    case "max":
+                        // max(a, max(b, c))
+                        emit(args[0]);
+                        math(Arrays.copyOfRange(args, 1, 3), name, "(DD)D", -2);
+                        code.op(0xB8, -2);
+                        code.u2(pool.method(MATH, name, "(DD)D"));
+                        return true;
+                }
+                return false;
+        }
+        return false;
+    }
+
+    private boolean math(RValue[] args, String name, String desc, int stack) throws IllegalAccessException {
+        for (RValue arg : args) {
+            emit(arg);
+        }
+        code.op(0xB8, stack); // invokestatic
+        code.u2(pool.method(MATH, name, desc));
+        return true;
+    }
+
+    private static final class Loader extends ClassLoader {
+        private Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * A bytecode buffer which tracks the operand stack depth
+     */
+    private static final class Code {
+        private byte[] buffer = new byte[256];
+        private int size;
+        private int stack;
+        private int maxStack;
+
+        private void u1(int value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size << 1);
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        private void op(int opcode) {
+            u1(opcode);
+        }
+
+        private void op(int opcode, int stackChange) {
+            u1(opcode);
+            stack += stackChange;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        /**
+         * Write a jump, to be bound later with {@link #bind(int)}
+         *
+         * @return the position of the jump
+         */
+        private int jump(int opcode, int stackChange) {
+            int position = size;
+            op(opcode, stackChange);
+            u2(0);
+            return position;
+        }
+
+        private void bind(int jump) {
+            int offset = size - jump;
+            buffer[jump + 1] = (byte) (offset >> 8);
+            buffer[jump + 2] = (byte) offset;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void reset() {
+            size = 0;
+            stack = 0;
+            maxStack = 0;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    /**
+     * A deduplicating class file constant pool
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        private int add(String key, int slots) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            entries.put(key, index = count);
+            count += slots;
+            return index;
+        }
+
+        private int utf8(String value) {
+            String key = "U" + value;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return add(key, 1);
+        }
+
+        private int clazz(String name) {
+            String key = "C" + name;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            write(7, nameIndex);
+            return add(key, 1);
+        }
+
+        private int nameAndType(String name, String desc) {
+            String key = "N" + name + ' ' + desc;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            int descIndex = utf8(desc);
+            write(12, nameIndex, descIndex);
+            return add(key, 1);
+        }
+
+        private int member(int tag, String owner, String name, String desc) {
+            String key = tag + owner + '.' + name + ' ' + desc;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            int classIndex = clazz(owner);
+            int typeIndex = nameAndType(name, desc);
+            write(tag, classIndex, typeIndex);
+            return add(key, 1);
+        }
+
+        private int field(String owner, String name, String desc) {
+            return member(9, owner, name, desc);
+        }
+
+        private int method(String owner, String name, String desc) {
+            return member(10, owner, name, desc);
+        }
+
+        private int interfaceMethod(String owner, String name, String desc) {
+            return member(11, owner, name, desc);
+        }
+
+        private int doubleValue(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            String key = "D" + bits;
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(6);
+                out.writeLong(bits);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            // Doubles take two entries
+            return add(key, 2);
+        }
+
+        private void write(int tag, int... indexes) {
+            try {
+                out.writeByte(tag);
+                for (int index : indexes) {
+                    out.writeShort(index);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void write(DataOutputStream stream) throws IOException {
+            out.flush();
+            stream.writeShort(count);
+            bytes.writeTo(stream);
+        }
+    }
+}
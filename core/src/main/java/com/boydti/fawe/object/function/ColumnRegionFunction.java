@@ -0,0 +1,22 @@
+package com.boydti.fawe.object.function;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.RegionFunction;
+
+/**
+ * A region function which can be applied to a whole column at once<br>
+ * - Used by the chunk-major {@link com.sk89q.worldedit.function.visitor.RegionVisitor} traversal
+ */
+public interface ColumnRegionFunction extends RegionFunction {
+    /**
+     * Apply the function to each block in a column
+     *
+     * @param x
+     * @param z
+     * @param minY the lowest y (inclusive)
+     * @param maxY the highest y (inclusive)
+     * @return the number of affected blocks
+     * @throws WorldEditException
+     */
+    int apply(int x, int z, int minY, int maxY) throws WorldEditException;
+}
@@ -0,0 +1,75 @@
+package com.boydti.fawe.object.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream reading from its own view of a ByteBuffer<br>
+ * - The source buffer's position is never changed, so many streams can read one (e.g. memory mapped) buffer concurrently
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    /**
+     * @param source the buffer to read
+     * @param offset the absolute start position in the source buffer
+     * @param length the number of bytes to read
+     */
+    public ByteBufferInputStream(ByteBuffer source, int offset, int length) {
+        ByteBuffer view = source.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        this.buffer = view.slice();
+    }
+
+    public ByteBufferInputStream(ByteBuffer source) {
+        this(source, source.position(), source.remaining());
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        int remaining = buffer.remaining();
+        if (remaining == 0) {
+            return len == 0 ? 0 : -1;
+        }
+        len = Math.min(len, remaining);
+        buffer.get(b, off, len);
+        return len;
+    }
+
+    @Override
+    public long skip(long n) {
+        int amount = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + amount);
+        return amount;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        buffer.mark();
+    }
+
+    @Override
+    public void reset() {
+        buffer.reset();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,198 @@
+package com.boydti.fawe.object.io;
+
+import com.boydti.fawe.Fawe;
+import com.boydti.fawe.IFawe;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.TaskManager;
+import com.github.luben.zstd.Zstd;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dictionaries used by history compression level 10<br>
+ * - Trained once from samples of block change (.bd) streams, then stored as `<id>.dict`<br>
+ * - Only block change streams are written with a dictionary, everything else uses id 0<br>
+ * - Streams record the id of the dictionary they were written with, so old dictionaries must be kept while history exists<br>
+ * - Id 0 means no dictionary (plain zstd)<br>
+ * - Without a platform (tests, offline tools) there is no dictionary folder, so streams are written without a dictionary
+ */
+public final class ZstdDictionaries {
+
+    public static final int NONE = 0;
+
+    private static final int DICTIONARY_SIZE = 112640;
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int SAMPLES_PER_BLOCK = 16;
+    private static final int SAMPLE_COUNT = 1024;
+
+    private static final ConcurrentHashMap<Integer, byte[]> DICTIONARIES = new ConcurrentHashMap<>();
+    private static final AtomicBoolean TRAINING = new AtomicBoolean();
+    private static final ArrayList<byte[]> SAMPLES = new ArrayList<>();
+    private static volatile int current = -1;
+
+    private ZstdDictionaries() {
+    }
+
+    /**
+     * @return the dictionary folder, or null if Fawe isn't running on a platform
+     */
+    public static File getFolder() {
+        IFawe imp = Fawe.imp();
+        if (imp == null) {
+            return null;
+        }
+        return MainUtil.getFile(imp.getDirectory(), Settings.IMP.PATHS.HISTORY_DICTIONARIES);
+    }
+
+    /**
+     * Get the id of the dictionary new streams should be written with
+     *
+     * @return the id, or {@link #NONE} if no dictionary has been trained yet
+     */
+    public static int getCurrent() {
+        int id = current;
+        if (id == -1) {
+            synchronized (DICTIONARIES) {
+                if ((id = current) == -1) {
+                    File folder = getFolder();
+                    if (folder == null) {
+                        // Not cached, so the folder is scanned once there is a platform
+                        return NONE;
+                    }
+                    id = NONE;
+                    File[] files = folder.listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            String name = file.getName();
+                            if (name.endsWith(".dict")) {
+                                try {
+                                    id = Math.max(id, Integer.parseInt(name.substring(0, name.length() - 5)));
+                                } catch (NumberFormatException ignore) {}
+                            }
+                        }
+                    }
+                    current = id;
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Get a dictionary by id
+     *
+     * @param id
+     * @return the dictionary, or null for {@link #NONE}
+     * @throws IOException if the dictionary is missing
+     */
+    public static byte[] get(int id) throws IOException {
+        if (id == NONE) {
+            return null;
+        }
+        byte[] dictionary = DICTIONARIES.get(id);
+        if (dictionary == null) {
+            File folder = getFolder();
+            if (folder == null) {
+                throw new IOException("Missing history dictionary: " + id + " (no dictionary folder)");
+            }
+            File file = new File(folder, id + ".dict");
+            if (!file.exists()) {
+                throw new IOException("Missing history dictionary: " + file);
+            }
+            dictionary = Files.readAllBytes(file.toPath());
+            DICTIONARIES.put(id, dictionary);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Offer a block of uncompressed block change data as training input<br>
+     * - Does nothing once a dictionary exists, or if there is nowhere to store one<br>
+     * - Training starts asynchronously when enough samples have been collected
+     *
+     * @param buf
+     * @param off
+     * @param len
+     */
+    public static void addSample(byte[] buf, int off, int len) {
+        if (getCurrent() != NONE || TRAINING.get() || getFolder() == null) {
+            return;
+        }
+        byte[][] samples = null;
+        synchronized (SAMPLES) {
+            for (int i = 0; i < SAMPLES_PER_BLOCK && len > 0 && SAMPLES.size() < SAMPLE_COUNT; i++) {
+                int amount = Math.min(len, SAMPLE_SIZE);
+                SAMPLES.add(Arrays.copyOfRange(buf, off, off + amount));
+                off += amount;
+                len -= amount;
+            }
+            if (SAMPLES.size() >= SAMPLE_COUNT && TRAINING.compareAndSet(false, true)) {
+                samples = SAMPLES.toArray(new byte[SAMPLES.size()][]);
+                SAMPLES.clear();
+            }
+        }
+        if (samples != null) {
+            final byte[][] finalSamples = samples;
+            TaskManager.IMP.async(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        train(finalSamples);
+                    } finally {
+                        TRAINING.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    private static void train(byte[][] samples) {
+        byte[] buffer = new byte[DICTIONARY_SIZE];
+        long size = Zstd.trainFromBuffer(samples, buffer);
+        if (Zstd.isError(size)) {
+            Fawe.debug("Failed to train history dictionary: " + Zstd.getErrorName(size));
+            return;
+        }
+        byte[] dictionary = Arrays.copyOf(buffer, (int) size);
+        synchronized (DICTIONARIES) {
+            int id = getCurrent() + 1;
+            File folder = getFolder();
+            folder.mkdirs();
+            File tmp = new File(folder, id + ".dict.tmp");
+            try {
+                Files.write(tmp.toPath(), dictionary);
+                if (!tmp.renameTo(new File(folder, id + ".dict"))) {
+                    throw new IOException("Could not rename " + tmp);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                tmp.delete();
+                return;
+            }
+            setCurrent(id, dictionary);
+        }
+    }
+
+    static void setCurrent(int id, byte[] dictionary) {
+        synchronized (DICTIONARIES) {
+            DICTIONARIES.put(id, dictionary);
+            current = id;
+        }
+    }
+
+    /**
+     * Forget the loaded dictionaries, so the folder is scanned again
+     */
+    static void reset() {
+        synchronized (DICTIONARIES) {
+            DICTIONARIES.clear();
+            current = -1;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.boydti.fawe.object.io;
+
+import com.github.luben.zstd.Zstd;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads streams written by {@link ZstdDictionaryOutputStream}
+ */
+public class ZstdDictionaryInputStream extends InputStream {
+
+    private final InputStream in;
+    private final byte[] dictionary;
+    private byte[] compressed;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    public ZstdDictionaryInputStream(InputStream in) throws IOException {
+        this.in = in;
+        int id = readInt(true);
+        this.dictionary = ZstdDictionaries.get(id);
+    }
+
+    private int readInt(boolean required) throws IOException {
+        int b1 = in.read();
+        if (b1 == -1 && !required) {
+            return -1;
+        }
+        int b2 = in.read();
+        int b3 = in.read();
+        int b4 = in.read();
+        if ((b1 | b2 | b3 | b4) < 0) {
+            throw new EOFException();
+        }
+        return (b1 << 24) + (b2 << 16) + (b3 << 8) + b4;
+    }
+
+    private void readFully(byte[] b, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int read = in.read(b, off, len - off);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            off += read;
+        }
+    }
+
+    private boolean readFrame() throws IOException {
+        int length = readInt(false);
+        if (length == -1) {
+            return false;
+        }
+        decodeFrame(length, readInt(true));
+        return true;
+    }
+
+    private void decodeFrame(int length, int size) throws IOException {
+        byte[] src = compressed != null && compressed.length == size ? compressed : (compressed = new byte[size]);
+        readFully(src, size);
+        // The native api decompresses into the whole array, so it must be the exact frame size
+        if (buffer == null || buffer.length != length) {
+            buffer = new byte[length];
+        }
+        long result = dictionary == null ? Zstd.decompress(buffer, src) : Zstd.decompressUsingDict(buffer, src, dictionary);
+        if (Zstd.isError(result) || result != length) {
+            throw new IOException("Decompression failed: " + (Zstd.isError(result) ? Zstd.getErrorName(result) : result + " != " + length));
+        }
+        position = 0;
+        limit = length;
+    }
+
+    /**
+     * Skips whole frames without decompressing them
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long remaining = n;
+        int buffered = limit - position;
+        if (buffered >= remaining) {
+            position += remaining;
+            return n;
+        }
+        remaining -= buffered;
+        position = limit;
+        while (remaining > 0) {
+            int length = readInt(false);
+            if (length == -1) {
+                break;
+            }
+            int size = readInt(true);
+            if (length <= remaining) {
+                long toSkip = size;
+                while (toSkip > 0) {
+                    long skipped = in.skip(toSkip);
+                    if (skipped <= 0) {
+                        if (in.read() == -1) {
+                            throw new EOFException();
+                        }
+                        skipped = 1;
+                    }
+                    toSkip -= skipped;
+                }
+                remaining -= length;
+            } else {
+                decodeFrame(length, size);
+                position = (int) remaining;
+                remaining = 0;
+            }
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !readFrame()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !readFrame()) {
+            return -1;
+        }
+        int amount = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, amount);
+        position += amount;
+        return amount;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,104 @@
+package com.boydti.fawe.object.io;
+
+import com.github.luben.zstd.Zstd;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Single pass zstd compression with an optional trained dictionary<br>
+ * - Writes the dictionary id, followed by frames of [raw length][compressed length][data]<br>
+ * - Each frame is one buffer, so small edits still benefit from the dictionary
+ */
+public class ZstdDictionaryOutputStream extends OutputStream {
+
+    public static final int LEVEL = 6;
+
+    private final OutputStream out;
+    private final byte[] dictionary;
+    private final boolean sample;
+    private final byte[] buffer;
+    private byte[] compressed;
+    private int count;
+
+    /**
+     * @param out    the stream to write to
+     * @param id     the dictionary id (see {@link ZstdDictionaries})
+     * @param buffer the frame size
+     * @param sample if frames should be offered as dictionary training input
+     * @throws IOException
+     */
+    public ZstdDictionaryOutputStream(OutputStream out, int id, int buffer, boolean sample) throws IOException {
+        this.out = out;
+        this.dictionary = ZstdDictionaries.get(id);
+        this.sample = sample;
+        this.buffer = new byte[buffer];
+        writeInt(id);
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void writeFrame() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (sample) {
+            ZstdDictionaries.addSample(buffer, 0, count);
+        }
+        byte[] src = count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+        int bound = (int) Zstd.compressBound(count);
+        if (compressed == null || compressed.length < bound) {
+            compressed = new byte[bound];
+        }
+        long size = dictionary == null ? Zstd.compress(compressed, src, LEVEL) : Zstd.compressUsingDict(compressed, src, dictionary, LEVEL);
+        if (Zstd.isError(size)) {
+            throw new IOException("Compression failed: " + Zstd.getErrorName(size));
+        }
+        writeInt(count);
+        writeInt((int) size);
+        out.write(compressed, 0, (int) size);
+        count = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            writeFrame();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                writeFrame();
+            }
+            int amount = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, amount);
+            count += amount;
+            off += amount;
+            len -= amount;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeFrame();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeFrame();
+        } finally {
+            out.close();
+        }
+    }
+}
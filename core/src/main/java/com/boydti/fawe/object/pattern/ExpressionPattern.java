@@ -35,6 +35,7 @@ public class ExpressionPattern extends AbstractPattern {
         checkNotNull(input);
         this.input = input;
         this.expression = Expression.compile(input, "x", "y", "z");
+        this.expression.optimize();
     }
 
     /**
@@ -68,6 +69,7 @@ public class ExpressionPattern extends AbstractPattern {
         stream.defaultReadObject();
         try {
             this.expression = Expression.compile(input, "x", "y", "z");
+            this.expression.optimize();
         } catch (ExpressionException e) {
             e.printStackTrace();
         }
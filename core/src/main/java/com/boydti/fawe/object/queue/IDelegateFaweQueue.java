@@ -316,6 +316,11 @@ public interface IDelegateFaweQueue extends FaweQueue {
         return getQueue().next(amount, time);
     }
 
+    @Override
+    default boolean spillChunks() {
+        return getQueue().spillChunks();
+    }
+
     @Override
     default void saveMemory() {
         getQueue().saveMemory();
@@ -77,6 +77,12 @@ public abstract class LazyFaweChunk<T extends FaweChunk> extends FaweChunk {
         return internalGetOrCacheChunk().getIdArray(layer);
     }
 
+    @Override
+    @Nullable
+    public char[] getIdArray(int layer, char[] buffer) {
+        return internalGetOrCacheChunk().getIdArray(layer, buffer);
+    }
+
     @Override
     public byte[][] getBlockLightArray() {
         return internalGetOrCacheChunk().getBlockLightArray();
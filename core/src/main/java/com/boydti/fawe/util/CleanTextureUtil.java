@@ -19,6 +19,7 @@ public class CleanTextureUtil extends TextureUtil {
         int num = maxIndex - minIndex + 1;
         this.validMixBiomeColors = parent.validMixBiomeColors;
         this.validMixBiomeIds = parent.validMixBiomeIds;
+        this.validMixBiomeColorIndex = parent.validMixBiomeColorIndex;
         this.validBiomes = parent.validBiomes;
         this.blockColors = parent.blockColors;
         this.blockDistance = parent.blockDistance;
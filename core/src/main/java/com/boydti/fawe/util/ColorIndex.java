@@ -0,0 +1,163 @@
+package com.boydti.fawe.util;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * An index over a set of colors, for nearest color lookups by {@link TextureUtil#colorDistance(int, int, int, int)}<br>
+ * - Colors are grouped by alpha, then bucketed into a uniform RGB grid<br>
+ * - Cells are searched in rings around the query color, skipping any cell which can't hold a closer color<br>
+ * - The color distance is never less than 2*dr*dr + 4*dg*dg + 2*db*db, which bounds the distance to a cell<br>
+ * - Ties resolve to the lowest index, the same as a linear scan
+ */
+public final class ColorIndex {
+    private final TextureUtil util;
+    private final int[] colors;
+    private final Grid[] grids = new Grid[256];
+
+    /**
+     * @param util   the texture util providing the color distance
+     * @param colors the colors to index (ARGB)
+     */
+    public ColorIndex(TextureUtil util, int[] colors) {
+        this.util = util;
+        this.colors = colors;
+        IntArrayList[] byAlpha = new IntArrayList[256];
+        for (int i = 0; i < colors.length; i++) {
+            int alpha = (colors[i] >> 24) & 0xFF;
+            IntArrayList list = byAlpha[alpha];
+            if (list == null) {
+                byAlpha[alpha] = list = new IntArrayList();
+            }
+            list.add(i);
+        }
+        for (int alpha = 0; alpha < 256; alpha++) {
+            if (byAlpha[alpha] != null) {
+                grids[alpha] = new Grid(colors, byAlpha[alpha]);
+            }
+        }
+    }
+
+    /**
+     * Get the nearest color with the same alpha
+     *
+     * @param color       the color to match
+     * @param excludeSame if an identical color should be skipped
+     * @return the index of the nearest color, or -1
+     */
+    public int getNearest(int color, boolean excludeSame) {
+        Grid grid = grids[(color >> 24) & 0xFF];
+        if (grid == null) {
+            return -1;
+        }
+        int red = (color >> 16) & 0xFF;
+        int green = (color >> 8) & 0xFF;
+        int blue = (color >> 0) & 0xFF;
+        int shift = grid.shift;
+        int bins = grid.bins;
+        int[] start = grid.start;
+        int[] entries = grid.entries;
+        int qr = red >> shift;
+        int qg = green >> shift;
+        int qb = blue >> shift;
+
+        long min = Long.MAX_VALUE;
+        int closest = -1;
+        for (int k = 0; k < bins; k++) {
+            if (k > 0) {
+                // Every cell in this ring is at least this far away on one axis
+                long gap = ((long) (k - 1) << shift) + 1;
+                if (2 * gap * gap > min) {
+                    break;
+                }
+            }
+            for (int cr = Math.max(0, qr - k); cr <= Math.min(bins - 1, qr + k); cr++) {
+                int dr = Math.abs(cr - qr);
+                long gr = gap(red, cr, shift);
+                for (int cg = Math.max(0, qg - k); cg <= Math.min(bins - 1, qg + k); cg++) {
+                    int dg = Math.abs(cg - qg);
+                    long gg = gap(green, cg, shift);
+                    // Only the shell of the ring, the inside was searched already
+                    int step = (k == 0 || dr == k || dg == k) ? 1 : k << 1;
+                    for (int cb = qb - k; cb <= qb + k; cb += step) {
+                        if (cb < 0 || cb >= bins) {
+                            continue;
+                        }
+                        long gb = gap(blue, cb, shift);
+                        if (2 * gr * gr + 4 * gg * gg + 2 * gb * gb > min) {
+                            continue;
+                        }
+                        int cell = (cr * bins + cg) * bins + cb;
+                        for (int j = start[cell]; j < start[cell + 1]; j++) {
+                            int index = entries[j];
+                            int other = colors[index];
+                            if (excludeSame && other == color) {
+                                continue;
+                            }
+                            long distance = util.colorDistance(red, green, blue, other);
+                            if (distance < min || (distance == min && index < closest)) {
+                                min = distance;
+                                closest = index;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    private static long gap(int value, int cell, int shift) {
+        int low = cell << shift;
+        int high = low + (1 << shift) - 1;
+        if (value < low) {
+            return low - value;
+        }
+        if (value > high) {
+            return value - high;
+        }
+        return 0;
+    }
+
+    /**
+     * The colors of one alpha value, in a grid stored as compressed rows
+     */
+    private static final class Grid {
+        private final int shift;
+        private final int bins;
+        private final int[] start;
+        private final int[] entries;
+
+        private Grid(int[] colors, IntArrayList indexes) {
+            // Around 4 colors per cell, up to 32 bins per channel
+            int bits = 0;
+            while (bits < 5 && (1 << (3 * bits)) * 4 < indexes.size()) {
+                bits++;
+            }
+            this.shift = 8 - bits;
+            this.bins = 1 << bits;
+            int cells = bins * bins * bins;
+            this.start = new int[cells + 1];
+            this.entries = new int[indexes.size()];
+            for (int i = 0; i < indexes.size(); i++) {
+                start[cell(colors[indexes.getInt(i)]) + 1]++;
+            }
+            for (int i = 0; i < cells; i++) {
+                start[i + 1] += start[i];
+            }
+            int[] offset = new int[cells];
+            // Indexes are added in order, so each cell stays sorted
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.getInt(i);
+                int cell = cell(colors[index]);
+                entries[start[cell] + offset[cell]++] = index;
+            }
+        }
+
+        private int cell(int color) {
+            int red = ((color >> 16) & 0xFF) >> shift;
+            int green = ((color >> 8) & 0xFF) >> shift;
+            int blue = (color & 0xFF) >> shift;
+            return (red * bins + green) * bins + blue;
+        }
+    }
+}
@@ -13,6 +13,7 @@ public class FilteredTextureUtil extends TextureUtil {
         this.blocks = blocks;
         this.validMixBiomeColors = parent.validMixBiomeColors;
         this.validMixBiomeIds = parent.validMixBiomeIds;
+        this.validMixBiomeColorIndex = parent.validMixBiomeColorIndex;
         this.validBiomes = parent.validBiomes;
         this.blockColors = parent.blockColors;
         this.blockDistance = parent.blockDistance;
@@ -7,6 +7,9 @@ import com.boydti.fawe.object.*;
 import com.boydti.fawe.object.changeset.CPUOptimizedChangeSet;
 import com.boydti.fawe.object.changeset.FaweStreamChangeSet;
 import com.boydti.fawe.object.io.AbstractDelegateOutputStream;
+import com.boydti.fawe.object.io.ZstdDictionaries;
+import com.boydti.fawe.object.io.ZstdDictionaryInputStream;
+import com.boydti.fawe.object.io.ZstdDictionaryOutputStream;
 import com.github.luben.zstd.ZstdInputStream;
 import com.github.luben.zstd.ZstdOutputStream;
 import com.sk89q.jnbt.*;
@@ -18,9 +21,11 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.lang.reflect.Array;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
@@ -270,6 +275,11 @@ public class MainUtil {
         return getCompressedOS(os, amount, Settings.IMP.HISTORY.BUFFER_SIZE);
     }
 
+    /**
+     * Single pass zstd with a trained dictionary, rather than stacked LZ4 layers
+     */
+    public static final int ZSTD_DICTIONARY_LEVEL = 10;
+
     private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
     private static final LZ4Compressor COMPRESSOR = FACTORY.fastCompressor();
     private static final LZ4FastDecompressor DECOMPRESSOR = FACTORY.fastDecompressor();
@@ -341,11 +351,31 @@ public class MainUtil {
     }
 
     public static FaweOutputStream getCompressedOS(OutputStream os, int amount, int buffer) throws IOException {
+        return getCompressedOS(os, amount, buffer, false);
+    }
+
+    /**
+     * Get a compressed output stream (see HISTORY.COMPRESSION_LEVEL)
+     *
+     * @param os
+     * @param amount the compression level
+     * @param buffer the buffer size
+     * @param blocks if this is block change data (level 10 uses and trains the history dictionary)<br>
+     *               - Other data (clipboards, tiles, entities) is written with plain zstd at level 10
+     * @return
+     * @throws IOException
+     */
+    public static FaweOutputStream getCompressedOS(OutputStream os, int amount, int buffer, boolean blocks) throws IOException {
         os.write((byte) 10 + amount);
         os = new BufferedOutputStream(os, buffer);
         if (amount == 0) {
             return new FaweOutputStream(os);
         }
+        if (amount == ZSTD_DICTIONARY_LEVEL) {
+            int dictionary = blocks ? ZstdDictionaries.getCurrent() : ZstdDictionaries.NONE;
+            os = new ZstdDictionaryOutputStream(os, dictionary, buffer, blocks);
+            return new FaweOutputStream(os);
+        }
         int gzipAmount = amount > 6 ? 1 : 0;
         for (int i = 0; i < gzipAmount; i++) {
             os = new ZstdOutputStream(os, 22);
@@ -377,6 +407,9 @@ public class MainUtil {
         if (mode == 0) {
             return new FaweInputStream(is);
         }
+        if (mode == 10 + ZSTD_DICTIONARY_LEVEL) {
+            return new FaweInputStream(new ZstdDictionaryInputStream(is));
+        }
         boolean legacy;
         if (mode >= 10) {
             legacy = false;
@@ -726,6 +759,38 @@ public class MainUtil {
         return null;
     }
 
+    /**
+     * Release the memory (or file mapping) of a direct buffer without waiting for it to be garbage collected<br>
+     * - The buffer must not be accessed afterwards
+     *
+     * @param cb
+     */
+    public static void closeDirectBuffer(ByteBuffer cb) {
+        if (cb == null || !cb.isDirect()) return;
+
+        // we could use this type cast and call functions without reflection code,
+        // but static import from sun.* package is risky for non-SUN virtual machine.
+        //try { ((sun.nio.ch.DirectBuffer)cb).cleaner().clean(); } catch (Exception ex) { }
+        try {
+            Method cleaner = cb.getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            clean.setAccessible(true);
+            clean.invoke(cleaner.invoke(cb));
+        } catch (Exception ex) {
+            try {
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafeField.setAccessible(true);
+                final Object theUnsafe = theUnsafeField.get(null);
+                final Method invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                invokeCleanerMethod.invoke(theUnsafe, cb);
+            } catch (Exception e) {
+                System.gc();
+            }
+        }
+    }
+
     public static void handleError(Throwable e) {
         handleError(e, true);
     }
@@ -2,14 +2,19 @@ package com.boydti.fawe.util;
 
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.wrappers.WorldWrapper;
+import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.world.World;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ForkJoinPool;
@@ -38,6 +43,27 @@ public class SetQueue {
     private long allocate = 50;
     private long lastSuccess;
 
+    /**
+     * Tick cost controller<br>
+     * - tickCost is an EWMA of the measured tick length (ms)<br>
+     * - allocate = KP * error + KI * integral, where error is how far the smoothed tick is below the target tick length
+     */
+    private static final double TICK_EWMA_ALPHA = 0.25;
+    private static final double TICK_KP = 0.5;
+    private static final double TICK_KI = 0.1;
+    private static final long MIN_ALLOCATE = 5;
+    private static final long MAX_ALLOCATE = 50;
+    private double tickCost = 50;
+    private double tickIntegral = MAX_ALLOCATE / TICK_KI;
+
+    /**
+     * Placement time (ms) each owner has received while it had an active queue<br>
+     * - The owner with the least time is served first, so one large edit can't starve the others<br>
+     * - Only accessed from the main thread
+     */
+    private static final Object SERVER_OWNER = new Object();
+    private final Map<Object, Double> ownerTime = new HashMap<>();
+
     /**
      * A queue of tasks that will run when the queue is empty
      */
@@ -91,17 +117,11 @@ public class SetQueue {
 
                     targetTPS = 18 - Math.max(Settings.IMP.QUEUE.EXTRA_TIME_MS * 0.05, 0);
 
-                    long diff = (50 + SetQueue.this.last) - (SetQueue.this.last = now);
-                    long absDiff = Math.abs(diff);
-                    if (diff == 0) {
-                        allocate = Math.min(50, allocate + 1);
-                    } else if (diff < 0) {
-                        allocate = Math.max(5, allocate + diff);
-                    } else if (!Fawe.get().getTimer().isAbove(targetTPS)) {
-                        allocate = Math.max(5, allocate - 1);
-                    }
+                    long interval = SetQueue.this.last == 0 ? 50 : now - SetQueue.this.last;
+                    SetQueue.this.last = now;
+                    updateAllocation(interval);
 
-                    long currentAllocate = allocate - absDiff;
+                    long currentAllocate = allocate;
 
                     if (!emptyTasks) {
                         long taskAllocate = activeQueues.isEmpty() ? currentAllocate : 1 + (currentAllocate >> 1);
@@ -136,54 +156,43 @@ public class SetQueue {
                     if (!MemUtil.isMemoryFree()) {
                         final int mem = MemUtil.calculateMemory();
                         if (mem != Integer.MAX_VALUE) {
-                            allocate = Math.max(5, allocate - 1);
-                            if ((mem <= 1) && Settings.IMP.PREVENT_CRASHES) {
-                                for (FaweQueue queue : getAllQueues()) {
-                                    queue.saveMemory();
+                            tickIntegral = Math.max(MIN_ALLOCATE / TICK_KI, tickIntegral - 1 / TICK_KI);
+                            allocate = Math.max(MIN_ALLOCATE, allocate - 1);
+                            // Only skip the low memory handling if queues have actually moved chunks to disk since the last check
+                            if (!spillQueues()) {
+                                if ((mem <= 1) && Settings.IMP.PREVENT_CRASHES) {
+                                    for (FaweQueue queue : getAllQueues()) {
+                                        queue.saveMemory();
+                                    }
+                                    return;
+                                }
+                                if (SetQueue.this.forceChunkSet()) {
+                                    System.gc();
+                                } else {
+                                    SetQueue.this.runEmptyTasks();
                                 }
                                 return;
                             }
-                            if (SetQueue.this.forceChunkSet()) {
-                                System.gc();
-                            } else {
-                                SetQueue.this.runEmptyTasks();
-                            }
-                            return;
                         }
                     }
 
-                    FaweQueue queue = getNextQueue();
-                    if (queue == null) {
-                        return;
-                    }
-
-                    long time = Settings.IMP.QUEUE.EXTRA_TIME_MS + currentAllocate - System.currentTimeMillis() + now;
-                    // Disable the async catcher as it can't discern async vs parallel
-                    boolean parallel = Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
-                    queue.startSet(parallel);
-                    try {
-                        if (!queue.next(Settings.IMP.QUEUE.PARALLEL_THREADS, time) && queue.getStage() == QueueStage.ACTIVE) {
-                            queue.setStage(QueueStage.NONE);
-                            queue.runTasks();
+                    long deadline = now + Settings.IMP.QUEUE.EXTRA_TIME_MS + currentAllocate;
+                    do {
+                        FaweQueue queue = getNextQueue();
+                        if (queue == null) {
+                            return;
                         }
-                    } catch (Throwable e) {
-                        pool.awaitQuiescence(Settings.IMP.QUEUE.DISCARD_AFTER_MS, TimeUnit.MILLISECONDS);
-                        completer = new ExecutorCompletionService(pool);
-                        e.printStackTrace();
-                    }
-                    if (pool.getQueuedSubmissionCount() != 0 || pool.getRunningThreadCount() != 0 || pool.getQueuedTaskCount() != 0) {
-//                        if (Fawe.get().isJava8())
-                        {
-                            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                        // Share the rest of the tick between the owners that are waiting
+                        long time = (deadline - System.currentTimeMillis()) / Math.max(1, ownerTime.size());
+                        boolean active = queue.getStage() == QueueStage.ACTIVE;
+                        long start = System.currentTimeMillis();
+                        runQueue(queue, time);
+                        if (!active) {
+                            // Inactive queues are still being written to, so only dispatch them once per tick
+                            break;
                         }
-//                        else {
-//                            pool.shutdown();
-//                            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-//                            pool = new ForkJoinPool();
-//                            completer = new ExecutorCompletionService(pool);
-//                        }
-                    }
-                    queue.endSet(parallel);
+                        chargeOwner(queue, System.currentTimeMillis() - start);
+                    } while (System.currentTimeMillis() < deadline);
                 } catch (Throwable e) {
                     e.printStackTrace();
                 }
@@ -191,6 +200,65 @@ public class SetQueue {
         }, 1);
     }
 
+    private void runQueue(FaweQueue queue, long time) {
+        // Disable the async catcher as it can't discern async vs parallel
+        boolean parallel = Settings.IMP.QUEUE.PARALLEL_THREADS > 1;
+        queue.startSet(parallel);
+        try {
+            if (!queue.next(Settings.IMP.QUEUE.PARALLEL_THREADS, time) && queue.getStage() == QueueStage.ACTIVE) {
+                queue.setStage(QueueStage.NONE);
+                queue.runTasks();
+            }
+        } catch (Throwable e) {
+            pool.awaitQuiescence(Settings.IMP.QUEUE.DISCARD_AFTER_MS, TimeUnit.MILLISECONDS);
+            completer = new ExecutorCompletionService(pool);
+            e.printStackTrace();
+        }
+        if (pool.getQueuedSubmissionCount() != 0 || pool.getRunningThreadCount() != 0 || pool.getQueuedTaskCount() != 0) {
+            pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        queue.endSet(parallel);
+    }
+
+    /**
+     * Update the placement budget from the measured length of the last tick
+     *
+     * @param interval the time since the previous tick (ms)
+     */
+    private void updateAllocation(long interval) {
+        double targetTick = 1000 / targetTPS;
+        tickCost += TICK_EWMA_ALPHA * (Math.min(interval, 1000) - tickCost);
+        double error = targetTick - tickCost;
+        tickIntegral = Math.max(MIN_ALLOCATE / TICK_KI, Math.min(MAX_ALLOCATE / TICK_KI, tickIntegral + error));
+        long value = Math.round(TICK_KP * error + TICK_KI * tickIntegral);
+        allocate = Math.max(MIN_ALLOCATE, Math.min(MAX_ALLOCATE, value));
+    }
+
+    /**
+     * @return the current placement budget per tick (ms)
+     */
+    public long getAllocation() {
+        return allocate;
+    }
+
+    private Object getOwner(FaweQueue queue) {
+        for (EditSession session : queue.getEditSessions()) {
+            FawePlayer player = session.getPlayer();
+            if (player != null) {
+                return player.getUUID();
+            }
+        }
+        return SERVER_OWNER;
+    }
+
+    private void chargeOwner(FaweQueue queue, long elapsed) {
+        Object owner = getOwner(queue);
+        Double time = ownerTime.get(owner);
+        if (time != null) {
+            ownerTime.put(owner, time + Math.max(1, elapsed));
+        }
+    }
+
     public QueueStage getStage(FaweQueue queue) {
         return queue.getStage();
     }
@@ -227,6 +295,19 @@ public class SetQueue {
         queue.runTasks();
     }
 
+    /**
+     * Ask each queue to move its queued chunks to disk (see {@link FaweQueue#spillChunks()})
+     *
+     * @return if any queue will move chunks
+     */
+    private boolean spillQueues() {
+        boolean spilled = false;
+        for (FaweQueue queue : getAllQueues()) {
+            spilled |= queue.spillChunks();
+        }
+        return spilled;
+    }
+
     public Collection<FaweQueue> getAllQueues() {
         ArrayList<FaweQueue> list = new ArrayList<FaweQueue>(activeQueues.size() + inactiveQueues.size());
         list.addAll(inactiveQueues);
@@ -287,19 +368,67 @@ public class SetQueue {
         }
     }
 
+    /**
+     * Get the next queue to place<br>
+     * - Active queues are picked by the owner (player) which has received the least placement time<br>
+     * - Ties (e.g. several queues from one owner) go to the queue which was placed least recently<br>
+     * - Inactive queues are only placed once no queue is active
+     *
+     * @return
+     */
     public FaweQueue getNextQueue() {
         long now = System.currentTimeMillis();
-        while (!activeQueues.isEmpty()) {
-            FaweQueue queue = activeQueues.peek();
-            if (queue != null && queue.size() > 0) {
-                queue.setModified(now);
-                return queue;
-            } else {
-                queue.setStage(QueueStage.NONE);
-                queue.runTasks();
-                activeQueues.poll();
+        if (!activeQueues.isEmpty()) {
+            FaweQueue best = null;
+            double bestTime = 0;
+            HashSet<Object> owners = new HashSet<>();
+            HashSet<Object> newOwners = null;
+            double minTime = Double.MAX_VALUE;
+            Iterator<FaweQueue> iter = activeQueues.iterator();
+            while (iter.hasNext()) {
+                FaweQueue queue = iter.next();
+                if (queue.size() <= 0) {
+                    queue.setStage(QueueStage.NONE);
+                    queue.runTasks();
+                    iter.remove();
+                    continue;
+                }
+                Object owner = getOwner(queue);
+                owners.add(owner);
+                Double time = ownerTime.get(owner);
+                if (time == null) {
+                    if (newOwners == null) newOwners = new HashSet<>();
+                    newOwners.add(owner);
+                    continue;
+                }
+                minTime = Math.min(minTime, time);
+                if (best == null || time < bestTime || (time == bestTime && queue.getModified() < best.getModified())) {
+                    best = queue;
+                    bestTime = time;
+                }
+            }
+            ownerTime.keySet().retainAll(owners);
+            if (newOwners != null) {
+                // New owners start level with the least served owner, so they don't bank time while idle
+                double start = minTime == Double.MAX_VALUE ? 0 : minTime;
+                for (Object owner : newOwners) {
+                    ownerTime.put(owner, start);
+                }
+                if (best == null || start <= bestTime) {
+                    for (FaweQueue queue : activeQueues) {
+                        if (queue.size() > 0 && newOwners.contains(getOwner(queue))) {
+                            best = queue;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (best != null) {
+                best.setModified(now);
+                return best;
             }
         }
+        ownerTime.clear();
         int size = inactiveQueues.size();
         if (size > 0) {
             Iterator<FaweQueue> iter = inactiveQueues.iterator();
@@ -88,6 +88,10 @@ public class TextureUtil implements TextureHolder {
     protected int[] validMixBiomeColors;
     protected long[] validMixBiomeIds;
 
+    protected ColorIndex validColorIndex;
+    protected ColorIndex validLayerColorIndex;
+    protected ColorIndex validMixBiomeColorIndex;
+
     /**
      * https://github.com/erich666/Mineways/blob/master/Win/biomes.cpp
      */
@@ -365,24 +369,9 @@ public class TextureUtil implements TextureHolder {
     }
 
     public BaseBlock getNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) return null;
-        return FaweCache.CACHE_BLOCK[closest];
+        int index = validColorIndex.getNearest(color, false);
+        if (index == -1) return null;
+        return FaweCache.CACHE_BLOCK[validBlockIds[index]];
     }
 
     public BaseBlock getNearestBlock(BaseBlock block) {
@@ -392,24 +381,9 @@ public class TextureUtil implements TextureHolder {
     }
 
     public BaseBlock getNextNearestBlock(int color) {
-        long min = Long.MAX_VALUE;
-        int closest = 0;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validColors.length; i++) {
-            int other = validColors[i];
-            if (other != color && ((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validBlockIds[i];
-                }
-            }
-        }
-        if (min == Long.MAX_VALUE) return null;
-        return FaweCache.CACHE_BLOCK[closest];
+        int index = validColorIndex.getNearest(color, true);
+        if (index == -1) return null;
+        return FaweCache.CACHE_BLOCK[validBlockIds[index]];
     }
 
     /**
@@ -419,23 +393,9 @@ public class TextureUtil implements TextureHolder {
      * @return
      */
     public char[] getNearestLayer(int color) {
-        char[] closest = null;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validLayerColors.length; i++) {
-            int other = validLayerColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validLayerBlocks[i];
-                }
-            }
-        }
-        return closest;
+        int index = validLayerColorIndex.getNearest(color, false);
+        if (index == -1) return null;
+        return validLayerBlocks[index];
     }
 
     public BaseBlock getLighterBlock(BaseBlock block) {
@@ -469,21 +429,10 @@ public class TextureUtil implements TextureHolder {
     public int getBiomeMix(int[] biomeIdsOutput, int color) {
         long closest = Long.MAX_VALUE;
         int closestAverage = Integer.MAX_VALUE;
-        long min = Long.MAX_VALUE;
-        int red1 = (color >> 16) & 0xFF;
-        int green1 = (color >> 8) & 0xFF;
-        int blue1 = (color >> 0) & 0xFF;
-        int alpha = (color >> 24) & 0xFF;
-        for (int i = 0; i < validMixBiomeColors.length; i++) {
-            int other = validMixBiomeColors[i];
-            if (((other >> 24) & 0xFF) == alpha) {
-                long distance = colorDistance(red1, green1, blue1, other);
-                if (distance < min) {
-                    min = distance;
-                    closest = validMixBiomeIds[i];
-                    closestAverage = other;
-                }
-            }
+        int index = validMixBiomeColorIndex.getNearest(color, false);
+        if (index != -1) {
+            closest = validMixBiomeIds[index];
+            closestAverage = validMixBiomeColors[index];
         }
         biomeIdsOutput[0] = (int) ((closest >> 0) & 0xFF);
         biomeIdsOutput[1] = (int) ((closest >> 8) & 0xFF);
@@ -751,6 +700,7 @@ public class TextureUtil implements TextureHolder {
                                 validMixBiomeColors = new int[layerColors.size()];
                                 for (int i = 0; i < layerColors.size(); i++) validMixBiomeColors[i] = (int) layerColors.getLong(i);
                                 validMixBiomeIds = layerIds.toLongArray();
+                                validMixBiomeColorIndex = new ColorIndex(this, validMixBiomeColors);
                             }
                         }
 
@@ -876,6 +826,9 @@ public class TextureUtil implements TextureHolder {
             validLayerColors[index] = entry.getIntKey();
             validLayerBlocks[index++] = entry.getValue();
         }
+        // Every subclass calls this once its colors are set
+        this.validColorIndex = new ColorIndex(this, validColors);
+        this.validLayerColorIndex = new ColorIndex(this, validLayerColors);
     }
 
     protected BaseBlock getNearestBlock(BaseBlock block, boolean darker) {
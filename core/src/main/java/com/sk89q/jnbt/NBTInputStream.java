@@ -225,11 +225,16 @@ public final class NBTInputStream implements Closeable {
                 if (reader != null) {
                     reader.run(length, childType);
                 }
+                // Called before each element is read lazily (index, type), e.g. to group the children of a compound
+                RunnableVal2 elementReader = getReader.runAndGet(node + ".!", null).value2;
                 node += ".#";
                 reader = getReader.runAndGet(node, null).value2;
                 depth++;
                 if (reader == null) {
                     for (int i = 0; i < length; ++i) {
+                        if (elementReader != null) {
+                            elementReader.run(i, childType);
+                        }
                         readTagPaylodLazy(childType, depth, node, getReader);
                     }
                     return;
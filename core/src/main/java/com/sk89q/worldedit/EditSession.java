@@ -25,6 +25,8 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.example.MappedFaweQueue;
+import com.boydti.fawe.example.NMSMappedFaweQueue;
+import com.boydti.fawe.jnbt.anvil.HybridMCAQueue;
 import com.boydti.fawe.jnbt.anvil.MCAQueue;
 import com.boydti.fawe.jnbt.anvil.MCAWorld;
 import com.boydti.fawe.logging.LoggingChangeSet;
@@ -230,6 +232,13 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
                 queue = SetQueue.IMP.getNewQueue(world, placeChunks, autoQueue);
             }
         }
+        if (!(queue instanceof MCAQueue)) {
+            if (Settings.IMP.EXPERIMENTAL.ANVIL_QUEUE_MODE) {
+                queue = new MCAQueue(queue);
+            } else if (Settings.IMP.EXPERIMENTAL.HYBRID_ANVIL_QUEUE && queue instanceof NMSMappedFaweQueue && queue.getSaveFolder() != null) {
+                queue = new HybridMCAQueue((NMSMappedFaweQueue) queue);
+            }
+        }
         if (combineStages == null) {
             combineStages =
                     // If it's enabled in the settings
@@ -241,9 +250,6 @@ public class EditSession extends AbstractDelegateExtent implements HasFaweQueue,
                     // If the edit uses items from the inventory we can't use a delayed task
                     && this.blockBag == null;
         }
-        if (Settings.IMP.EXPERIMENTAL.ANVIL_QUEUE_MODE && !(queue instanceof MCAQueue)) {
-            queue = new MCAQueue(queue);
-        }
         this.queue = queue;
         this.queue.addEditSession(this);
         if (!Settings.IMP.QUEUE.PROGRESS.DISPLAY.equalsIgnoreCase("false") && player != null) {
@@ -20,9 +20,9 @@
 package com.sk89q.worldedit.extent.clipboard;
 
 import com.boydti.fawe.config.Settings;
-import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
 import com.boydti.fawe.object.clipboard.FaweClipboard;
 import com.boydti.fawe.object.clipboard.MemoryOptimizedClipboard;
+import com.boydti.fawe.object.clipboard.TiledDiskClipboard;
 import com.boydti.fawe.object.extent.LightingExtent;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.EditSession;
@@ -68,7 +68,7 @@ public class BlockArrayClipboard implements Clipboard, LightingExtent, Closeable
         checkNotNull(region);
         this.region = region.clone();
         this.size = getDimensions();
-        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? new DiskOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ()) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
+        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? new TiledDiskClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ()) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
         this.origin = region.getMinimumPoint();
         this.mx = origin.getBlockX();
         this.my = origin.getBlockY();
@@ -86,7 +86,7 @@ public class BlockArrayClipboard implements Clipboard, LightingExtent, Closeable
         checkNotNull(region);
         this.region = region.clone();
         this.size = getDimensions();
-        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? new DiskOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ(), clipboardId) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
+        this.IMP = Settings.IMP.CLIPBOARD.USE_DISK ? new TiledDiskClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ(), clipboardId) : new MemoryOptimizedClipboard(size.getBlockX(), size.getBlockY(), size.getBlockZ());
         this.origin = region.getMinimumPoint();
         this.mx = origin.getBlockX();
         this.my = origin.getBlockY();
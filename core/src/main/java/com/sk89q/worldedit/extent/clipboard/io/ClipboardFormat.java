@@ -207,7 +207,7 @@ public enum ClipboardFormat {
      * - 3: Includes BlockChange information
      * - O(1) Access to blocks if using compression level 0 and mode 0
      * <p>
-     * DiskOptimizedClipboard: compression/mode -> 0/0
+     * DiskOptimizedClipboard: compression/mode -> 0/0 (.bd files written by TiledDiskClipboard are not this format)
      * DiskStorageHistory: compression/mode -> Any/3
      * MemoryOptimizedHistory: compression/mode -> Any/3
      * FaweFormat: compression/mode -> Any/Any (slower)
@@ -239,12 +239,12 @@ public enum ClipboardFormat {
             return writer;
         }
 
-        public DiskOptimizedClipboard getUncompressedReadWrite(File file) throws IOException {
-            return new DiskOptimizedClipboard(file);
+        public FaweClipboard getUncompressedReadWrite(File file) throws IOException {
+            return TiledDiskClipboard.isTiled(file) ? new TiledDiskClipboard(file) : new DiskOptimizedClipboard(file);
         }
 
-        public DiskOptimizedClipboard createUncompressedReadWrite(int width, int height, int length, File file) {
-            return new DiskOptimizedClipboard(width, height, length, file);
+        public TiledDiskClipboard createUncompressedReadWrite(int width, int height, int length, File file) {
+            return new TiledDiskClipboard(width, height, length, file);
         }
     }),;
 
@@ -542,6 +542,9 @@ public enum ClipboardFormat {
     }
 
     public Schematic load(File file) throws IOException {
+        if (TiledDiskClipboard.isTiled(file)) {
+            return new Schematic(new TiledDiskClipboard(file).toClipboard());
+        }
         return load(new FileInputStream(file));
     }
 
@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.function.block;
 
+import com.boydti.fawe.object.function.ColumnRegionFunction;
+import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
@@ -31,10 +33,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * Replaces blocks with a given pattern.
  */
-public class BlockReplace implements RegionFunction {
+public class BlockReplace implements RegionFunction, ColumnRegionFunction {
 
     private final Extent extent;
     private Pattern pattern;
+    private final MutableBlockVector mutable = new MutableBlockVector();
 
     /**
      * Create a new instance.
@@ -58,6 +61,18 @@ public class BlockReplace implements RegionFunction {
         return pattern.apply(extent, position, position);
     }
 
+    @Override
+    public int apply(int x, int z, int minY, int maxY) throws WorldEditException {
+        int affected = 0;
+        for (int y = minY; y <= maxY; y++) {
+            mutable.setComponents(x, y, z);
+            if (pattern.apply(extent, mutable, mutable)) {
+                affected++;
+            }
+        }
+        return affected;
+    }
+
     public static Class<?> inject() {
         return BlockReplace.class;
     }
@@ -21,6 +21,7 @@ package com.sk89q.worldedit.function.operation;
 
 import com.boydti.fawe.example.MappedFaweQueue;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.clipboard.ParallelTransformPaste;
 import com.boydti.fawe.object.extent.BlockTranslateExtent;
 import com.boydti.fawe.object.extent.PositionTransformExtent;
 import com.boydti.fawe.object.function.block.BiomeCopy;
@@ -34,11 +35,13 @@ import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
 import com.sk89q.worldedit.function.CombinedRegionFunction;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.RegionMaskTestFunction;
 import com.sk89q.worldedit.function.RegionMaskingFilter;
 import com.sk89q.worldedit.function.entity.ExtentEntityCopy;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.Masks;
 import com.sk89q.worldedit.function.visitor.EntityVisitor;
@@ -272,7 +275,10 @@ public class ForwardExtentCopy implements Operation {
         Operation blockCopy = null;
         PositionTransformExtent transExt = null;
         if (!currentTransform.isIdentity()) {
-            if (!(currentTransform instanceof AffineTransform) || ((AffineTransform) currentTransform).isOffAxis()) {
+            if (currentTransform instanceof AffineTransform && repetitions == 1 && sourceFunction == null && filterFunction == null
+                    && (sourceMask == Masks.alwaysTrue() || sourceMask instanceof ExistingBlockMask) && ParallelTransformPaste.canPaste(source, region, (AffineTransform) currentTransform)) {
+                blockCopy = new ParallelTransformPaste((BlockTransformExtent) source, region, from, destination, to, (AffineTransform) currentTransform, sourceMask == Masks.alwaysTrue(), copyBiomes);
+            } else if (!(currentTransform instanceof AffineTransform) || ((AffineTransform) currentTransform).isOffAxis()) {
                 transExt = new PositionTransformExtent(source, currentTransform.inverse());
                 transExt.setOrigin(from);
                 copy = new SimpleBlockCopy(transExt, finalDest);
@@ -6,19 +6,29 @@ import com.boydti.fawe.example.MappedFaweQueue;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.HasFaweQueue;
 import com.boydti.fawe.object.IntegerTrio;
+import com.boydti.fawe.object.collection.BlockBitSet;
 import com.boydti.fawe.object.collection.BlockVectorSet;
+import com.boydti.fawe.object.collection.ChunkBucketQueue;
+import com.boydti.fawe.object.collection.LongRingBuffer;
+import com.boydti.fawe.util.MathMan;
 import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public abstract class BreadthFirstSearch implements Operation {
 
@@ -56,13 +66,15 @@ public abstract class BreadthFirstSearch implements Operation {
 
     private final RegionFunction function;
     private List<Vector> directions = new ArrayList<>();
-    private BlockVectorSet visited;
+    private final BlockBitSet visited;
+    private BlockVectorSet visitedSet;
     private final MappedFaweQueue mFaweQueue;
-    private BlockVectorSet queue;
+    private ChunkBucketQueue queue;
     private int currentDepth = 0;
     private final int maxDepth;
     private int affected = 0;
     private int maxBranch = Integer.MAX_VALUE;
+    private boolean parallel;
 
     public BreadthFirstSearch(final RegionFunction function) {
         this(function, Integer.MAX_VALUE);
@@ -75,8 +87,8 @@ public abstract class BreadthFirstSearch implements Operation {
     public BreadthFirstSearch(final RegionFunction function, int maxDepth, HasFaweQueue faweQueue) {
         FaweQueue fq = faweQueue != null ? faweQueue.getQueue() : null;
         this.mFaweQueue = fq instanceof MappedFaweQueue ? (MappedFaweQueue) fq : null;
-        this.queue = new BlockVectorSet();
-        this.visited = new BlockVectorSet();
+        this.queue = new ChunkBucketQueue();
+        this.visited = new BlockBitSet();
         this.function = function;
         this.directions.addAll(Arrays.asList(DEFAULT_DIRECTIONS));
         this.maxDepth = maxDepth;
@@ -102,100 +114,291 @@ public abstract class BreadthFirstSearch implements Operation {
     }
 
     public void visit(final Vector pos) {
-        if (!isVisited(pos)) {
+        int x = pos.getBlockX();
+        int y = pos.getBlockY();
+        int z = pos.getBlockZ();
+        if (y >= 0 && y < 256 && !isVisited(x, y, z)) {
             isVisitable(pos, pos); // Ignore this, just to initialize mask on this point
-            queue.add(pos);
-            visited.add(pos);
+            queue.add(x, y, z);
+            addVisited(x, y, z);
         }
     }
 
     public void resetVisited() {
         queue.clear();
         visited.clear();
+        if (visitedSet != null) {
+            visitedSet.clear();
+        }
         affected = 0;
     }
 
+    /**
+     * Use a set to store the visited positions (instead of the internal bitset)
+     *
+     * @param set
+     */
     public void setVisited(BlockVectorSet set) {
-        this.visited = set;
+        this.visitedSet = set;
+        this.visited.clear();
     }
 
+    /**
+     * Get the visited positions<br>
+     * - Returns a copy, unless a set was provided with {@link #setVisited(BlockVectorSet)}
+     *
+     * @return
+     */
     public BlockVectorSet getVisited() {
-        return visited;
+        if (visitedSet != null) {
+            return visitedSet;
+        }
+        BlockVectorSet set = new BlockVectorSet();
+        visited.addTo(set);
+        return set;
     }
 
     public boolean isVisited(Vector pos) {
-        return visited.contains(pos);
+        int y = pos.getBlockY();
+        return y >= 0 && y < 256 && isVisited(pos.getBlockX(), y, pos.getBlockZ());
+    }
+
+    private boolean isVisited(int x, int y, int z) {
+        return visitedSet != null ? visitedSet.contains(x, y, z) : visited.contains(x, y, z);
+    }
+
+    private void addVisited(int x, int y, int z) {
+        if (visitedSet != null) {
+            visitedSet.add(x, y, z);
+        } else {
+            visited.add(x, y, z);
+        }
     }
 
     public void setMaxBranch(int maxBranch) {
         this.maxBranch = maxBranch;
     }
 
+    /**
+     * Visit each layer in parallel<br>
+     * - The layer is split by chunk, and isVisitable is called concurrently<br>
+     * - Only use this if isVisitable is thread safe (e.g. it doesn't read through an EditSession / FaweQueue)<br>
+     * - The function is still applied on the calling thread, in the same order every run<br>
+     * - The visited positions are the same as a serial search (unless isVisitable depends on the from position)<br>
+     * - Ignored if a visited set was provided with {@link #setVisited(BlockVectorSet)}
+     *
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
         MutableBlockVector mutable = new MutableBlockVector();
         MutableBlockVector mutable2 = new MutableBlockVector();
-        boolean shouldTrim = false;
         IntegerTrio[] dirs = getIntDirections();
-        BlockVectorSet tempQueue = new BlockVectorSet();
-        BlockVectorSet chunkLoadSet = new BlockVectorSet();
+        ChunkBucketQueue tempQueue = new ChunkBucketQueue();
+        LongOpenHashSet chunkLoadSet = new LongOpenHashSet();
+        if (parallel && visitedSet == null) {
+            return resumeParallel(dirs, chunkLoadSet);
+        }
         for (currentDepth = 0; !queue.isEmpty() && currentDepth <= maxDepth; currentDepth++) {
-            if (mFaweQueue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
+            long[] chunks = queue.getChunks();
+            preload(chunks, dirs, chunkLoadSet);
+            for (long chunk : chunks) {
+                LongRingBuffer bucket = queue.getBucket(chunk);
+                for (int n = 0, size = bucket.size(); n < size; n++) {
+                    long node = bucket.get(n);
+                    int fx = (int) MathMan.untripleWorldCoordX(node);
+                    int fy = (int) MathMan.untripleWorldCoordY(node);
+                    int fz = (int) MathMan.untripleWorldCoordZ(node);
+                    Vector from = mutable.setComponents(fx, fy, fz);
+                    if (function.apply(from)) affected++;
+                    for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i++) {
+                        IntegerTrio direction = dirs[i];
+                        int y = fy + direction.y;
+                        if (y < 0 || y >= 256) {
+                            continue;
+                        }
+                        int x = fx + direction.x;
+                        int z = fz + direction.z;
+                        if (!isVisited(x, y, z)) {
+                            mutable2.mutX(x);
+                            mutable2.mutY(y);
+                            mutable2.mutZ(z);
+                            if (isVisitable(from, mutable2)) {
+                                j++;
+                                addVisited(x, y, z);
+                                tempQueue.add(x, y, z);
+                            }
+                        }
+                    }
+                }
+            }
+            if (currentDepth == maxDepth) {
+                break;
+            }
+            ChunkBucketQueue tmp = queue;
+            queue = tempQueue;
+            tmp.clear();
+            chunkLoadSet.clear();
+            tempQueue = tmp;
+        }
+        return null;
+    }
+
+    private void preload(long[] chunks, IntegerTrio[] dirs, LongOpenHashSet chunkLoadSet) {
+        if (mFaweQueue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
+            for (long chunk : chunks) {
+                LongRingBuffer bucket = queue.getBucket(chunk);
                 int cx = Integer.MIN_VALUE;
                 int cz = Integer.MIN_VALUE;
-                for (Vector from : queue) {
+                for (int n = 0, size = bucket.size(); n < size; n++) {
+                    long node = bucket.get(n);
+                    int fx = (int) MathMan.untripleWorldCoordX(node);
+                    int fy = (int) MathMan.untripleWorldCoordY(node);
+                    int fz = (int) MathMan.untripleWorldCoordZ(node);
                     for (IntegerTrio direction : dirs) {
-                        int x = from.getBlockX() + direction.x;
-                        int z = from.getBlockZ() + direction.z;
+                        int x = fx + direction.x;
+                        int z = fz + direction.z;
                         if (cx != (cx = x >> 4) || cz != (cz = z >> 4)) {
-                            int y = from.getBlockY() + direction.y;
+                            int y = fy + direction.y;
                             if (y < 0 || y >= 256) {
                                 continue;
                             }
-                            if (!visited.contains(x, y, z)) {
-                                chunkLoadSet.add(cx, 0, cz);
+                            if (!isVisited(x, y, z)) {
+                                chunkLoadSet.add(MathMan.pairInt(cx, cz));
+                            }
+                        }
+                    }
+                }
+            }
+            for (LongIterator iter = chunkLoadSet.iterator(); iter.hasNext(); ) {
+                long chunk = iter.nextLong();
+                mFaweQueue.queueChunkLoad(MathMan.unpairIntX(chunk), MathMan.unpairIntY(chunk));
+            }
+        }
+    }
+
+    /**
+     * Level synchronous search:<br>
+     * - The function is applied to the layer on this thread, in chunk order<br>
+     * - The layer is then partitioned by chunk, and the neighbors are checked on the ForkJoin pool<br>
+     * - Workers only read the visited set (it is only modified on this thread while no worker is running)<br>
+     * - The candidates are merged (and de-duplicated) on this thread in partition order, so the next layer is the same every run
+     */
+    private Operation resumeParallel(final IntegerTrio[] dirs, LongOpenHashSet chunkLoadSet) throws WorldEditException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        MutableBlockVector mutable = new MutableBlockVector();
+        ArrayList<Future<ChunkBucketQueue>> futures = new ArrayList<>();
+        ChunkBucketQueue nextQueue = new ChunkBucketQueue();
+        for (currentDepth = 0; !queue.isEmpty() && currentDepth <= maxDepth; currentDepth++) {
+            final long[] chunks = queue.getChunks();
+            preload(chunks, dirs, chunkLoadSet);
+            chunkLoadSet.clear();
+            for (long chunk : chunks) {
+                LongRingBuffer bucket = queue.getBucket(chunk);
+                for (int n = 0, size = bucket.size(); n < size; n++) {
+                    long node = bucket.get(n);
+                    mutable.setComponents((int) MathMan.untripleWorldCoordX(node), (int) MathMan.untripleWorldCoordY(node), (int) MathMan.untripleWorldCoordZ(node));
+                    if (function.apply(mutable)) affected++;
+                }
+            }
+            int parts = Math.min(chunks.length, pool.getParallelism() << 2);
+            for (int part = 0; part < parts; part++) {
+                final int start = (int) ((long) chunks.length * part / parts);
+                final int end = (int) ((long) chunks.length * (part + 1) / parts);
+                futures.add(pool.submit(new Callable<ChunkBucketQueue>() {
+                    @Override
+                    public ChunkBucketQueue call() throws Exception {
+                        return visitChunks(chunks, start, end, dirs);
+                    }
+                }));
+            }
+            try {
+                // Wait for the whole layer first, as the workers read the visited set
+                ChunkBucketQueue[] results = new ChunkBucketQueue[futures.size()];
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = futures.get(i).get();
+                }
+                for (ChunkBucketQueue candidates : results) {
+                    for (long chunk : candidates.getChunks()) {
+                        LongRingBuffer bucket = candidates.getBucket(chunk);
+                        for (int n = 0, size = bucket.size(); n < size; n++) {
+                            long node = bucket.get(n);
+                            int x = (int) MathMan.untripleWorldCoordX(node);
+                            int y = (int) MathMan.untripleWorldCoordY(node);
+                            int z = (int) MathMan.untripleWorldCoordZ(node);
+                            if (visited.add(x, y, z)) {
+                                nextQueue.add(x, y, z);
                             }
                         }
                     }
                 }
-                for (Vector chunk : chunkLoadSet) {
-                    mFaweQueue.queueChunkLoad(chunk.getBlockX(), chunk.getBlockZ());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof WorldEditException) {
+                    throw (WorldEditException) cause;
                 }
+                throw new RuntimeException(cause);
+            } finally {
+                for (Future<ChunkBucketQueue> future : futures) {
+                    future.cancel(false);
+                }
+                futures.clear();
+            }
+            if (currentDepth == maxDepth) {
+                break;
             }
-            for (Vector from : queue) {
-                if (function.apply(from)) affected++;
+            ChunkBucketQueue tmp = queue;
+            queue = nextQueue;
+            tmp.clear();
+            nextQueue = tmp;
+        }
+        return null;
+    }
+
+    private ChunkBucketQueue visitChunks(long[] chunks, int start, int end, IntegerTrio[] dirs) throws WorldEditException {
+        MutableBlockVector mutable = new MutableBlockVector();
+        MutableBlockVector mutable2 = new MutableBlockVector();
+        ChunkBucketQueue candidates = new ChunkBucketQueue();
+        for (int c = start; c < end; c++) {
+            LongRingBuffer bucket = queue.getBucket(chunks[c]);
+            for (int n = 0, size = bucket.size(); n < size; n++) {
+                long node = bucket.get(n);
+                int fx = (int) MathMan.untripleWorldCoordX(node);
+                int fy = (int) MathMan.untripleWorldCoordY(node);
+                int fz = (int) MathMan.untripleWorldCoordZ(node);
+                Vector from = mutable.setComponents(fx, fy, fz);
                 for (int i = 0, j = 0; i < dirs.length && j < maxBranch; i++) {
                     IntegerTrio direction = dirs[i];
-                    int y = from.getBlockY() + direction.y;
+                    int y = fy + direction.y;
                     if (y < 0 || y >= 256) {
                         continue;
                     }
-                    int x = from.getBlockX() + direction.x;
-                    int z = from.getBlockZ() + direction.z;
-                    if (!visited.contains(x, y, z)) {
+                    int x = fx + direction.x;
+                    int z = fz + direction.z;
+                    if (!visited.containsConcurrent(x, y, z)) {
                         mutable2.mutX(x);
                         mutable2.mutY(y);
                         mutable2.mutZ(z);
                         if (isVisitable(from, mutable2)) {
                             j++;
-                            visited.add(x, y, z);
-                            tempQueue.add(x, y, z);
+                            candidates.add(x, y, z);
                         }
                     }
                 }
             }
-            if (currentDepth == maxDepth) {
-                break;
-            }
-            int size = queue.size();
-            BlockVectorSet tmp = queue;
-            queue = tempQueue;
-            tmp.clear();
-            chunkLoadSet.clear();
-            tempQueue = tmp;
-
         }
-        return null;
+        return candidates;
     }
 
     public int getDepth() {
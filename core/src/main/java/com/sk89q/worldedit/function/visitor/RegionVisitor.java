@@ -25,15 +25,24 @@ import com.boydti.fawe.example.MappedFaweQueue;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.HasFaweQueue;
 import com.boydti.fawe.object.exception.FaweException;
+import com.boydti.fawe.object.function.ColumnRegionFunction;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MutableBlockVector;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
 import com.sk89q.worldedit.regions.Region;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -86,7 +95,9 @@ public class RegionVisitor implements Operation {
 
     @Override
     public Operation resume(final RunContext run) throws WorldEditException {
-        if (queue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
+        if (isColumnRegion()) {
+            resumeChunks();
+        } else if (queue != null && Settings.IMP.QUEUE.PRELOAD_CHUNKS > 1) {
             /*
              * The following is done to reduce iteration cost
              *  - Preload chunks just in time
@@ -183,6 +194,75 @@ public class RegionVisitor implements Operation {
         return null;
     }
 
+    /**
+     * If the region can be visited chunk by chunk:<br>
+     * - getChunks() must be exact<br>
+     * - The blocks in each column must be contiguous
+     */
+    private boolean isColumnRegion() {
+        return region != null && iterable == region && (region instanceof EllipsoidRegion || region instanceof CylinderRegion || region instanceof Polygonal2DRegion);
+    }
+
+    /**
+     * Visit the region one chunk at a time:<br>
+     * - Chunks are preloaded ahead of the chunk being visited<br>
+     * - Each in-region column is passed to the function at once if it is a {@link ColumnRegionFunction}
+     */
+    private void resumeChunks() throws WorldEditException {
+        List<Vector2D> chunks = new ArrayList<>(region.getChunks());
+        Collections.sort(chunks, new Comparator<Vector2D>() {
+            @Override
+            public int compare(Vector2D a, Vector2D b) {
+                int cmp = Integer.compare(a.getBlockX(), b.getBlockX());
+                return cmp != 0 ? cmp : Integer.compare(a.getBlockZ(), b.getBlockZ());
+            }
+        });
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        int minY = min.getBlockY();
+        int maxY = max.getBlockY();
+        ColumnRegionFunction columnFunction = function instanceof ColumnRegionFunction ? (ColumnRegionFunction) function : null;
+        MutableBlockVector mutable = new MutableBlockVector();
+        int loadingTarget = queue != null ? Settings.IMP.QUEUE.PRELOAD_CHUNKS : 0;
+        int loaded = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            int target = Math.min(chunks.size(), i + loadingTarget);
+            for (; loaded < target; loaded++) {
+                Vector2D chunk = chunks.get(loaded);
+                queue.queueChunkLoad(chunk.getBlockX(), chunk.getBlockZ());
+            }
+            Vector2D chunk = chunks.get(i);
+            int bx = chunk.getBlockX() << 4;
+            int bz = chunk.getBlockZ() << 4;
+            int x1 = Math.max(min.getBlockX(), bx);
+            int x2 = Math.min(max.getBlockX(), bx + 15);
+            int z1 = Math.max(min.getBlockZ(), bz);
+            int z2 = Math.min(max.getBlockZ(), bz + 15);
+            for (int x = x1; x <= x2; x++) {
+                for (int z = z1; z <= z2; z++) {
+                    int y1 = minY;
+                    while (y1 <= maxY && !region.contains(x, y1, z)) {
+                        y1++;
+                    }
+                    if (y1 > maxY) {
+                        continue;
+                    }
+                    int y2 = maxY;
+                    while (!region.contains(x, y2, z)) {
+                        y2--;
+                    }
+                    if (columnFunction != null) {
+                        affected += columnFunction.apply(x, z, y1, y2);
+                    } else {
+                        for (int y = y1; y <= y2; y++) {
+                            apply(mutable.setComponents(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     private void apply(Vector pt) throws WorldEditException {
         if (function.apply(pt)) {
             affected++;
@@ -19,6 +19,9 @@
 
 package com.sk89q.worldedit.internal.expression;
 
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.expression.CompiledExpression;
+import com.boydti.fawe.object.expression.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
@@ -78,6 +81,7 @@ public class Expression {
     private final String[] variableNames;
     private Variable[] variableArray;
     private RValue root;
+    private CompiledExpression compiled;
     private final Functions functions = new Functions();
     private ExpressionEnvironment environment;
 
@@ -125,6 +129,9 @@ public class Expression {
         }
         pushInstance();
         try {
+            if (compiled != null) {
+                return compiled.evaluate();
+            }
             return root.getValue();
         } catch (ReturnException e) {
             return e.getValue();
@@ -139,6 +146,7 @@ public class Expression {
 
     public void optimize() throws EvaluationException {
         root = root.optimize();
+        compiled = Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS ? ExpressionCompiler.compile(root) : null;
     }
 
     @Override
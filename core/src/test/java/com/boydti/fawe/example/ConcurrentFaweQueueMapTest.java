@@ -0,0 +1,84 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.FaweChunk;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentFaweQueueMapTest {
+
+    private static final int WRITERS = 4;
+    private static final int SIZE = 64;
+
+    @Test
+    public void concurrentWritersKeepEveryBlock() throws Exception {
+        final MemoryNMSQueue queue = new MemoryNMSQueue("world", null);
+        queue.setConcurrent();
+        assertTrue(queue.isConcurrent());
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                final int writer = i;
+                futures.add(pool.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        // Every writer touches every chunk, each on its own layer
+                        for (int x = 0; x < SIZE; x++) {
+                            for (int z = 0; z < SIZE; z++) {
+                                queue.setBlock(x, writer, z, 1 + writer, 0);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        IFaweQueueMap map = queue.getFaweQueueMap();
+        assertEquals((SIZE >> 4) * (SIZE >> 4), map.size());
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                FaweChunk chunk = map.getCachedFaweChunk(x >> 4, z >> 4);
+                assertNotNull(chunk);
+                for (int y = 0; y < WRITERS; y++) {
+                    assertEquals((1 + y) << 4, chunk.getBlockCombinedId(x & 15, y, z & 15));
+                }
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void rejectsSpillingMap() {
+        boolean spill = Settings.IMP.QUEUE.SPILL_TO_DISK;
+        Settings.IMP.QUEUE.SPILL_TO_DISK = true;
+        MemoryNMSQueue queue;
+        try {
+            queue = new MemoryNMSQueue("world", null);
+        } finally {
+            Settings.IMP.QUEUE.SPILL_TO_DISK = spill;
+        }
+        assertTrue(queue.getFaweQueueMap() instanceof SpillingFaweQueueMap);
+        queue.setConcurrent();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsQueuedChunks() {
+        MemoryNMSQueue queue = new MemoryNMSQueue("world", null);
+        queue.setBlock(0, 0, 0, 1, 0);
+        queue.setConcurrent();
+    }
+}
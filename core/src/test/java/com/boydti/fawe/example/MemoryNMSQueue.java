@@ -0,0 +1,245 @@
+package com.boydti.fawe.example;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An NMS queue whose world is a map of char[][] sections on the heap<br>
+ * - Only chunks which have a block set through {@link #setWorldBlock} (or are placed by the queue) are loaded<br>
+ * - Lighting and packets are ignored
+ */
+public class MemoryNMSQueue extends NMSMappedFaweQueue<MemoryNMSQueue, char[][], char[][], char[]> {
+
+    private final Long2ObjectOpenHashMap<char[][]> chunks = new Long2ObjectOpenHashMap<>();
+    private final File saveFolder;
+
+    public MemoryNMSQueue(String world, File saveFolder) {
+        super(world);
+        this.saveFolder = saveFolder;
+    }
+
+    /**
+     * Set a block in the world directly (loading the chunk), bypassing the queue
+     */
+    public void setWorldBlock(int x, int y, int z, int combined) {
+        char[][] sections = loadChunk(this, x >> 4, z >> 4, true);
+        char[] section = sections[y >> 4];
+        if (section == null) {
+            section = sections[y >> 4] = new char[4096];
+        }
+        section[FaweCache.CACHE_J[y][z & 15][x & 15]] = (char) combined;
+    }
+
+    public boolean isLoaded(int cx, int cz) {
+        return getCachedChunk(this, cx, cz) != null;
+    }
+
+    @Override
+    public MemoryNMSQueue getImpWorld() {
+        return this;
+    }
+
+    @Override
+    public boolean regenerateChunk(MemoryNMSQueue world, int x, int z, BaseBiome biome, Long seed) {
+        synchronized (chunks) {
+            chunks.remove(MathMan.pairInt(x, z));
+        }
+        return true;
+    }
+
+    @Override
+    public FaweChunk getFaweChunk(int x, int z) {
+        return new MemoryChunk(this, x, z);
+    }
+
+    @Override
+    public char[][] loadChunk(MemoryNMSQueue world, int x, int z, boolean generate) {
+        long pair = MathMan.pairInt(x, z);
+        synchronized (chunks) {
+            char[][] chunk = chunks.get(pair);
+            if (chunk == null && generate) {
+                chunk = new char[FaweChunk.HEIGHT >> 4][];
+                chunks.put(pair, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    @Override
+    public char[][] getSections(char[][] chunk) {
+        return chunk;
+    }
+
+    @Override
+    public char[][] getCachedSections(MemoryNMSQueue world, int cx, int cz) {
+        return getCachedChunk(world, cx, cz);
+    }
+
+    @Override
+    public char[][] getCachedChunk(MemoryNMSQueue world, int cx, int cz) {
+        return loadChunk(world, cx, cz, false);
+    }
+
+    @Override
+    public char[] getCachedSection(char[][] sections, int cy) {
+        return sections[cy];
+    }
+
+    @Override
+    public int getCombinedId4Data(char[] section, int x, int y, int z) {
+        return section[FaweCache.CACHE_J[y][z & 15][x & 15]];
+    }
+
+    @Override
+    public int getBiome(char[][] chunk, int x, int z) {
+        return 0;
+    }
+
+    @Override
+    public CompoundTag getTileEntity(char[][] chunk, int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public int getSkyLight(char[] sections, int x, int y, int z) {
+        return 15;
+    }
+
+    @Override
+    public int getEmmittedLight(char[] sections, int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public boolean hasSky() {
+        return true;
+    }
+
+    @Override
+    public File getSaveFolder() {
+        return saveFolder;
+    }
+
+    @Override
+    public void setHeightMap(FaweChunk chunk, byte[] heightMap) {
+    }
+
+    @Override
+    public void setFullbright(char[][] sections) {
+    }
+
+    @Override
+    public boolean removeSectionLighting(char[] sections, int layer, boolean hasSky) {
+        return false;
+    }
+
+    @Override
+    public void relight(int x, int y, int z) {
+    }
+
+    @Override
+    public void relightBlock(int x, int y, int z) {
+    }
+
+    @Override
+    public void relightSky(int x, int y, int z) {
+    }
+
+    @Override
+    public void setSkyLight(char[] section, int x, int y, int z, int value) {
+    }
+
+    @Override
+    public void setBlockLight(char[] section, int x, int y, int z, int value) {
+    }
+
+    @Override
+    public void refreshChunk(FaweChunk fs) {
+    }
+
+    @Override
+    public CharFaweChunk getPrevious(CharFaweChunk fs, char[][] sections, Map<?, ?> tiles, Collection<?>[] entities, Set<UUID> createdEntities, boolean all) throws Exception {
+        return null;
+    }
+
+    @Override
+    public void sendBlockUpdate(FaweChunk chunk, FawePlayer... players) {
+    }
+
+    @Override
+    public void sendChunk(FaweChunk chunk) {
+    }
+
+    @Override
+    public void sendChunk(int x, int z, int bitMask) {
+    }
+
+    public static class MemoryChunk extends CharFaweChunk<char[][], MemoryNMSQueue> {
+
+        public MemoryChunk(MemoryNMSQueue parent, int x, int z) {
+            super(parent, x, z);
+        }
+
+        public MemoryChunk(MemoryNMSQueue parent, int x, int z, char[][] ids, short[] count, short[] air, byte[] heightMap) {
+            super(parent, x, z, ids, count, air, heightMap);
+        }
+
+        @Override
+        public char[][] getNewChunk() {
+            MemoryNMSQueue parent = getParent();
+            return parent.loadChunk(parent, getX(), getZ(), true);
+        }
+
+        @Override
+        public CharFaweChunk<char[][], MemoryNMSQueue> copy(boolean shallow) {
+            MemoryChunk copy;
+            if (shallow) {
+                copy = new MemoryChunk(getParent(), getX(), getZ(), inflate(), count, air, heightMap);
+                copy.biomes = biomes;
+            } else {
+                copy = new MemoryChunk(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone());
+                copy.biomes = biomes != null ? biomes.clone() : null;
+            }
+            return copy;
+        }
+
+        @Override
+        public FaweChunk call() {
+            char[][] sections = getChunk();
+            char[][] ids = inflate();
+            for (int layer = 0; layer < ids.length; layer++) {
+                char[] newArray = ids[layer];
+                if (newArray == null) {
+                    continue;
+                }
+                char[] currentArray = sections[layer];
+                if (currentArray == null) {
+                    currentArray = sections[layer] = new char[4096];
+                }
+                for (int j = 0; j < newArray.length; j++) {
+                    switch (newArray[j]) {
+                        case 0:
+                            continue;
+                        case 1:
+                            currentArray[j] = 0;
+                            continue;
+                        default:
+                            currentArray[j] = newArray[j];
+                    }
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.boydti.fawe.jnbt.anvil;
+
+import com.boydti.fawe.example.MemoryNMSQueue;
+import com.boydti.fawe.object.FaweChunk;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HybridMCAQueueTest {
+
+    private static final int STONE = 1 << 4;
+    private static final int GRASS = 2 << 4;
+    private static final int DIRT = 3 << 4;
+    private static final int COBBLE = 4 << 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File regionFolder;
+    private MemoryNMSQueue parent;
+    private HybridMCAQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        regionFolder = folder.newFolder("region");
+        parent = new MemoryNMSQueue("world", regionFolder);
+        // Chunk 32,0 is only on disk (stone), chunk 0,0 is only loaded (grass)
+        MCAFile file = newRegion(1, 0);
+        MCAChunk chunk = new MCAChunk(parent, 32, 0);
+        chunk.setBlock(0, 10, 0, 1, 0);
+        file.setChunk(chunk);
+        file.close(ForkJoinPool.commonPool());
+        parent.setWorldBlock(0, 10, 0, GRASS);
+        queue = new HybridMCAQueue(parent);
+    }
+
+    private MCAFile newRegion(int mcaX, int mcaZ) throws Exception {
+        File file = new File(regionFolder, "r." + mcaX + "." + mcaZ + ".mca");
+        file.createNewFile();
+        MCAFile mca = new MCAFile(parent, mcaX, mcaZ, file);
+        mca.init();
+        return mca;
+    }
+
+    @Test
+    public void routing() {
+        // Not in the region cache: loaded chunks go to the parent
+        assertTrue(MCAQueueMap.isParentChunk(false, true));
+        assertFalse(MCAQueueMap.isParentChunk(false, false));
+        // Already in the region cache: stays with the region file
+        assertFalse(MCAQueueMap.isParentChunk(true, true));
+        assertFalse(MCAQueueMap.isParentChunk(true, false));
+    }
+
+    @Test
+    public void loadedChunkIsPlacedThroughParent() {
+        FaweChunk chunk = queue.getFaweChunk(0, 0);
+        assertFalse(chunk instanceof MCAChunk);
+        assertSame(chunk, parent.getFaweQueueMap().getCachedFaweChunk(0, 0));
+    }
+
+    @Test
+    public void unloadedChunkIsPlacedInRegion() {
+        FaweChunk chunk = queue.getFaweChunk(32, 0);
+        assertTrue(chunk instanceof MCAChunk);
+        assertNull(parent.getFaweQueueMap().getCachedFaweChunk(32, 0));
+        assertFalse(parent.isLoaded(32, 0));
+    }
+
+    @Test
+    public void chunkStaysWithRegionOnceAccessed() {
+        FaweChunk chunk = queue.getFaweChunk(32, 0);
+        // The server loads the chunk while the edit is running
+        parent.setWorldBlock(512, 10, 0, DIRT);
+        queue.getFaweChunk(0, 0);
+        assertSame(chunk, queue.getFaweChunk(32, 0));
+        assertNull(parent.getFaweQueueMap().getCachedFaweChunk(32, 0));
+    }
+
+    @Test
+    public void historyOfRoutedChunk() {
+        // The previous block is read from the world, and the change is queued in the parent queue
+        assertEquals(GRASS, queue.getCombinedId4Data(0, 10, 0));
+        queue.setBlock(0, 10, 0, 4, 0);
+        assertEquals(GRASS, queue.getCombinedId4Data(0, 10, 0));
+        assertEquals(COBBLE, parent.getFaweQueueMap().getCachedFaweChunk(0, 0).getBlockCombinedId(0, 10, 0));
+        assertNull(((MCAQueueMap) queue.getFaweQueueMap()).getCachedFaweChunk(0, 0));
+        assertFalse(new File(regionFolder, "r.0.0.mca").exists());
+    }
+
+    @Test
+    public void historyOfRegionChunk() throws Exception {
+        // The previous block is read from the region file, and the change is written back to it
+        assertEquals(STONE, queue.getCombinedId4Data(512, 10, 0));
+        queue.setBlock(512, 10, 0, 4, 0);
+        assertEquals(COBBLE, queue.getCombinedId4Data(512, 10, 0));
+        assertNull(parent.getFaweQueueMap().getCachedFaweChunk(32, 0));
+        ((MCAQueueMap) queue.getFaweQueueMap()).getMCAFile(32, 0, false).close(ForkJoinPool.commonPool());
+        MCAFile file = newRegion(1, 0);
+        assertEquals(COBBLE, file.readChunk(32, 0).getBlockCombinedId(0, 10, 0));
+    }
+
+    @Test
+    public void flushKeepsChunksSavedAfterInit() throws Exception {
+        MCAFile file = newRegion(1, 0);
+        MCAChunk chunk = file.getChunk(32, 0);
+        // The server saves chunk 33,0 in place after the header was read (a copy of 32,0 in a new sector)
+        try (RandomAccessFile raf = new RandomAccessFile(file.getFile(), "rw")) {
+            raf.seek(0);
+            int location = raf.readInt();
+            int offset = (location >>> 8) << 12;
+            int size = (location & 0xFF) << 12;
+            byte[] sectors = new byte[size];
+            raf.seek(offset);
+            raf.readFully(sectors);
+            long end = raf.length();
+            raf.seek(end);
+            raf.write(sectors);
+            raf.seek(4);
+            raf.writeInt((int) ((end >> 12) << 8) | (size >> 12));
+        }
+        chunk.setBlock(0, 10, 0, 4, 0);
+        file.close(ForkJoinPool.commonPool());
+
+        MCAFile written = newRegion(1, 0);
+        assertEquals(COBBLE, written.readChunk(32, 0).getBlockCombinedId(0, 10, 0));
+        MCAChunk saved = written.readChunk(33, 0);
+        assertNotNull(saved);
+        assertEquals(STONE, saved.getBlockCombinedId(0, 10, 0));
+    }
+}
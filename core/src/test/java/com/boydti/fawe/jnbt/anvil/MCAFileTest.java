@@ -0,0 +1,112 @@
+package com.boydti.fawe.jnbt.anvil;
+
+import com.boydti.fawe.example.MemoryNMSQueue;
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MCAFileTest {
+
+    private static final int STONE = 1 << 4;
+    private static final int COBBLE = 4 << 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File regionFolder;
+    private MemoryNMSQueue parent;
+
+    @Before
+    public void setUp() throws Exception {
+        regionFolder = folder.newFolder("region");
+        parent = new MemoryNMSQueue("world", regionFolder);
+        MCAFile file = newRegion();
+        MCAChunk chunk = new MCAChunk(parent, 32, 0);
+        chunk.setBlock(0, 10, 0, 1, 0);
+        file.setChunk(chunk);
+        file.close(ForkJoinPool.commonPool());
+    }
+
+    private MCAFile newRegion() throws Exception {
+        File file = new File(regionFolder, "r.1.0.mca");
+        file.createNewFile();
+        MCAFile mca = new MCAFile(parent, 1, 0, file);
+        mca.init();
+        return mca;
+    }
+
+    @Test
+    public void oversizedChunkKeepsSavedVersion() throws Exception {
+        MCAFile file = newRegion();
+        MCAChunk chunk = file.getChunk(32, 0);
+        chunk.setBlock(0, 10, 0, 4, 0);
+        // Random bytes don't compress, so the chunk needs more than 255 sectors
+        byte[] noise = new byte[1 << 21];
+        new Random(0).nextBytes(noise);
+        Map<String, Tag> map = new HashMap<>();
+        map.put("Data", new ByteArrayTag(noise));
+        chunk.setTile(0, 10, 0, new CompoundTag(map));
+        MCAChunk other = new MCAChunk(parent, 33, 0);
+        other.setBlock(0, 10, 0, 4, 0);
+        file.setChunk(other);
+        file.close(ForkJoinPool.commonPool());
+
+        MCAFile written = newRegion();
+        MCAChunk saved = written.readChunk(32, 0);
+        assertEquals(STONE, saved.getBlockCombinedId(0, 10, 0));
+        assertNull(saved.getTile(0, 10, 0));
+        assertEquals(COBBLE, written.readChunk(33, 0).getBlockCombinedId(0, 10, 0));
+    }
+
+    @Test
+    public void failedChunkKeepsSavedVersion() throws Exception {
+        MCAFile file = newRegion();
+        MCAChunk failing = new MCAChunk(parent, 32, 0) {
+            @Override
+            public byte[] toBytes(byte[] buffer) throws IOException {
+                throw new IOException("Expected");
+            }
+        };
+        failing.setBlock(0, 10, 0, 4, 0);
+        file.setChunk(failing);
+        file.close(ForkJoinPool.commonPool());
+
+        assertEquals(STONE, newRegion().readChunk(32, 0).getBlockCombinedId(0, 10, 0));
+    }
+
+    @Test
+    public void readAfterFlush() throws Exception {
+        MCAFile file = newRegion();
+        MCAChunk other = new MCAChunk(parent, 33, 0);
+        other.setBlock(0, 10, 0, 4, 0);
+        file.setChunk(other);
+        file.flush(ForkJoinPool.commonPool());
+
+        // The file was replaced, so this reads the new one
+        assertEquals(STONE, file.readChunk(32, 0).getBlockCombinedId(0, 10, 0));
+        assertEquals(COBBLE, file.readChunk(33, 0).getBlockCombinedId(0, 10, 0));
+        file.close(ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void readMapped() throws Exception {
+        File file = new File(regionFolder, "r.1.0.mca");
+        MCAFile mca = new MCAFile(parent, 1, 0, file);
+        mca.init(true);
+        assertEquals(STONE, mca.readChunk(32, 0).getBlockCombinedId(0, 10, 0));
+        mca.clear();
+    }
+}
@@ -0,0 +1,139 @@
+package com.boydti.fawe.object.clipboard;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The parallel paste must place the same blocks as the sequential paths of ForwardExtentCopy
+ */
+public class ParallelTransformPasteTest {
+
+    private static final Vector FROM = new Vector(3, 2, 1);
+    private static final Vector TO = new Vector(48, 24, 48);
+
+    private CuboidRegion region;
+    private BlockArrayClipboard clipboard;
+
+    @Before
+    public void setUp() throws Exception {
+        region = new CuboidRegion(new Vector(0, 0, 0), new Vector(9, 7, 5));
+        clipboard = new BlockArrayClipboard(region, new MemoryOptimizedClipboard(10, 8, 6));
+        for (int y = 0; y <= 7; y++) {
+            for (int z = 0; z <= 5; z++) {
+                for (int x = 0; x <= 9; x++) {
+                    BaseBlock block;
+                    switch ((x + y * 3 + z * 7) % 4) {
+                        case 0:
+                            continue;
+                        case 1:
+                            block = new BaseBlock(1);
+                            break;
+                        case 2:
+                            block = new BaseBlock(35, (x + z) & 15);
+                            break;
+                        default:
+                            // Stairs, so the block rotation is checked as well
+                            block = new BaseBlock(53, (x + y) & 7);
+                            break;
+                    }
+                    clipboard.setBlock(x, y, z, block);
+                }
+            }
+        }
+    }
+
+    private static BlockArrayClipboard newDestination() {
+        CuboidRegion destination = new CuboidRegion(new Vector(0, 0, 0), new Vector(95, 63, 95));
+        return new BlockArrayClipboard(destination, new MemoryOptimizedClipboard(96, 64, 96));
+    }
+
+    private BlockTransformExtent source(AffineTransform transform) {
+        return new BlockTransformExtent(clipboard, transform, LegacyWorldData.getInstance().getBlockRegistry());
+    }
+
+    private BlockArrayClipboard parallel(AffineTransform transform, boolean pasteAir) throws Exception {
+        assertTrue(ParallelTransformPaste.canPaste(source(transform), region, transform));
+        BlockArrayClipboard destination = newDestination();
+        Operations.completeBlindly(new ParallelTransformPaste(source(transform), region, FROM, destination, TO, transform, pasteAir, false));
+        return destination;
+    }
+
+    private BlockArrayClipboard sequential(AffineTransform transform, boolean pasteAir) throws Exception {
+        BlockTransformExtent source = source(transform);
+        BlockArrayClipboard destination = newDestination();
+        ForwardExtentCopy copy = new ForwardExtentCopy(source, region, FROM, destination, TO);
+        copy.setTransform(transform);
+        copy.setCopyEntities(false);
+        copy.setSourceMask(new SequentialMask(pasteAir ? null : new ExistingBlockMask(source)));
+        Operations.completeBlindly(copy);
+        return destination;
+    }
+
+    /**
+     * A mask which ForwardExtentCopy doesn't recognize, so it takes the sequential path<br>
+     * - The wrapped mask is found by MaskTraverser through the "mask" field
+     */
+    private static final class SequentialMask extends AbstractMask {
+        private final Mask mask;
+
+        private SequentialMask(Mask mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean test(Vector vector) {
+            return mask == null || mask.test(vector);
+        }
+    }
+
+    private void assertSamePaste(AffineTransform transform) throws Exception {
+        for (boolean pasteAir : new boolean[] { true, false }) {
+            BlockArrayClipboard expected = sequential(transform, pasteAir);
+            BlockArrayClipboard actual = parallel(transform, pasteAir);
+            int placed = 0;
+            for (Vector pt : expected.getRegion()) {
+                BaseBlock a = expected.getBlock(pt);
+                BaseBlock b = actual.getBlock(pt);
+                String message = transform + " air: " + pasteAir + " at " + pt;
+                assertEquals(message, a.getId(), b.getId());
+                assertEquals(message, a.getData(), b.getData());
+                if (a.getId() != 0) {
+                    placed++;
+                }
+            }
+            assertTrue(transform.toString(), placed > 0);
+        }
+    }
+
+    @Test
+    public void rotate() throws Exception {
+        assertSamePaste(new AffineTransform().rotateY(90));
+        assertSamePaste(new AffineTransform().rotateY(180));
+        assertSamePaste(new AffineTransform().rotateY(270).scale(-1, 1, 1));
+        assertSamePaste(new AffineTransform().rotateY(45));
+        assertSamePaste(new AffineTransform().rotateX(90).rotateY(30));
+    }
+
+    @Test
+    public void scale() throws Exception {
+        assertSamePaste(new AffineTransform().scale(2));
+        assertSamePaste(new AffineTransform().scale(0.5));
+        assertSamePaste(new AffineTransform().scale(1.5, 1, 0.75));
+        assertSamePaste(new AffineTransform().rotateY(90).scale(2));
+    }
+}
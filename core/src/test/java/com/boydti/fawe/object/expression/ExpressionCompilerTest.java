@@ -0,0 +1,145 @@
+package com.boydti.fawe.object.expression;
+
+import com.boydti.fawe.config.Settings;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Compiled expressions must give the same result (to the bit) as the interpreted ones
+ */
+public class ExpressionCompilerTest {
+
+    private static final String[] EXPRESSIONS = {
+            // Operators
+            "x + y * z - x / y",
+            "x % y + y % z",
+            "x ^ y",
+            "-x + !y",
+            "(x < y) + 2 * (x <= y) + 4 * (x > y) + 8 * (x >= y) + 16 * (x == y) + 32 * (x != y)",
+            "(x && y) + 2 * (x || z)",
+            // Division by zero
+            "x / 0 + y",
+            "x % 0 + y",
+            "x / (y - y)",
+            // Functions
+            "sin(x) + cos(y) + tan(z)",
+            "asin(x) + acos(y) + atan(z)",
+            "sinh(x) + cosh(y) + tanh(z)",
+            "sqrt(x) + cbrt(y) + abs(z)",
+            "floor(x) + ceil(y) + rint(z) + round(x)",
+            "exp(x) + ln(y) + log(y) + log10(z)",
+            "atan2(x, y) + min(x, y) + max(y, z) + min(x, y, z) + max(x, y, z)",
+            // Assignment and conditionals
+            "(z = x * y) + 1",
+            "y * (x > y ? x - z : (z = -z))",
+            "z += x; z -= y; z *= x; z /= y; z %= x; z ^= y",
+            "a = z++; b = ++z; c = x--; d = --y; a + b - c - d + x * y + z",
+            // Statements
+            "z = x * y; z + 1",
+            "if (x > 0) { z = y; } else { z = -y; } z * x",
+            "if (x > y) { z = x; } z",
+            "if (x > y) { z = x; }",
+            // Dynamic functions stay interpreted inside compiled code
+            "z = x + y; randint(1) + z",
+    };
+
+    /**
+     * Loops are not compiled, so they must still be interpreted, loop limits included
+     */
+    private static final String[] LOOPS = {
+            "a = 0; for (i = 0; i < 10; i++) { a = a + x * i; } a + y",
+            "a = 0; while (a < x) { a = a + 1; } a * y",
+            "a = 0; while (1) { a = a + x; } a",
+    };
+
+    private static final double[] VALUES = {
+            0, -0d, 1, -1, 0.5, -2.5, 3, 100, 1e300, -1e-300,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    private boolean compile;
+
+    @Before
+    public void setUp() {
+        compile = Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS = compile;
+    }
+
+    private static Expression create(String input, boolean compile) throws Exception {
+        Settings.IMP.EXPERIMENTAL.COMPILE_EXPRESSIONS = compile;
+        Expression expression = Expression.compile(input, "x", "y", "z");
+        expression.optimize();
+        return expression;
+    }
+
+    /**
+     * @return the result, or the error message
+     */
+    private static Object evaluate(Expression expression, double x, double y, double z) {
+        try {
+            double value = expression.evaluate(x, y, z);
+            return Double.doubleToLongBits(value) + " " + value + ", z = " + expression.getVariable("z", false).getValue();
+        } catch (EvaluationException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    public void compiledMatchesInterpreted() throws Exception {
+        for (String input : EXPRESSIONS) {
+            Expression interpreted = create(input, false);
+            Expression compiled = create(input, true);
+            assertNotNull(input, ExpressionCompiler.compile(compiled.getRoot()));
+            for (double x : VALUES) {
+                for (double y : VALUES) {
+                    for (double z : VALUES) {
+                        String message = input + " with x = " + x + ", y = " + y + ", z = " + z;
+                        assertEquals(message, evaluate(interpreted, x, y, z), evaluate(compiled, x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void loopsStayInterpreted() throws Exception {
+        for (String input : LOOPS) {
+            Expression interpreted = create(input, false);
+            Expression compiled = create(input, true);
+            CompiledExpression expression = ExpressionCompiler.compile(compiled.getRoot());
+            assertNotNull(input, expression);
+            assertEquals(input, 1, expression.nodes.length);
+            for (double x : VALUES) {
+                String message = input + " with x = " + x;
+                assertEquals(message, evaluate(interpreted, x, 2, 3), evaluate(compiled, x, 2, 3));
+            }
+        }
+        assertEquals("Evaluation error at 8: Loop exceeded 256 iterations.", evaluate(create(LOOPS[2], true), 1, 2, 3));
+    }
+
+    @Test
+    public void onlyDynamicNotCompiled() throws Exception {
+        assertNull(ExpressionCompiler.compile(create("randint(x)", false).getRoot()));
+        assertNull(ExpressionCompiler.compile(create("while (x < 0) { x = x + 1; }", false).getRoot()));
+    }
+
+    @Test
+    public void sameShapeSharesClass() throws Exception {
+        CompiledExpression a = ExpressionCompiler.compile(create("x * y + z", false).getRoot());
+        CompiledExpression b = ExpressionCompiler.compile(create("y * z + x", false).getRoot());
+        assertNotNull(a);
+        assertNotNull(b);
+        assertEquals(a.getClass(), b.getClass());
+    }
+}
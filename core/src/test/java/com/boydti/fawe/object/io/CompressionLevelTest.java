@@ -0,0 +1,114 @@
+package com.boydti.fawe.object.io;
+
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
+import com.boydti.fawe.util.MainUtil;
+import com.github.luben.zstd.Zstd;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CompressionLevelTest {
+
+    private static final int BUFFER = 4096;
+
+    /**
+     * Several frames of data, half random and half repetitive (like block changes)
+     */
+    private static byte[] data(long seed) {
+        Random random = new Random(seed);
+        byte[] data = new byte[BUFFER * 5 + 123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ((i & 1024) == 0 ? random.nextInt() : (i % 7) * 3);
+        }
+        return data;
+    }
+
+    private static byte[] compress(byte[] data, int level, boolean blocks) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (FaweOutputStream out = MainUtil.getCompressedOS(baos, level, BUFFER, blocks)) {
+            // Mix single bytes and arrays, as the history streams do
+            out.write(data[0]);
+            out.write(data, 1, data.length - 1);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed, int length) throws IOException {
+        try (FaweInputStream in = MainUtil.getCompressedIS(new ByteArrayInputStream(compressed), BUFFER)) {
+            byte[] result = new byte[length];
+            new DataInputStream(in).readFully(result);
+            assertEquals(-1, in.read());
+            return result;
+        }
+    }
+
+    private static int readDictionaryId(byte[] compressed) {
+        return ((compressed[1] & 0xFF) << 24) + ((compressed[2] & 0xFF) << 16) + ((compressed[3] & 0xFF) << 8) + (compressed[4] & 0xFF);
+    }
+
+    @Test
+    public void roundTripEveryLevel() throws IOException {
+        byte[] data = data(1);
+        for (int level = 0; level <= MainUtil.ZSTD_DICTIONARY_LEVEL; level++) {
+            byte[] compressed = compress(data, level, false);
+            assertEquals("level " + level, 10 + level, compressed[0]);
+            assertArrayEquals("level " + level, data, decompress(compressed, data.length));
+        }
+    }
+
+    @Test
+    public void roundTripEmpty() throws IOException {
+        for (int level = 0; level <= MainUtil.ZSTD_DICTIONARY_LEVEL; level++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            MainUtil.getCompressedOS(baos, level, BUFFER, false).close();
+            try (FaweInputStream in = MainUtil.getCompressedIS(new ByteArrayInputStream(baos.toByteArray()), BUFFER)) {
+                assertEquals("level " + level, -1, in.read());
+            }
+        }
+    }
+
+    @Test
+    public void dictionaryOnlyForBlockChanges() throws IOException {
+        byte[][] samples = new byte[1024][];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = Arrays.copyOf(data(i), BUFFER);
+        }
+        byte[] buffer = new byte[16384];
+        long size = Zstd.trainFromBuffer(samples, buffer);
+        assertFalse(Zstd.getErrorName(size), Zstd.isError(size));
+        ZstdDictionaries.setCurrent(1, Arrays.copyOf(buffer, (int) size));
+        try {
+            byte[] data = data(2);
+            byte[] blocks = compress(data, MainUtil.ZSTD_DICTIONARY_LEVEL, true);
+            assertEquals(1, readDictionaryId(blocks));
+            assertArrayEquals(data, decompress(blocks, data.length));
+
+            // Clipboards, tiles and entities aren't block changes, so they must not depend on the dictionary
+            byte[] other = compress(data, MainUtil.ZSTD_DICTIONARY_LEVEL, false);
+            assertEquals(ZstdDictionaries.NONE, readDictionaryId(other));
+            assertArrayEquals(data, decompress(other, data.length));
+        } finally {
+            ZstdDictionaries.reset();
+        }
+    }
+
+    @Test
+    public void blockChangesWithoutPlatform() throws IOException {
+        // No platform is loaded in tests, so there is no dictionary folder to scan or train into
+        byte[] data = data(3);
+        for (int i = 0; i < 64; i++) {
+            byte[] blocks = compress(data, MainUtil.ZSTD_DICTIONARY_LEVEL, true);
+            assertEquals(ZstdDictionaries.NONE, readDictionaryId(blocks));
+            assertArrayEquals(data, decompress(blocks, data.length));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.operation.Operations;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The parallel layer mode must visit the same positions as the serial search, and apply the function in the same order every run
+ */
+public class BreadthFirstSearchTest {
+
+    private static class RecordingFunction implements RegionFunction {
+        private final List<Vector> applied = new ArrayList<>();
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            applied.add(position.toBlockVector());
+            return true;
+        }
+    }
+
+    /**
+     * A hollow sphere spanning several chunks, with holes so some branches are cut off
+     */
+    private static class SphereSearch extends BreadthFirstSearch {
+        public SphereSearch(RegionFunction function, int maxDepth) {
+            super(function, maxDepth);
+        }
+
+        @Override
+        public boolean isVisitable(Vector from, Vector to) {
+            int x = to.getBlockX();
+            int y = to.getBlockY() - 64;
+            int z = to.getBlockZ();
+            int distance = x * x + y * y + z * z;
+            return distance <= 40 * 40 && distance >= 10 * 10 && ((x ^ z) & 7) != 0;
+        }
+    }
+
+    private static RecordingFunction run(boolean parallel, int maxDepth) throws WorldEditException {
+        RecordingFunction function = new RecordingFunction();
+        SphereSearch search = new SphereSearch(function, maxDepth);
+        search.setParallel(parallel);
+        search.visit(new Vector(20, 64, 1));
+        Operations.completeBlindly(search);
+        assertEquals(function.applied.size(), search.getAffected());
+        return function;
+    }
+
+    @Test
+    public void sameAsSerial() throws WorldEditException {
+        List<Vector> serial = run(false, Integer.MAX_VALUE).applied;
+        List<Vector> parallel = run(true, Integer.MAX_VALUE).applied;
+        assertTrue(serial.size() > 10000);
+        assertEquals(serial.size(), parallel.size());
+        assertEquals(new HashSet<>(serial), new HashSet<>(parallel));
+    }
+
+    @Test
+    public void sameAsSerialWithDepth() throws WorldEditException {
+        List<Vector> serial = run(false, 12).applied;
+        List<Vector> parallel = run(true, 12).applied;
+        assertEquals(new HashSet<>(serial), new HashSet<>(parallel));
+    }
+
+    @Test
+    public void deterministic() throws WorldEditException {
+        Vector[] first = run(true, Integer.MAX_VALUE).applied.toArray(new Vector[0]);
+        for (int i = 0; i < 4; i++) {
+            Vector[] next = run(true, Integer.MAX_VALUE).applied.toArray(new Vector[0]);
+            assertTrue(Arrays.equals(first, next));
+        }
+    }
+}
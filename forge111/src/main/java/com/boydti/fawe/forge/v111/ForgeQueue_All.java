@@ -435,13 +435,7 @@ public class ForgeQueue_All extends NMSMappedFaweQueue<World, Chunk, ExtendedBlo
                     int x = (MathMan.roundInt(ent.posX) & 15);
                     int z = (MathMan.roundInt(ent.posZ) & 15);
                     int y = MathMan.roundInt(ent.posY);
-                    int i = FaweCache.CACHE_I[y][z][x];
-                    char[] array = fs.getIdArray(i);
-                    if (array == null) {
-                        continue;
-                    }
-                    int j = FaweCache.CACHE_J[y][z][x];
-                    if (array[j] != 0) {
+                    if (fs.getBlockCombinedId(x, y, z) != 0) {
                         String id = EntityList.getEntityString(ent);
                         if (id != null) {
                             NBTTagCompound tag = ent.getEntityData();  // readEntityIntoTag
@@ -7,11 +7,14 @@ import com.boydti.fawe.forge.ForgePlayer;
 import com.boydti.fawe.forge.MutableGenLayer;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.brush.visualization.VisualChunk;
 import com.boydti.fawe.object.visitor.FaweChunkVisitor;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.ReflectionUtils;
+import com.boydti.fawe.util.TaskManager;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
@@ -24,8 +27,10 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,6 +56,7 @@ import net.minecraft.util.ClassInheritanceMultiMap;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.MinecraftException;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.biome.BiomeCache;
@@ -60,9 +66,12 @@ import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
 import net.minecraft.world.chunk.NibbleArray;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraft.world.chunk.storage.RegionFileCache;
 import net.minecraft.world.gen.ChunkGeneratorOverworld;
 import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.world.gen.IChunkGenerator;
+import net.minecraft.world.storage.ThreadedFileIOBase;
 import net.minecraft.world.storage.WorldInfo;
 import net.minecraftforge.common.DimensionManager;
 
@@ -221,127 +230,100 @@ public class ForgeQueue_All extends NMSMappedFaweQueue<World, Chunk, ExtendedBlo
         }
     }
 
-//    @Override
-//    public boolean setMCA(final int mcaX, final int mcaZ, final RegionWrapper allowed, final Runnable whileLocked, final boolean load) {
-//        TaskManager.IMP.sync(new RunnableVal<Boolean>() {
-//            @Override
-//            public void run(Boolean value) {
-//                long start = System.currentTimeMillis();
-//                long last = start;
-//                synchronized (RegionFileCache.class) {
-//                    WorldServer world = (WorldServer) getWorld();
-//                    ChunkProviderServer provider = nmsWorld.getChunkProvider();
-//
-//                    boolean mustSave = false;
-//                    boolean[][] chunksUnloaded = null;
-//                    { // Unload chunks
-//                        Iterator<Chunk> iter = provider.getLoadedChunks().iterator();
-//                        while (iter.hasNext()) {
-//                            Chunk chunk = iter.next();
-//                            if (chunk.x >> 5 == mcaX && chunk.z >> 5 == mcaZ) {
-//                                boolean isIn = allowed.isInChunk(chunk.x, chunk.x);
-//                                if (isIn) {
-//                                    if (!load) {
-//                                        if (chunk.needsSaving(false)) {
-//                                            mustSave = true;
-//                                            try {
-//                                                provider.chunkLoader.saveChunk(nmsWorld, chunk);
-//                                                provider.chunkLoader.saveExtraChunkData(nmsWorld, chunk);
-//                                            } catch (IOException | MinecraftException e) {
-//                                                e.printStackTrace();
-//                                            }
-//                                        }
-//                                        continue;
-//                                    }
-//                                    iter.remove();
-//                                    boolean save = chunk.needsSaving(false);
-//                                    mustSave |= save;
-//                                    if (save) {
-//                                        provider.queueUnload(chunk);
-//                                    } else {
-//                                        chunk.onUnload();
-//                                    }
-//                                    if (chunksUnloaded == null) {
-//                                        chunksUnloaded = new boolean[32][];
-//                                    }
-//                                    int relX = chunk.x & 31;
-//                                    boolean[] arr = chunksUnloaded[relX];
-//                                    if (arr == null) {
-//                                        arr = chunksUnloaded[relX] = new boolean[32];
-//                                    }
-//                                    arr[chunk.z & 31] = true;
-//                                }
-//                            }
-//                        }
-//                    }
-//                    if (mustSave) provider.flushToDisk(); // TODO only the necessary chunks
-//
-//                    File unloadedRegion = null;
-//                    if (load && !RegionFileCache.a.isEmpty()) {
-//                        Map<File, RegionFile> map = RegionFileCache.a;
-//                        Iterator<Map.Entry<File, RegionFile>> iter = map.entrySet().iterator();
-//                        String requiredPath = world.getName() + File.separator + "region";
-//                        while (iter.hasNext()) {
-//                            Map.Entry<File, RegionFile> entry = iter.next();
-//                            File file = entry.getKey();
-//                            int[] regPos = MainUtil.regionNameToCoords(file.getPath());
-//                            if (regPos[0] == mcaX && regPos[1] == mcaZ && file.getPath().contains(requiredPath)) {
-//                                if (file.exists()) {
-//                                    unloadedRegion = file;
-//                                    RegionFile regionFile = entry.getValue();
-//                                    iter.remove();
-//                                    try {
-//                                        regionFile.c();
-//                                    } catch (IOException e) {
-//                                        e.printStackTrace();
-//                                    }
-//                                }
-//                                break;
-//                            }
-//                        }
-//                    }
-//
-//                    long now = System.currentTimeMillis();
-//                    if (whileLocked != null) whileLocked.run();
-//                    if (!load) return;
-//
-//                    { // Load the region again
-//                        if (unloadedRegion != null && chunksUnloaded != null && unloadedRegion.exists()) {
-//                            final boolean[][] finalChunksUnloaded = chunksUnloaded;
-//                            TaskManager.IMP.async(() -> {
-//                                int bx = mcaX << 5;
-//                                int bz = mcaZ << 5;
-//                                for (int x = 0; x < finalChunksUnloaded.length; x++) {
-//                                    boolean[] arr = finalChunksUnloaded[x];
-//                                    if (arr != null) {
-//                                        for (int z = 0; z < arr.length; z++) {
-//                                            if (arr[z]) {
-//                                                int cx = bx + x;
-//                                                int cz = bz + z;
-//                                                TaskManager.IMP.sync(new RunnableVal<Object>() {
-//                                                    @Override
-//                                                    public void run(Object value1) {
-//                                                        Chunk chunk = provider.getChunkAt(cx, cz, null, false);
-//                                                        if (chunk != null) {
-//                                                            PlayerChunk pc = getPlayerChunk(nmsWorld, cx, cz);
-//                                                            if (pc != null) {
-//                                                                sendChunk(pc, chunk, 0);
-//                                                            }
-//                                                        }
-//                                                    }
-//                                                });
-//                                            }
-//                                        }
-//                                    }
-//                                }
-//                            });
-//                        }
-//                    }
-//                }
-//            }
-//        });
-//        return true;
-//    }
+    @Override
+    public boolean setMCA(final int mcaX, final int mcaZ, final RegionWrapper allowed, final Runnable whileLocked, final boolean saveChunks, final boolean load) {
+        TaskManager.IMP.sync(new RunnableVal<Boolean>() {
+            @Override
+            public void run(Boolean value) {
+                WorldServer world = (WorldServer) getWorld();
+                ChunkProviderServer provider = world.getChunkProvider();
+                List<Chunk> toUnload = new ArrayList<>();
+                boolean mustSave = false;
+                for (Chunk chunk : new ArrayList<>(provider.getLoadedChunks())) {
+                    if (chunk.x >> 5 != mcaX || chunk.z >> 5 != mcaZ) {
+                        continue;
+                    }
+                    boolean isIn = allowed.isInChunk(chunk.x, chunk.z);
+                    if (saveChunks && (isIn || load) && chunk.needsSaving(false)) {
+                        // The region file is replaced, so it must be on disk first
+                        mustSave |= saveChunk(world, provider, chunk);
+                    }
+                    if (isIn && load) {
+                        toUnload.add(chunk);
+                    }
+                }
+                if (mustSave) {
+                    provider.chunkLoader.flush();
+                }
+                // Chunk writes still queued on the IO thread would otherwise be lost, or overwrite the changes, once the region is replaced
+                try {
+                    ThreadedFileIOBase.getThreadedIOInstance().waitForFinish();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+
+                PlayerChunkMap playerManager = world.getPlayerChunkMap();
+                synchronized (RegionFileCache.class) {
+                    try {
+                        Set droppedChunks = (Set) ReflectionUtils.findField(ChunkProviderServer.class, Set.class).get(provider);
+                        for (Chunk chunk : toUnload) {
+                            long pos = ChunkPos.asLong(chunk.x, chunk.z);
+                            chunk.onUnload();
+                            droppedChunks.remove(pos);
+                            provider.id2ChunkMap.remove(pos);
+                        }
+                        if (load) {
+                            File regionFile = new File(getSaveFolder(), "r." + mcaX + "." + mcaZ + ".mca").getAbsoluteFile();
+                            Map<File, RegionFile> regions = (Map<File, RegionFile>) ReflectionUtils.findField(RegionFileCache.class, Map.class).get(null);
+                            Iterator<Map.Entry<File, RegionFile>> iter = regions.entrySet().iterator();
+                            while (iter.hasNext()) {
+                                Map.Entry<File, RegionFile> entry = iter.next();
+                                if (entry.getKey().getAbsoluteFile().equals(regionFile)) {
+                                    iter.remove();
+                                    entry.getValue().close();
+                                    break;
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    }
+                    if (whileLocked != null) whileLocked.run();
+                }
+
+                // Load the changed chunks again, for the players which are watching them
+                Field fieldEntryChunk = ReflectionUtils.findField(PlayerChunkMapEntry.class, Chunk.class);
+                for (Chunk chunk : toUnload) {
+                    PlayerChunkMapEntry entry = playerManager.getEntry(chunk.x, chunk.z);
+                    if (entry != null) {
+                        try {
+                            Chunk reloaded = provider.loadChunk(chunk.x, chunk.z);
+                            fieldEntryChunk.set(entry, reloaded);
+                            if (reloaded != null) {
+                                sendChunk(reloaded, 0);
+                            }
+                        } catch (Throwable e) {
+                            MainUtil.handleError(e);
+                        }
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    private boolean saveChunk(WorldServer world, ChunkProviderServer provider, Chunk chunk) {
+        try {
+            chunk.setLastSaveTime(world.getTotalWorldTime());
+            provider.chunkLoader.saveChunk(world, chunk);
+            provider.chunkLoader.saveExtraChunkData(world, chunk);
+            chunk.setModified(false);
+            return true;
+        } catch (IOException | MinecraftException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
 
     @Override
     public void setHeightMap(FaweChunk chunk, byte[] heightMap) {
@@ -560,13 +542,7 @@ public class ForgeQueue_All extends NMSMappedFaweQueue<World, Chunk, ExtendedBlo
                     int x = (MathMan.roundInt(ent.posX) & 15);
                     int z = (MathMan.roundInt(ent.posZ) & 15);
                     int y = MathMan.roundInt(ent.posY);
-                    int i = FaweCache.CACHE_I[y][z][x];
-                    char[] array = fs.getIdArray(i);
-                    if (array == null) {
-                        continue;
-                    }
-                    int j = FaweCache.CACHE_J[y][z][x];
-                    if (array[j] != 0) {
+                    if (fs.getBlockCombinedId(x, y, z) != 0) {
                         String id = EntityList.getEntityString(ent);
                         if (id != null) {
                             NBTTagCompound tag = ent.getEntityData();  // readEntityIntoTag
@@ -3,6 +3,8 @@ package com.boydti.fawe.forge.v1710;
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.example.CharFaweChunk;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
@@ -10,6 +12,7 @@ import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.ListTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -54,11 +57,11 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
     public CharFaweChunk copy(boolean shallow) {
         ForgeChunk_All copy;
         if (shallow) {
-            copy = new ForgeChunk_All(getParent(), getX(), getZ(), ids, count, air, heightMap, byteIds, datas, extended);
+            copy = new ForgeChunk_All(getParent(), getX(), getZ(), inflate(), count, air, heightMap, byteIds, datas, extended);
             copy.biomes = biomes;
             copy.chunk = chunk;
         } else {
-            copy = new ForgeChunk_All(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(ids), count.clone(), air.clone(), heightMap.clone(), (byte[][]) MainUtil.copyNd(byteIds), datas.clone(), extended.clone());
+            copy = new ForgeChunk_All(getParent(), getX(), getZ(), (char[][]) MainUtil.copyNd(inflate()), count.clone(), air.clone(), heightMap.clone(), (byte[][]) MainUtil.copyNd(byteIds), datas.clone(), extended.clone());
             copy.biomes = biomes;
             copy.chunk = chunk;
             copy.biomes = biomes.clone();
@@ -77,6 +80,48 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk, ForgeQueue_All> {
         return this.byteIds[i];
     }
 
+    @Override
+    public void writeChanges(FaweOutputStream out) throws IOException {
+        super.writeChanges(out);
+        for (int i = 0; i < byteIds.length; i++) {
+            byte[] array = byteIds[i];
+            out.writeBoolean(array != null);
+            if (array != null) {
+                out.write(array);
+            }
+            writeNibbles(out, datas[i]);
+            writeNibbles(out, extended[i]);
+        }
+    }
+
+    private void writeNibbles(FaweOutputStream out, NibbleArray nibbles) throws IOException {
+        out.writeBoolean(nibbles != null);
+        if (nibbles != null) {
+            out.write(nibbles.data);
+        }
+    }
+
+    @Override
+    public void readChanges(FaweInputStream in) throws IOException {
+        super.readChanges(in);
+        for (int i = 0; i < byteIds.length; i++) {
+            if (in.readBoolean()) {
+                in.readFully(byteIds[i] = new byte[4096]);
+            }
+            datas[i] = readNibbles(in);
+            extended[i] = readNibbles(in);
+        }
+    }
+
+    private NibbleArray readNibbles(FaweInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        byte[] data = new byte[2048];
+        in.readFully(data);
+        return new NibbleArray(data, 4);
+    }
+
     public NibbleArray getDataArray(int i) {
         return datas[i];
     }
@@ -5,8 +5,10 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -20,12 +22,15 @@ import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.example.NMSMappedFaweQueue;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.brush.visualization.VisualChunk;
 import com.boydti.fawe.object.visitor.FaweChunkVisitor;
 import com.boydti.fawe.sponge.SpongePlayer;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.ReflectionUtils;
+import com.boydti.fawe.util.TaskManager;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
@@ -56,6 +61,7 @@ import net.minecraft.util.ClassInheritanceMultiMap;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.MinecraftException;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.biome.BiomeCache;
@@ -65,9 +71,12 @@ import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
 import net.minecraft.world.chunk.NibbleArray;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraft.world.chunk.storage.RegionFileCache;
 import net.minecraft.world.gen.ChunkGeneratorOverworld;
 import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.world.gen.IChunkGenerator;
+import net.minecraft.world.storage.ThreadedFileIOBase;
 import net.minecraft.world.storage.WorldInfo;
 
 public class SpongeQueue_1_12 extends NMSMappedFaweQueue<World, net.minecraft.world.chunk.Chunk, ExtendedBlockStorage[], ExtendedBlockStorage> {
@@ -233,6 +242,102 @@ public class SpongeQueue_1_12 extends NMSMappedFaweQueue<World, net.minecraft.wo
         return ExtendedBlockStorages[cy];
     }
 
+    @Override
+    public boolean setMCA(final int mcaX, final int mcaZ, final RegionWrapper allowed, final Runnable whileLocked, final boolean saveChunks, final boolean load) {
+        TaskManager.IMP.sync(new RunnableVal<Boolean>() {
+            @Override
+            public void run(Boolean value) {
+                WorldServer world = (WorldServer) getWorld();
+                ChunkProviderServer provider = world.getChunkProvider();
+                List<Chunk> toUnload = new ArrayList<>();
+                boolean mustSave = false;
+                for (Chunk chunk : new ArrayList<>(provider.getLoadedChunks())) {
+                    if (chunk.x >> 5 != mcaX || chunk.z >> 5 != mcaZ) {
+                        continue;
+                    }
+                    boolean isIn = allowed.isInChunk(chunk.x, chunk.z);
+                    if (saveChunks && (isIn || load) && chunk.needsSaving(false)) {
+                        // The region file is replaced, so it must be on disk first
+                        mustSave |= saveChunk(world, provider, chunk);
+                    }
+                    if (isIn && load) {
+                        toUnload.add(chunk);
+                    }
+                }
+                if (mustSave) {
+                    provider.chunkLoader.flush();
+                }
+                // Chunk writes still queued on the IO thread would otherwise be lost, or overwrite the changes, once the region is replaced
+                try {
+                    ThreadedFileIOBase.getThreadedIOInstance().waitForFinish();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+
+                PlayerChunkMap playerManager = world.getPlayerChunkMap();
+                synchronized (RegionFileCache.class) {
+                    try {
+                        Set droppedChunks = (Set) ReflectionUtils.findField(ChunkProviderServer.class, Set.class).get(provider);
+                        Long2ObjectMap<Chunk> id2ChunkMap = (Long2ObjectMap<Chunk>) fieldId2ChunkMap.get(provider);
+                        for (Chunk chunk : toUnload) {
+                            long pos = ChunkPos.asLong(chunk.x, chunk.z);
+                            chunk.onUnload();
+                            droppedChunks.remove(pos);
+                            id2ChunkMap.remove(pos);
+                        }
+                        if (load) {
+                            File regionFile = new File(getSaveFolder(), "r." + mcaX + "." + mcaZ + ".mca").getAbsoluteFile();
+                            Map<File, RegionFile> regions = (Map<File, RegionFile>) ReflectionUtils.findField(RegionFileCache.class, Map.class).get(null);
+                            Iterator<Map.Entry<File, RegionFile>> iter = regions.entrySet().iterator();
+                            while (iter.hasNext()) {
+                                Map.Entry<File, RegionFile> entry = iter.next();
+                                if (entry.getKey().getAbsoluteFile().equals(regionFile)) {
+                                    iter.remove();
+                                    entry.getValue().close();
+                                    break;
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    }
+                    if (whileLocked != null) whileLocked.run();
+                }
+
+                // Load the changed chunks again, for the players which are watching them
+                Field fieldEntryChunk = ReflectionUtils.findField(PlayerChunkMapEntry.class, Chunk.class);
+                for (Chunk chunk : toUnload) {
+                    PlayerChunkMapEntry entry = playerManager.getEntry(chunk.x, chunk.z);
+                    if (entry != null) {
+                        try {
+                            Chunk reloaded = provider.loadChunk(chunk.x, chunk.z);
+                            fieldEntryChunk.set(entry, reloaded);
+                            if (reloaded != null) {
+                                sendChunk(reloaded, 0);
+                            }
+                        } catch (Throwable e) {
+                            MainUtil.handleError(e);
+                        }
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    private boolean saveChunk(WorldServer world, ChunkProviderServer provider, Chunk chunk) {
+        try {
+            chunk.setLastSaveTime(world.getTotalWorldTime());
+            provider.chunkLoader.saveChunk(world, chunk);
+            provider.chunkLoader.saveExtraChunkData(world, chunk);
+            chunk.setModified(false);
+            return true;
+        } catch (IOException | MinecraftException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     @Override
     public void setHeightMap(FaweChunk chunk, byte[] heightMap) {
         Chunk forgeChunk = (Chunk) chunk.getChunk();
@@ -450,13 +555,7 @@ public class SpongeQueue_1_12 extends NMSMappedFaweQueue<World, net.minecraft.wo
                     int x = (MathMan.roundInt(ent.posX) & 15);
                     int z = (MathMan.roundInt(ent.posZ) & 15);
                     int y = MathMan.roundInt(ent.posY);
-                    int i = FaweCache.CACHE_I[y][z][x];
-                    char[] array = fs.getIdArray(i);
-                    if (array == null) {
-                        continue;
-                    }
-                    int j = FaweCache.CACHE_J[y][z][x];
-                    if (array[j] != 0) {
+                    if (fs.getBlockCombinedId(x, y, z) != 0) {
                         String id = EntityList.getEntityString(ent);
                         if (id != null) {
                             NBTTagCompound tag = new NBTTagCompound();